@@ -23,11 +23,13 @@ import java.nio.channels.ClosedSelectorException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.spi.SelectorProvider;
-import java.util.Comparator;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.TreeSet;
+import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.facebook.thrift.TException;
 import org.slf4j.Logger;
@@ -39,8 +41,15 @@ import org.slf4j.LoggerFactory;
 public class TAsyncClientManager {
   private static final Logger LOGGER = LoggerFactory.getLogger(TAsyncClientManager.class.getName());
 
+  // The precision of the call timeouts, and the buckets of the timeout wheel
+  private static final long TIMEOUT_TICK_MS = 10;
+  private static final int TIMEOUT_BUCKETS = 512;
+
   private final SelectThread selectThread;
   private final ConcurrentLinkedQueue<TAsyncMethodCall> pendingCalls = new ConcurrentLinkedQueue<TAsyncMethodCall>();
+  private final ConcurrentLinkedQueue<TAsyncPipeline> pendingPipelines = new ConcurrentLinkedQueue<TAsyncPipeline>();
+  // Set once the selector is woken up, so concurrent callers wake it up only once per select
+  private final AtomicBoolean wakenUp = new AtomicBoolean(false);
 
   public TAsyncClientManager() throws IOException {
     this.selectThread = new SelectThread();
@@ -53,7 +62,21 @@ public class TAsyncClientManager {
     }
     method.prepareMethodCall();
     pendingCalls.add(method);
-    selectThread.getSelector().wakeup();
+    wakeup();
+  }
+
+  /**
+   * Have the selector thread start the calls queued on a pipeline.
+   */
+  void schedule(TAsyncPipeline pipeline) {
+    pendingPipelines.add(pipeline);
+    wakeup();
+  }
+
+  private void wakeup() {
+    if (wakenUp.compareAndSet(false, true)) {
+      selectThread.getSelector().wakeup();
+    }
   }
 
   public void stop() throws InterruptedException {
@@ -68,7 +91,8 @@ public class TAsyncClientManager {
   private class SelectThread extends Thread {
     private final Selector selector;
     private volatile boolean running;
-    private final TreeSet<TAsyncMethodCall> timeoutWatchSet = new TreeSet<TAsyncMethodCall>(new TAsyncMethodCallTimeoutComparator());
+    private final TAsyncTimeoutWheel timeouts = new TAsyncTimeoutWheel(TIMEOUT_TICK_MS, TIMEOUT_BUCKETS);
+    private final List<TAsyncMethodCall> expired = new ArrayList<TAsyncMethodCall>();
 
     public SelectThread() throws IOException {
       this.selector = SelectorProvider.provider().openSelector();
@@ -92,18 +116,21 @@ public class TAsyncClientManager {
       while (running) {
         try {
           try {
-            if (timeoutWatchSet.size() == 0) {
+            // Callers queueing from now on wake up the selector again, the
+            // calls queued before are started without blocking
+            wakenUp.set(false);
+            if (!pendingCalls.isEmpty() || !pendingPipelines.isEmpty()) {
+              selector.selectNow();
+            } else if (timeouts.isEmpty()) {
               // No timeouts, so select indefinitely
               selector.select();
             } else {
-              // We have a timeout pending, so calculate the time until then and select appropriately
-              long nextTimeout = timeoutWatchSet.first().getTimeoutTimestamp();
-              long selectTime = nextTimeout - System.currentTimeMillis();
+              // We have timeouts pending, so wake up at the next tick of the wheel
+              long selectTime = TimeUnit.NANOSECONDS.toMillis(timeouts.nanosToNextTick(System.nanoTime()) + TimeUnit.MILLISECONDS.toNanos(1) - 1);
               if (selectTime > 0) {
-                // Next timeout is in the future, select and wake up then
                 selector.select(selectTime);
               } else {
-                // Next timeout is now or in past, select immediately so we can time out
+                // The tick is due, select immediately so we can time out
                 selector.selectNow();
               }
             }
@@ -133,12 +160,16 @@ public class TAsyncClientManager {
             // just skip
             continue;
           }
+          if (key.attachment() instanceof TAsyncPipeline) {
+            ((TAsyncPipeline)key.attachment()).transition(key, timeouts);
+            continue;
+          }
           TAsyncMethodCall methodCall = (TAsyncMethodCall)key.attachment();
           methodCall.transition(key);
 
           // If done or error occurred, remove from timeout watch set
           if (methodCall.isFinished() || methodCall.getClient().hasError()) {
-            timeoutWatchSet.remove(methodCall);
+            timeouts.remove(methodCall);
           }
         }
       } catch (ClosedSelectorException e) {
@@ -146,19 +177,15 @@ public class TAsyncClientManager {
       }
     }
 
-    // Timeout any existing method calls
+    // Timeout the method calls whose deadline passed
     private void timeoutMethods() {
-      Iterator<TAsyncMethodCall> iterator = timeoutWatchSet.iterator();
-      long currentTime = System.currentTimeMillis();
-      while (iterator.hasNext()) {
-        TAsyncMethodCall methodCall = iterator.next();
-        if (currentTime >= methodCall.getTimeoutTimestamp()) {
-          iterator.remove();
-          methodCall.onError(new TimeoutException("Operation " + methodCall.getClass() + " timed out after " + (currentTime - methodCall.getStartTime()) + " ms."));
-        } else {
-          break;
-        }
+      long now = System.nanoTime();
+      timeouts.expire(now, expired);
+      for (TAsyncMethodCall methodCall : expired) {
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(now - methodCall.getStartNanos());
+        methodCall.onError(new TimeoutException("Operation " + methodCall.getClass() + " timed out after " + elapsed + " ms."));
       }
+      expired.clear();
     }
 
     // Start any new calls
@@ -169,26 +196,20 @@ public class TAsyncClientManager {
         try {
           methodCall.start(selector);
 
-          // If timeout specified and first transition went smoothly, add to timeout watch set
-          TAsyncClient client = methodCall.getClient();
-          if (client.hasTimeout() && !client.hasError()) {
-            timeoutWatchSet.add(methodCall);
+          // If timeout specified and first transition went smoothly, add to timeout wheel
+          if (methodCall.hasTimeout() && !methodCall.getClient().hasError()) {
+            timeouts.add(methodCall);
           }
         } catch (Exception exception) {
           LOGGER.warn("Caught exception in TAsyncClientManager!", exception);
           methodCall.onError(exception);
         }
       }
-    }
-  }
 
-  /** Comparator used in TreeSet */
-  private static class TAsyncMethodCallTimeoutComparator implements Comparator<TAsyncMethodCall> {
-    public int compare(TAsyncMethodCall left, TAsyncMethodCall right) {
-      if (left.getTimeoutTimestamp() == right.getTimeoutTimestamp()) {
-        return (int)(left.getSequenceId() - right.getSequenceId());
-      } else {
-        return (int)(left.getTimeoutTimestamp() - right.getTimeoutTimestamp());
+      // Start the new calls of pipelines, which catch their own errors
+      TAsyncPipeline pipeline;
+      while ((pipeline = pendingPipelines.poll()) != null) {
+        pipeline.start(selector, timeouts);
       }
     }
   }
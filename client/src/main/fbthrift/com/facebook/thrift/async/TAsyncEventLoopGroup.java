@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.facebook.thrift.async;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed set of selector threads shared by many async clients. Each new
+ * connection takes the next loop in turn, so a few loops carry all the
+ * connections instead of a selector thread per connection.
+ *
+ * The loops of a group must not be stopped by the clients using them, only
+ * by the group. The default group lives as long as the JVM, its threads are
+ * daemons.
+ */
+public class TAsyncEventLoopGroup {
+
+  private final TAsyncClientManager[] loops;
+  private final AtomicInteger next = new AtomicInteger(0);
+
+  /**
+   * Start the selector threads of the group.
+   * @param size the number of selector threads
+   * @throws IOException if a selector fails to open
+   */
+  public TAsyncEventLoopGroup(int size) throws IOException {
+    if (size <= 0) {
+      throw new IllegalArgumentException("Event loop group size must be positive: " + size);
+    }
+    loops = new TAsyncClientManager[size];
+    try {
+      for (int i = 0; i < size; i++) {
+        loops[i] = new TAsyncClientManager();
+      }
+    } catch (IOException e) {
+      stopQuietly();
+      throw e;
+    }
+  }
+
+  /**
+   * @return the group shared by default, with a loop per available processor
+   */
+  public static TAsyncEventLoopGroup getDefault() {
+    return DefaultHolder.GROUP;
+  }
+
+  /**
+   * @return the loop to assign a new connection to
+   */
+  public TAsyncClientManager next() {
+    return loops[(next.getAndIncrement() & Integer.MAX_VALUE) % loops.length];
+  }
+
+  public int size() {
+    return loops.length;
+  }
+
+  /**
+   * Stop every loop of the group, the calls in flight never complete.
+   * @throws InterruptedException if interrupted while waiting for a loop to stop
+   */
+  public void stop() throws InterruptedException {
+    for (TAsyncClientManager loop : loops) {
+      if (loop != null) {
+        loop.stop();
+      }
+    }
+  }
+
+  private void stopQuietly() {
+    try {
+      stop();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static class DefaultHolder {
+    private static final TAsyncEventLoopGroup GROUP;
+
+    static {
+      try {
+        GROUP = new TAsyncEventLoopGroup(Runtime.getRuntime().availableProcessors());
+      } catch (IOException e) {
+        throw new ExceptionInInitializerError(e);
+      }
+    }
+  }
+}
@@ -22,14 +22,18 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import com.facebook.thrift.TException;
+import com.facebook.thrift.protocol.TMessage;
 import com.facebook.thrift.protocol.TProtocol;
+import com.facebook.thrift.protocol.TProtocolDecorator;
 import com.facebook.thrift.protocol.TProtocolFactory;
+import com.facebook.thrift.transport.TBufferPool;
 import com.facebook.thrift.transport.TFramedTransport;
-import com.facebook.thrift.transport.TMemoryBuffer;
 import com.facebook.thrift.transport.TNonblockingTransport;
+import com.facebook.thrift.transport.TPooledMemoryBuffer;
 import com.facebook.thrift.transport.TTransportException;
 
 /**
@@ -69,7 +73,35 @@ public abstract class TAsyncMethodCall {
   private final byte[] sizeBufferArray = new byte[4];
   private ByteBuffer frameBuffer;
 
+  /**
+   * The pooled arrays of the request frame until it is written, and of the
+   * response frame until the call releases its buffers
+   */
+  private final TBufferPool bufferPool = TBufferPool.getDefault();
+  private byte[] requestArray;
+  private byte[] responseArray;
+  private boolean released;
+
   private long startTime = System.currentTimeMillis();
+  private final long startNanos = System.nanoTime();
+  // The timeout of this call in ms, negative to use the client's
+  private long timeout = -1;
+
+  /**
+   * The links of the call in the timeout wheel, only accessed by the
+   * selector thread
+   */
+  TAsyncMethodCall timeoutPrev;
+  TAsyncMethodCall timeoutNext;
+  long timeoutTick;
+  boolean timeoutScheduled;
+
+  /**
+   * The pipeline carrying the call and the sequence id it tags the call
+   * with, if the call is pipelined
+   */
+  private TAsyncPipeline pipeline;
+  private int pipelineSequenceId;
 
   protected TAsyncMethodCall(TAsyncClient client, TProtocolFactory protocolFactory, TNonblockingTransport transport, AsyncMethodCallback callback, boolean isOneway) {
     this.transport = transport;
@@ -96,16 +128,53 @@ public abstract class TAsyncMethodCall {
     return sequenceId;
   }
 
+  int getPipelineSequenceId() {
+    return pipelineSequenceId;
+  }
+
+  boolean isOneway() {
+    return isOneway;
+  }
+
   public TAsyncClient getClient() {
     return client;
   }
 
   public boolean hasTimeout() {
-    return client.hasTimeout();
+    return getTimeout() > 0;
+  }
+
+  /**
+   * @return the timeout of this call in ms, the client's unless overridden
+   */
+  public long getTimeout() {
+    return timeout >= 0 ? timeout : client.getTimeout();
+  }
+
+  /**
+   * Override the timeout of the client for this call, before it is started.
+   * @param timeout the timeout in ms, 0 for none
+   */
+  public void setTimeout(long timeout) {
+    if (timeout < 0) {
+      throw new IllegalArgumentException("Timeout must not be negative: " + timeout);
+    }
+    this.timeout = timeout;
   }
 
   public long getTimeoutTimestamp() {
-    return client.getTimeout() + startTime;
+    return getTimeout() + startTime;
+  }
+
+  /**
+   * @return the deadline of the call on the System.nanoTime() clock
+   */
+  long getDeadlineNanos() {
+    return startNanos + TimeUnit.MILLISECONDS.toNanos(getTimeout());
+  }
+
+  long getStartNanos() {
+    return startNanos;
   }
 
   protected abstract void write_args(TProtocol protocol) throws TException;
@@ -115,17 +184,79 @@ public abstract class TAsyncMethodCall {
    * @throws TException if buffer initialization fails
    */
   protected void prepareMethodCall() throws TException {
-    TMemoryBuffer memoryBuffer = new TMemoryBuffer(INITIAL_MEMORY_BUFFER_SIZE);
+    TPooledMemoryBuffer memoryBuffer = new TPooledMemoryBuffer(bufferPool, INITIAL_MEMORY_BUFFER_SIZE);
     TProtocol protocol = protocolFactory.getProtocol(memoryBuffer);
-    write_args(protocol);
+    try {
+      write_args(protocol);
+    } catch (TException e) {
+      memoryBuffer.release();
+      throw e;
+    }
 
     int length = memoryBuffer.length();
-    frameBuffer = ByteBuffer.wrap(memoryBuffer.getArray(), 0, length);
+    requestArray = memoryBuffer.getArray();
+    frameBuffer = ByteBuffer.wrap(requestArray, 0, length);
 
     TFramedTransport.encodeWord(length, sizeBufferArray);
     sizeBuffer = ByteBuffer.wrap(sizeBufferArray);
   }
 
+  /**
+   * Serialize the call for a pipeline as one frame, its size included, whose
+   * message carries the given sequence id instead of the generated one.
+   * @param pipeline the pipeline carrying the call
+   * @param sequenceId the sequence id the response is matched by
+   * @return the frame to write
+   * @throws TException if serialization fails
+   */
+  ByteBuffer prepareFrame(TAsyncPipeline pipeline, final int sequenceId) throws TException {
+    this.pipeline = pipeline;
+    this.pipelineSequenceId = sequenceId;
+
+    TPooledMemoryBuffer memoryBuffer = new TPooledMemoryBuffer(bufferPool, INITIAL_MEMORY_BUFFER_SIZE);
+    // Leave room for the frame size
+    memoryBuffer.write(sizeBufferArray, 0, sizeBufferArray.length);
+    TProtocol protocol = new TProtocolDecorator(protocolFactory.getProtocol(memoryBuffer)) {
+      @Override
+      public void writeMessageBegin(TMessage message) throws TException {
+        super.writeMessageBegin(new TMessage(message.name, message.type, sequenceId));
+      }
+    };
+    try {
+      write_args(protocol);
+    } catch (TException e) {
+      memoryBuffer.release();
+      throw e;
+    }
+
+    int length = memoryBuffer.length();
+    requestArray = memoryBuffer.getArray();
+    TFramedTransport.encodeWord(length - sizeBufferArray.length, requestArray);
+    frameBuffer = ByteBuffer.wrap(requestArray, 0, length);
+    return frameBuffer;
+  }
+
+  /**
+   * Complete a pipelined call with its response frame, or with its request
+   * frame if it is oneway. Called by the selector thread.
+   */
+  void onPipelinedResponse(ByteBuffer frame) {
+    if (!isOneway) {
+      frameBuffer = frame;
+      responseArray = frame.array();
+    }
+    state = State.RESPONSE_READ;
+    callback.onComplete(this);
+  }
+
+  /**
+   * Fail a pipelined call, the pipeline stays usable unless it failed itself.
+   */
+  void onPipelinedError(Exception e) {
+    state = State.ERROR;
+    callback.onError(e);
+  }
+
   /**
    * Register with selector and start first state, which could be either connecting or writing.
    * @throws IOException if register or starting fails
@@ -155,9 +286,40 @@ public abstract class TAsyncMethodCall {
   }
 
   protected ByteBuffer getFrameBuffer() {
+    if (released) {
+      throw new IllegalStateException("Method call buffers were released!");
+    }
     return frameBuffer;
   }
 
+  /**
+   * Recycle the buffer of the response once the result was read, which
+   * getResult must not be called again after. Optional, a call which is
+   * not released leaves its buffer to the GC.
+   */
+  public void releaseBuffers() {
+    if (state != State.RESPONSE_READ || released) {
+      return;
+    }
+    released = true;
+    frameBuffer = null;
+    bufferPool.release(responseArray);
+    responseArray = null;
+  }
+
+  /**
+   * Recycle the request frame once it is written whole. A oneway call keeps
+   * it as its response frame, as there is no other.
+   */
+  void onRequestWritten() {
+    if (isOneway) {
+      responseArray = requestArray;
+    } else {
+      bufferPool.release(requestArray);
+    }
+    requestArray = null;
+  }
+
   /**
    * Transition to next state, doing whatever work is required. Since this
    * method is only called by the selector thread, we can make changes to our
@@ -203,6 +365,11 @@ public abstract class TAsyncMethodCall {
   }
 
   protected void onError(Exception e) {
+    if (pipeline != null) {
+      // Such as a timeout, which fails only this call of the pipeline
+      pipeline.cancel(this, e);
+      return;
+    }
     client.onError(e);
     callback.onError(e);
     state = State.ERROR;
@@ -232,7 +399,12 @@ public abstract class TAsyncMethodCall {
     }
     if (sizeBuffer.remaining() == 0) {
       state = State.READING_RESPONSE_BODY;
-      frameBuffer = ByteBuffer.allocate(TFramedTransport.decodeWord(sizeBufferArray));
+      int size = TFramedTransport.decodeWord(sizeBufferArray);
+      if (size < 0) {
+        throw new IOException("Read a negative frame size (" + size + ")!");
+      }
+      responseArray = bufferPool.acquire(size);
+      frameBuffer = ByteBuffer.wrap(responseArray, 0, size);
     }
   }
 
@@ -241,6 +413,7 @@ public abstract class TAsyncMethodCall {
       throw new IOException("Write call frame failed");
     }
     if (frameBuffer.remaining() == 0) {
+      onRequestWritten();
       if (isOneway) {
         cleanUpAndFireCallback(key);
       } else {
@@ -0,0 +1,343 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.facebook.thrift.async;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.facebook.thrift.TException;
+import com.facebook.thrift.protocol.TMessage;
+import com.facebook.thrift.protocol.TProtocolFactory;
+import com.facebook.thrift.transport.TBufferPool;
+import com.facebook.thrift.transport.TFramedTransport;
+import com.facebook.thrift.transport.TMemoryInputTransport;
+import com.facebook.thrift.transport.TNonblockingTransport;
+import com.facebook.thrift.transport.TTransportException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Carries many method calls at once over one non-blocking transport. Each
+ * call is tagged with a sequence id of the pipeline, the framed requests are
+ * written back to back, and every response is handed to the call of its
+ * sequence id in whatever order the server answers.
+ *
+ * The calls are created as usual but passed to {@link #call} instead of
+ * being started by their client, e.g.
+ * <pre>
+ *   pipeline.call(new AsyncClient.get_call(req, callback, client, factory, transport));
+ * </pre>
+ * where the client is only used for its protocol factory and timeout. A
+ * timed out call fails alone, its late response is dropped. An I/O or
+ * protocol error fails every call of the pipeline, which is then unusable.
+ */
+public class TAsyncPipeline {
+  private static final Logger LOGGER = LoggerFactory.getLogger(TAsyncPipeline.class.getName());
+
+  private final TAsyncClientManager manager;
+  private final TNonblockingTransport transport;
+  private final TProtocolFactory protocolFactory;
+
+  private final ConcurrentLinkedQueue<TAsyncMethodCall> pendingCalls = new ConcurrentLinkedQueue<TAsyncMethodCall>();
+  private final AtomicBoolean scheduled = new AtomicBoolean(false);
+  private final AtomicInteger nextSequenceId = new AtomicInteger(0);
+  private final AtomicInteger outstanding = new AtomicInteger(0);
+  private volatile Exception error;
+
+  // Only accessed by the selector thread
+  private SelectionKey key;
+  private boolean connected;
+  private final Map<Integer, TAsyncMethodCall> inflight = new HashMap<Integer, TAsyncMethodCall>();
+  private final ArrayDeque<TAsyncMethodCall> writes = new ArrayDeque<TAsyncMethodCall>();
+  private final byte[] sizeBufferArray = new byte[4];
+  private final ByteBuffer sizeBuffer = ByteBuffer.wrap(sizeBufferArray);
+  private final TBufferPool bufferPool = TBufferPool.getDefault();
+  private ByteBuffer frameBuffer;
+
+  public TAsyncPipeline(TAsyncClientManager manager, TNonblockingTransport transport, TProtocolFactory protocolFactory) {
+    this.manager = manager;
+    this.transport = transport;
+    this.protocolFactory = protocolFactory;
+  }
+
+  /**
+   * Send a call over the pipeline, without waiting for the calls before it.
+   * @param method the call, created on the transport of the pipeline
+   * @throws TException if the pipeline has an error or the call fails to serialize
+   */
+  public void call(TAsyncMethodCall method) throws TException {
+    if (method.transport != transport) {
+      throw new IllegalArgumentException("Method call is not on the transport of the pipeline");
+    }
+    if (error != null) {
+      throw new TException("Pipeline has an error!", error);
+    }
+    if (!manager.isRunning()) {
+      throw new TException("SelectThread is not running");
+    }
+    method.prepareFrame(this, nextSequenceId.getAndIncrement());
+    outstanding.incrementAndGet();
+    pendingCalls.add(method);
+    schedule();
+  }
+
+  /**
+   * @return the number of calls sent and not completed yet
+   */
+  public int getOutstandingCalls() {
+    return outstanding.get();
+  }
+
+  /**
+   * Is the pipeline in an error state?
+   * @return
+   */
+  public boolean hasError() {
+    return error != null;
+  }
+
+  /**
+   * Get the pipeline's error - returns null if no error
+   * @return
+   */
+  public Exception getError() {
+    return error;
+  }
+
+  /**
+   * Fail the outstanding calls and close the transport.
+   */
+  public void close() {
+    if (error == null) {
+      error = new TTransportException(TTransportException.NOT_OPEN, "Pipeline closed");
+    }
+    if (manager.isRunning()) {
+      schedule();
+    } else {
+      transport.close();
+    }
+  }
+
+  private void schedule() {
+    if (scheduled.compareAndSet(false, true)) {
+      manager.schedule(this);
+    }
+  }
+
+  /**
+   * Register with the selector on first use and queue the pending calls
+   * for writing. Called by the selector thread.
+   * @param selector the selector of the manager
+   * @param timeouts the calls watched for timeouts
+   */
+  void start(Selector selector, TAsyncTimeoutWheel timeouts) {
+    // Clear first, so a call added meanwhile schedules the pipeline again
+    scheduled.set(false);
+    TAsyncMethodCall method;
+    while ((method = pendingCalls.poll()) != null) {
+      inflight.put(method.getPipelineSequenceId(), method);
+      writes.add(method);
+      if (method.hasTimeout()) {
+        timeouts.add(method);
+      }
+    }
+
+    if (error != null) {
+      fail(error, timeouts);
+      return;
+    }
+
+    try {
+      if (key == null) {
+        if (transport.isOpen()) {
+          connected = true;
+          key = transport.registerSelector(selector, SelectionKey.OP_READ);
+        } else {
+          key = transport.registerSelector(selector, SelectionKey.OP_CONNECT);
+          // non-blocking connect can complete immediately,
+          // in which case we should not expect the OP_CONNECT
+          connected = transport.startConnect();
+        }
+        key.attach(this);
+      }
+      updateInterests();
+    } catch (IOException e) {
+      fail(e, timeouts);
+    }
+  }
+
+  /**
+   * Connect, write and read as far as the transport allows without blocking.
+   * Called by the selector thread.
+   * @param key the selection key of the transport
+   * @param timeouts the calls watched for timeouts
+   */
+  void transition(SelectionKey key, TAsyncTimeoutWheel timeouts) {
+    if (!key.isValid()) {
+      fail(new TTransportException("Selection key not valid!"), timeouts);
+      return;
+    }
+
+    try {
+      if (!connected && key.isConnectable()) {
+        if (!transport.finishConnect()) {
+          throw new IOException("not connectable or finishConnect returned false after we got an OP_CONNECT");
+        }
+        connected = true;
+      }
+      if (connected && key.isWritable()) {
+        doWriting(timeouts);
+      }
+      if (connected && key.isReadable()) {
+        doReading(timeouts);
+      }
+      updateInterests();
+    } catch (Exception e) {
+      fail(e, timeouts);
+    }
+  }
+
+  /**
+   * Fail a call which timed out, the pipeline carries on. Called by the
+   * selector thread.
+   */
+  void cancel(TAsyncMethodCall method, Exception e) {
+    if (inflight.remove(method.getPipelineSequenceId()) != null) {
+      // A partly written request still has to be written whole
+      outstanding.decrementAndGet();
+      method.onPipelinedError(e);
+    }
+  }
+
+  private void doWriting(TAsyncTimeoutWheel timeouts) throws IOException {
+    TAsyncMethodCall method;
+    while ((method = writes.peek()) != null) {
+      ByteBuffer frame = method.getFrameBuffer();
+      if (transport.write(frame) < 0) {
+        throw new IOException("Write call frame failed");
+      }
+      if (frame.hasRemaining()) {
+        return;
+      }
+      writes.poll();
+      // Also recycles the request of a call which timed out meanwhile
+      method.onRequestWritten();
+      if (method.isOneway()) {
+        complete(method.getPipelineSequenceId(), frame, timeouts);
+      }
+    }
+  }
+
+  private void doReading(TAsyncTimeoutWheel timeouts) throws IOException, TException {
+    while (true) {
+      if (frameBuffer == null) {
+        if (transport.read(sizeBuffer) < 0) {
+          throw new IOException("Read call frame size failed");
+        }
+        if (sizeBuffer.hasRemaining()) {
+          return;
+        }
+        int size = TFramedTransport.decodeWord(sizeBufferArray);
+        if (size < 0) {
+          throw new IOException("Read a negative frame size (" + size + ")!");
+        }
+        frameBuffer = ByteBuffer.wrap(bufferPool.acquire(size), 0, size);
+        sizeBuffer.clear();
+      }
+
+      if (transport.read(frameBuffer) < 0) {
+        throw new IOException("Read call frame failed");
+      }
+      if (frameBuffer.hasRemaining()) {
+        return;
+      }
+
+      ByteBuffer frame = frameBuffer;
+      frameBuffer = null;
+      TMessage message = protocolFactory.getProtocol(new TMemoryInputTransport(frame.array())).readMessageBegin();
+      complete(message.seqid, frame, timeouts);
+    }
+  }
+
+  private void complete(int sequenceId, ByteBuffer frame, TAsyncTimeoutWheel timeouts) {
+    TAsyncMethodCall method = inflight.remove(sequenceId);
+    if (method == null) {
+      LOGGER.debug("Dropping the response of timed out call " + sequenceId);
+      if (frame != null) {
+        bufferPool.release(frame.array());
+      }
+      return;
+    }
+    timeouts.remove(method);
+    outstanding.decrementAndGet();
+    try {
+      method.onPipelinedResponse(frame);
+    } catch (RuntimeException e) {
+      LOGGER.error("Ignoring uncaught exception in callback", e);
+    }
+  }
+
+  private void updateInterests() {
+    if (key == null || !key.isValid()) {
+      return;
+    }
+    if (!connected) {
+      key.interestOps(SelectionKey.OP_CONNECT);
+    } else if (writes.isEmpty()) {
+      key.interestOps(SelectionKey.OP_READ);
+    } else {
+      key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+  }
+
+  private void fail(Exception e, TAsyncTimeoutWheel timeouts) {
+    if (error == null) {
+      error = e;
+    }
+    if (key != null) {
+      key.cancel();
+      key.attach(null);
+    }
+    transport.close();
+
+    TAsyncMethodCall method;
+    while ((method = pendingCalls.poll()) != null) {
+      inflight.put(method.getPipelineSequenceId(), method);
+    }
+    for (TAsyncMethodCall failed : inflight.values()) {
+      timeouts.remove(failed);
+      outstanding.decrementAndGet();
+      try {
+        failed.onPipelinedError(e);
+      } catch (RuntimeException exception) {
+        LOGGER.error("Ignoring uncaught exception in callback", exception);
+      }
+    }
+    inflight.clear();
+    writes.clear();
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.facebook.thrift.async;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashed timing wheel of the method call deadlines of a selector thread.
+ * Time is cut into ticks and a call is linked into the bucket of the tick
+ * its deadline falls in, modulo the number of buckets, so adding and
+ * removing a call take constant time. A call expires at most one tick
+ * after its deadline. Deadlines come from System.nanoTime(), so they do
+ * not move with the wall clock.
+ *
+ * Not thread safe, only used by the selector thread.
+ */
+class TAsyncTimeoutWheel {
+
+  private final long tickNanos;
+  private final long startNanos;
+  private final TAsyncMethodCall[] buckets;
+  private final int mask;
+  private long currentTick = 0;
+  private int size = 0;
+
+  /**
+   * @param tickMillis the time covered by a tick
+   * @param bucketCount the number of buckets, rounded up to a power of two
+   */
+  TAsyncTimeoutWheel(long tickMillis, int bucketCount) {
+    if (tickMillis <= 0 || bucketCount <= 0) {
+      throw new IllegalArgumentException("Tick and bucket count must be positive");
+    }
+    int capacity = 1;
+    while (capacity < bucketCount) {
+      capacity <<= 1;
+    }
+    this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+    this.startNanos = System.nanoTime();
+    this.buckets = new TAsyncMethodCall[capacity];
+    this.mask = capacity - 1;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Watch the deadline of a call, once.
+   */
+  void add(TAsyncMethodCall call) {
+    if (call.timeoutScheduled) {
+      return;
+    }
+    long elapsed = call.getDeadlineNanos() - startNanos;
+    // Round up, a call never expires before its deadline
+    long tick = elapsed <= 0 ? 0 : (elapsed + tickNanos - 1) / tickNanos;
+    call.timeoutTick = Math.max(tick, currentTick + 1);
+
+    int index = (int) (call.timeoutTick & mask);
+    TAsyncMethodCall head = buckets[index];
+    call.timeoutPrev = null;
+    call.timeoutNext = head;
+    if (head != null) {
+      head.timeoutPrev = call;
+    }
+    buckets[index] = call;
+    call.timeoutScheduled = true;
+    size++;
+  }
+
+  /**
+   * Stop watching a call, such as when it completed.
+   * @return true if the call was watched
+   */
+  boolean remove(TAsyncMethodCall call) {
+    if (!call.timeoutScheduled) {
+      return false;
+    }
+    TAsyncMethodCall prev = call.timeoutPrev;
+    TAsyncMethodCall next = call.timeoutNext;
+    if (prev != null) {
+      prev.timeoutNext = next;
+    } else {
+      buckets[(int) (call.timeoutTick & mask)] = next;
+    }
+    if (next != null) {
+      next.timeoutPrev = prev;
+    }
+    call.timeoutPrev = null;
+    call.timeoutNext = null;
+    call.timeoutScheduled = false;
+    size--;
+    return true;
+  }
+
+  /**
+   * Advance to the given time, removing the calls whose deadline passed.
+   * @param now the current System.nanoTime()
+   * @param expired receives the removed calls
+   */
+  void expire(long now, List<TAsyncMethodCall> expired) {
+    long nowTick = (now - startNanos) / tickNanos;
+    if (nowTick <= currentTick) {
+      return;
+    }
+    if (size > 0) {
+      // Each bucket needs a single visit however many rounds passed
+      long ticks = Math.min(nowTick - currentTick, buckets.length);
+      for (long tick = currentTick + 1; tick <= currentTick + ticks; tick++) {
+        TAsyncMethodCall call = buckets[(int) (tick & mask)];
+        while (call != null) {
+          TAsyncMethodCall next = call.timeoutNext;
+          if (call.timeoutTick <= nowTick) {
+            remove(call);
+            expired.add(call);
+          }
+          call = next;
+        }
+      }
+    }
+    currentTick = nowTick;
+  }
+
+  /**
+   * @param now the current System.nanoTime()
+   * @return the nanoseconds until the next tick is due
+   */
+  long nanosToNextTick(long now) {
+    return startNanos + (currentTick + 1) * tickNanos - now;
+  }
+}
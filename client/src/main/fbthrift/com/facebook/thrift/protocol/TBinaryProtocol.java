@@ -41,6 +41,13 @@ public class TBinaryProtocol extends TProtocol {
   protected int readLength_;
   protected boolean checkReadLength_ = false;
 
+  /**
+   * Reused to read strings which are not buffered by the transport, so
+   * they are not copied through a new array each. Larger ones still are.
+   */
+  private static final int MAX_STRING_BUFFER_SIZE = 64 * 1024;
+  private byte[] stringBuffer_ = new byte[0];
+
   /**
    * Factory
    */
@@ -365,6 +372,7 @@ public class TBinaryProtocol extends TProtocol {
 
   public String readString() throws TException {
     int size = readI32();
+    checkReadLength(size);
 
     if (trans_.getBytesRemainingInBuffer() >= size) {
       try {
@@ -376,15 +384,27 @@ public class TBinaryProtocol extends TProtocol {
       }
     }
 
-    return readStringBody(size);
+    return readStringBody(size, false);
   }
 
   public String readStringBody(int size) throws TException {
+    return readStringBody(size, true);
+  }
+
+  private String readStringBody(int size, boolean checkLength) throws TException {
     try {
-      checkReadLength(size);
-      byte[] buf = new byte[size];
+      if (checkLength) {
+        checkReadLength(size);
+      }
+      byte[] buf = stringBuffer_;
+      if (buf.length < size) {
+        buf = new byte[size];
+        if (size <= MAX_STRING_BUFFER_SIZE) {
+          stringBuffer_ = buf;
+        }
+      }
       trans_.readAll(buf, 0, size);
-      return new String(buf, "UTF-8");
+      return new String(buf, 0, size, "UTF-8");
     } catch (UnsupportedEncodingException uex) {
       throw new TException("JVM DOES NOT SUPPORT UTF-8");
     }
@@ -394,7 +414,12 @@ public class TBinaryProtocol extends TProtocol {
     int size = readI32();
     checkReadLength(size);
     byte[] buf = new byte[size];
-    trans_.readAll(buf, 0, size);
+    if (trans_.getBytesRemainingInBuffer() >= size) {
+      System.arraycopy(trans_.getBuffer(), trans_.getBufferPosition(), buf, 0, size);
+      trans_.consumeBuffer(size);
+    } else {
+      trans_.readAll(buf, 0, size);
+    }
     return buf;
   }
 
@@ -120,6 +120,13 @@ public final class TCompactProtocol extends TProtocol {
    */
   private Boolean boolValue_ = null;
 
+  /**
+   * Reused to read strings which are not buffered by the transport, so
+   * they are not copied through a new array each. Larger ones still are.
+   */
+  private static final int MAX_STRING_BUFFER_SIZE = 64 * 1024;
+  private byte[] stringBuffer_ = new byte[0];
+
   /**
    * Create a TCompactProtocol.
    *
@@ -664,6 +671,7 @@ public final class TCompactProtocol extends TProtocol {
    */
   public String readString() throws TException {
     int length = readVarint32();
+    checkLength(length);
 
     if (length == 0) {
      return "";
@@ -675,7 +683,15 @@ public final class TCompactProtocol extends TProtocol {
         trans_.consumeBuffer(length);
         return str;
       } else {
-        return new String(readBinary(length), "UTF-8");
+        byte[] buf = stringBuffer_;
+        if (buf.length < length) {
+          buf = new byte[length];
+          if (length <= MAX_STRING_BUFFER_SIZE) {
+            stringBuffer_ = buf;
+          }
+        }
+        trans_.readAll(buf, 0, length);
+        return new String(buf, 0, length, "UTF-8");
       }
     } catch (UnsupportedEncodingException e) {
       throw new TException("UTF-8 not supported!");
@@ -691,13 +707,25 @@ public final class TCompactProtocol extends TProtocol {
   }
 
   private byte[] readBinary(int length) throws TException {
+    checkLength(length);
     if (length == 0) return new byte[0];
 
     byte[] buf = new byte[length];
-    trans_.readAll(buf, 0, length);
+    if (trans_.getBytesRemainingInBuffer() >= length) {
+      System.arraycopy(trans_.getBuffer(), trans_.getBufferPosition(), buf, 0, length);
+      trans_.consumeBuffer(length);
+    } else {
+      trans_.readAll(buf, 0, length);
+    }
     return buf;
   }
 
+  private void checkLength(int length) throws TProtocolException {
+    if (length < 0) {
+      throw new TProtocolException(TProtocolException.NEGATIVE_SIZE, "Negative length: " + length);
+    }
+  }
+
   //
   // These methods are here for the struct to call, but don't have any wire
   // encoding.
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.facebook.thrift.transport;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recycles the byte arrays of serialized frames. Arrays come in size
+ * classes of powers of two, and each class keeps a bounded number of free
+ * arrays, so frames of any size reuse a few arrays instead of churning the
+ * heap. Arrays larger than the largest class are neither pooled nor kept.
+ *
+ * The pool is shared by all threads, as a frame is usually serialized by
+ * the calling thread and written, then recycled, by a selector thread.
+ * An array must not be used once released.
+ */
+public class TBufferPool {
+
+  private static final int MIN_CLASS_SHIFT = 8;
+  private static final int DEFAULT_MAX_CLASS_SHIFT = 23;
+  private static final int DEFAULT_BYTES_PER_CLASS = 1 << 20;
+
+  private static final TBufferPool DEFAULT =
+    new TBufferPool(1 << DEFAULT_MAX_CLASS_SHIFT, DEFAULT_BYTES_PER_CLASS);
+
+  private final int maxPooledSize;
+  private final ConcurrentLinkedQueue<byte[]>[] free;
+  private final AtomicInteger[] freeCount;
+  private final int[] freeLimit;
+
+  /**
+   * @param maxPooledSize the size of the largest pooled arrays, rounded up to a power of two
+   * @param bytesPerClass the free bytes kept per size class, at least two arrays
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public TBufferPool(int maxPooledSize, int bytesPerClass) {
+    if (maxPooledSize <= 0 || maxPooledSize > (1 << 30) || bytesPerClass < 0) {
+      throw new IllegalArgumentException("Invalid buffer pool size");
+    }
+    int classes = sizeClass(maxPooledSize) + 1;
+    this.maxPooledSize = classSize(classes - 1);
+    this.free = new ConcurrentLinkedQueue[classes];
+    this.freeCount = new AtomicInteger[classes];
+    this.freeLimit = new int[classes];
+    for (int i = 0; i < classes; i++) {
+      free[i] = new ConcurrentLinkedQueue<byte[]>();
+      freeCount[i] = new AtomicInteger(0);
+      freeLimit[i] = Math.max(2, bytesPerClass / classSize(i));
+    }
+  }
+
+  /**
+   * @return the pool shared by the transports and async calls by default
+   */
+  public static TBufferPool getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * Take an array of at least the given size, of its size class if pooled.
+   * @param size the bytes needed
+   * @return a free array, with unspecified contents
+   */
+  public byte[] acquire(int size) {
+    if (size < 0) {
+      throw new IllegalArgumentException("Negative buffer size: " + size);
+    }
+    if (size > maxPooledSize) {
+      return new byte[size];
+    }
+    int sizeClass = sizeClass(size);
+    byte[] buffer = free[sizeClass].poll();
+    if (buffer == null) {
+      return new byte[classSize(sizeClass)];
+    }
+    freeCount[sizeClass].decrementAndGet();
+    return buffer;
+  }
+
+  /**
+   * Give back an array which nothing refers to any more. Arrays not sized
+   * like a size class, or beyond the free arrays kept, are left to the GC.
+   * @param buffer the array, may be null
+   */
+  public void release(byte[] buffer) {
+    if (buffer == null || buffer.length > maxPooledSize) {
+      return;
+    }
+    int sizeClass = sizeClass(buffer.length);
+    if (classSize(sizeClass) != buffer.length) {
+      return;
+    }
+    if (freeCount[sizeClass].incrementAndGet() > freeLimit[sizeClass]) {
+      freeCount[sizeClass].decrementAndGet();
+      return;
+    }
+    free[sizeClass].offer(buffer);
+  }
+
+  private static int sizeClass(int size) {
+    if (size <= (1 << MIN_CLASS_SHIFT)) {
+      return 0;
+    }
+    return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_CLASS_SHIFT;
+  }
+
+  private static int classSize(int sizeClass) {
+    return 1 << (sizeClass + MIN_CLASS_SHIFT);
+  }
+}
@@ -19,8 +19,6 @@
 
 package com.facebook.thrift.transport;
 
-import com.facebook.thrift.TByteArrayOutputStream;
-
 /**
  * TFramedTransport is a buffered TTransport that ensures a fully read message
  * every time by prefixing messages with a 4-byte frame size.
@@ -29,6 +27,10 @@ public class TFramedTransport extends TTransport {
 
   protected static final int DEFAULT_MAX_LENGTH = 0x7FFFFFFF;
 
+  private static final int ARRAY_KEEP_SIZE = 64 * 1024;
+
+  private static final int INITIAL_WRITE_SIZE = 1024;
+
   private int maxLength_;
 
   /**
@@ -36,18 +38,23 @@ public class TFramedTransport extends TTransport {
    */
   protected TTransport transport_ = null;
 
-  /**
-   * Buffer for output
-   */
-  protected final TByteArrayOutputStream writeBuffer_ =
-    new TByteArrayOutputStream(1024);
-
   /**
    * Buffer for input
    */
   protected TMemoryInputTransport readBuffer_ =
     new TMemoryInputTransport(new byte[0]);
 
+  /**
+   * Pooled arrays the frames are read into and written from, reused for
+   * every frame that fits. One much larger than the frames goes back to the
+   * pool, so a single huge frame does not pin its array for the life of the
+   * transport. The frame written is kept after a 4-byte gap for its size.
+   */
+  private final TBufferPool bufferPool_ = TBufferPool.getDefault();
+  private byte[] readArray_ = null;
+  private byte[] writeArray_ = null;
+  private int writeLen_ = 0;
+
   public static class Factory extends TTransportFactory {
     private int maxLength_;
 
@@ -91,6 +98,12 @@ public class TFramedTransport extends TTransport {
   @Override
   public void close() {
     transport_.close();
+    readBuffer_.reset(new byte[0]);
+    bufferPool_.release(readArray_);
+    readArray_ = null;
+    bufferPool_.release(writeArray_);
+    writeArray_ = null;
+    writeLen_ = 0;
   }
 
   @Override
@@ -147,28 +160,56 @@ public class TFramedTransport extends TTransport {
       );
     }
 
-    byte[] buff = new byte[size];
-    transport_.readAll(buff, 0, size);
-    readBuffer_.reset(buff);
+    if (readArray_ == null || readArray_.length < size || oversized(readArray_, size)) {
+      bufferPool_.release(readArray_);
+      readArray_ = null;
+      readArray_ = bufferPool_.acquire(size);
+    }
+    transport_.readAll(readArray_, 0, size);
+    readBuffer_.reset(readArray_, 0, size);
   }
 
   @Override
   public void write(byte[] buf, int off, int len) throws TTransportException {
-    writeBuffer_.write(buf, off, len);
+    ensureWriteCapacity(4 + writeLen_ + len);
+    System.arraycopy(buf, off, writeArray_, 4 + writeLen_, len);
+    writeLen_ += len;
   }
 
   @Override
   public void flush() throws TTransportException {
-    byte[] buf = writeBuffer_.get();
-    int len = writeBuffer_.len();
-    writeBuffer_.reset();
-
-    encodeWord(len, i32buf);
-    transport_.write(i32buf, 0, 4);
-    transport_.write(buf, 0, len);
+    int len = writeLen_;
+    writeLen_ = 0;
+    ensureWriteCapacity(4);
+
+    encodeWord(len, writeArray_);
+    transport_.write(writeArray_, 0, 4 + len);
+    if (oversized(writeArray_, 4 + len)) {
+      bufferPool_.release(writeArray_);
+      writeArray_ = null;
+    }
     transport_.flush();
   }
 
+  private void ensureWriteCapacity(int size) throws TTransportException {
+    if (size < 0) {
+      throw new TTransportException("Frame larger than 2GB");
+    }
+    if (writeArray_ == null) {
+      writeArray_ = bufferPool_.acquire(Math.max(INITIAL_WRITE_SIZE, size));
+    } else if (writeArray_.length < size) {
+      byte[] grown = bufferPool_.acquire(
+        (int) Math.min(Integer.MAX_VALUE, Math.max(2L * writeArray_.length, size)));
+      System.arraycopy(writeArray_, 0, grown, 0, 4 + writeLen_);
+      bufferPool_.release(writeArray_);
+      writeArray_ = grown;
+    }
+  }
+
+  private static boolean oversized(byte[] array, int size) {
+    return array.length > ARRAY_KEEP_SIZE && array.length / 4 > size;
+  }
+
 
   /**
    * Functions to encode/decode int32 and int16 to/from network byte order
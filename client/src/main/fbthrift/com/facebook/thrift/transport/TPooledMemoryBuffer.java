@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.facebook.thrift.transport;
+
+/**
+ * Write only memory buffer whose arrays come from a TBufferPool. Growing
+ * the buffer copies into the next size class and recycles the old array,
+ * so serializing large messages does not leave a trail of garbage arrays.
+ */
+public class TPooledMemoryBuffer extends TTransport {
+
+  private final TBufferPool pool;
+  private byte[] buf_;
+  private int len_;
+
+  public TPooledMemoryBuffer(TBufferPool pool, int size) {
+    this.pool = pool;
+    this.buf_ = pool.acquire(size);
+    this.len_ = 0;
+  }
+
+  @Override
+  public boolean isOpen() {
+    return true;
+  }
+
+  @Override
+  public void open() {
+    /* Do nothing */
+  }
+
+  @Override
+  public void close() {
+    /* Do nothing */
+  }
+
+  @Override
+  public int read(byte[] buf, int off, int len) throws TTransportException {
+    throw new UnsupportedOperationException("No reading allowed!");
+  }
+
+  @Override
+  public void write(byte[] buf, int off, int len) {
+    ensureCapacity(len_ + len);
+    System.arraycopy(buf, off, buf_, len_, len);
+    len_ += len;
+  }
+
+  private void ensureCapacity(int size) {
+    if (size <= buf_.length) {
+      return;
+    }
+    if (size < 0) {
+      throw new OutOfMemoryError("Memory buffer larger than 2GB");
+    }
+    byte[] grown = pool.acquire((int) Math.min(Integer.MAX_VALUE, Math.max(2L * buf_.length, size)));
+    System.arraycopy(buf_, 0, grown, 0, len_);
+    pool.release(buf_);
+    buf_ = grown;
+  }
+
+  public int length() {
+    return len_;
+  }
+
+  /**
+   * @return the array holding the buffer, longer than its length
+   */
+  public byte[] getArray() {
+    return buf_;
+  }
+
+  /**
+   * Give the array back to the pool, the buffer must not be used afterwards.
+   */
+  public void release() {
+    pool.release(buf_);
+    buf_ = null;
+    len_ = 0;
+  }
+}
@@ -0,0 +1,150 @@
+/* Copyright (c) 2019 vesoft inc. All rights reserved.
+ *
+ * This source code is licensed under Apache 2.0 License,
+ * attached with Common Clause Condition 1.0, found in the LICENSES directory.
+ */
+
+package com.vesoft.nebula;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * The configuration of the per-host connection pools.
+ */
+public class ConnectionPoolConfig {
+
+    public static final int DEFAULT_MIN_CONNECTIONS = 1;
+    public static final int DEFAULT_MAX_CONNECTIONS = 8;
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = 60 * 1000;
+    public static final long DEFAULT_BORROW_TIMEOUT_MS = 1000;
+    public static final long DEFAULT_HEALTH_CHECK_INTERVAL_MS = 10 * 1000;
+
+    private final int minConnections;
+    private final int maxConnections;
+    private final long idleTimeout;
+    private final long borrowTimeout;
+    private final long healthCheckInterval;
+
+    private ConnectionPoolConfig(Builder builder) {
+        this.minConnections = builder.minConnections;
+        this.maxConnections = builder.maxConnections;
+        this.idleTimeout = builder.idleTimeout;
+        this.borrowTimeout = builder.borrowTimeout;
+        this.healthCheckInterval = builder.healthCheckInterval;
+    }
+
+    /**
+     * @return The pool config with the default values.
+     */
+    public static ConnectionPoolConfig defaultConfig() {
+        return new Builder().build();
+    }
+
+    public int getMinConnections() {
+        return minConnections;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public long getBorrowTimeout() {
+        return borrowTimeout;
+    }
+
+    public long getHealthCheckInterval() {
+        return healthCheckInterval;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPoolConfig{"
+                + "minConnections=" + minConnections
+                + ", maxConnections=" + maxConnections
+                + ", idleTimeout=" + idleTimeout
+                + ", borrowTimeout=" + borrowTimeout
+                + ", healthCheckInterval=" + healthCheckInterval
+                + '}';
+    }
+
+    public static class Builder {
+        private int minConnections = DEFAULT_MIN_CONNECTIONS;
+        private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+        private long idleTimeout = DEFAULT_IDLE_TIMEOUT_MS;
+        private long borrowTimeout = DEFAULT_BORROW_TIMEOUT_MS;
+        private long healthCheckInterval = DEFAULT_HEALTH_CHECK_INTERVAL_MS;
+
+        /**
+         * Supplement the number of connections kept open per host.
+         *
+         * @param minConnections the minimum connections.
+         * @return The builder instance of pool config.
+         */
+        public Builder withMinConnections(int minConnections) {
+            checkArgument(minConnections >= 0);
+            this.minConnections = minConnections;
+            return this;
+        }
+
+        /**
+         * Supplement the upper bound of connections per host.
+         *
+         * @param maxConnections the maximum connections.
+         * @return The builder instance of pool config.
+         */
+        public Builder withMaxConnections(int maxConnections) {
+            checkArgument(maxConnections > 0);
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        /**
+         * Supplement how long a connection above the minimum may stay idle.
+         *
+         * @param idleTimeout the idle timeout in milliseconds.
+         * @return The builder instance of pool config.
+         */
+        public Builder withIdleTimeout(long idleTimeout) {
+            checkArgument(idleTimeout > 0);
+            this.idleTimeout = idleTimeout;
+            return this;
+        }
+
+        /**
+         * Supplement how long a caller waits for a free connection.
+         *
+         * @param borrowTimeout the borrow timeout in milliseconds.
+         * @return The builder instance of pool config.
+         */
+        public Builder withBorrowTimeout(long borrowTimeout) {
+            checkArgument(borrowTimeout >= 0);
+            this.borrowTimeout = borrowTimeout;
+            return this;
+        }
+
+        /**
+         * Supplement the interval of the background eviction and health check.
+         *
+         * @param healthCheckInterval the interval in milliseconds.
+         * @return The builder instance of pool config.
+         */
+        public Builder withHealthCheckInterval(long healthCheckInterval) {
+            checkArgument(healthCheckInterval > 0);
+            this.healthCheckInterval = healthCheckInterval;
+            return this;
+        }
+
+        /**
+         * @return The pool config instance.
+         */
+        public ConnectionPoolConfig build() {
+            checkArgument(minConnections <= maxConnections,
+                    "minConnections should not be greater than maxConnections");
+            return new ConnectionPoolConfig(this);
+        }
+    }
+}
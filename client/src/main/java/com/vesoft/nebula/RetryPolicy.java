@@ -0,0 +1,286 @@
+/* Copyright (c) 2019 vesoft inc. All rights reserved.
+ *
+ * This source code is licensed under Apache 2.0 License,
+ * attached with Common Clause Condition 1.0, found in the LICENSES directory.
+ */
+
+package com.vesoft.nebula;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.vesoft.nebula.utils.TokenBudget;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * How the graph, meta and storage clients retry a failed request.
+ *
+ * <p>A call gets a {@link Retry} holding its deadline, if the policy sets
+ * one. Every retry waits an exponential backoff with jitter, never past the
+ * deadline, and the timeout of each attempt is cut to the time left. A request which may have been
+ * executed is only sent again if it is idempotent. Retries also draw from a
+ * budget refilled by a fraction of the calls, so a failing node does not
+ * multiply the load on the cluster.</p>
+ */
+public class RetryPolicy {
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final long DEFAULT_BASE_DELAY_MS = 50;
+    public static final long DEFAULT_MAX_DELAY_MS = 1000;
+    public static final long NO_DEADLINE = 0;
+    public static final double DEFAULT_BUDGET_RATIO = 0.1;
+    public static final int DEFAULT_BUDGET_CAPACITY = 100;
+
+    private final int maxAttempts;
+    private final boolean maxAttemptsSet;
+    private final long baseDelay;
+    private final long maxDelay;
+    private final long deadline;
+    private final TokenBudget budget;
+    private final Random random = new Random();
+
+    private RetryPolicy(Builder builder) {
+        this.maxAttempts = builder.maxAttempts;
+        this.maxAttemptsSet = builder.maxAttemptsSet;
+        this.baseDelay = builder.baseDelay;
+        this.maxDelay = builder.maxDelay;
+        this.deadline = builder.deadline;
+        this.budget = new TokenBudget(builder.budgetRatio, builder.budgetCapacity);
+    }
+
+    /**
+     * @return The retry policy with the default values.
+     */
+    public static RetryPolicy defaultPolicy() {
+        return new Builder().build();
+    }
+
+    /**
+     * Start a call, its deadline counts from now.
+     *
+     * @return The retry state of the call.
+     */
+    public Retry start() {
+        return start(maxAttempts);
+    }
+
+    /**
+     * Start a call allowing another number of attempts, such as the retry
+     * count a client was configured with, unless the policy was built with
+     * its own max attempts.
+     *
+     * @param attempts the max attempts of the call, the first one included
+     * @return The retry state of the call.
+     */
+    public Retry start(int attempts) {
+        budget.deposit();
+        return new Retry(maxAttemptsSet ? maxAttempts : attempts, deadline == NO_DEADLINE
+            ? Long.MAX_VALUE : System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadline));
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @return The deadline in ms of a call, {@link #NO_DEADLINE} if none.
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * @return The backoff before the given retry, a random time in the upper
+     *         half of the exponential delay.
+     */
+    private long delay(int retry) {
+        long delay = Math.min(maxDelay, baseDelay << Math.min(Math.max(retry - 1, 0), 20));
+        long half = delay / 2;
+        synchronized (random) {
+            return half + (long) (random.nextDouble() * (delay - half));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy{"
+                + "maxAttempts=" + maxAttempts
+                + ", baseDelay=" + baseDelay
+                + ", maxDelay=" + maxDelay
+                + ", deadline=" + deadline
+                + ", budget=" + budget.getTokens()
+                + '}';
+    }
+
+    /**
+     * The retry state of a call, shared by the requests it sends in parallel.
+     */
+    public final class Retry {
+        private final int attempts;
+        // Long.MAX_VALUE if the call has no deadline.
+        private final long deadlineNanos;
+        private final AtomicInteger attempt = new AtomicInteger(1);
+
+        private Retry(int attempts, long deadlineNanos) {
+            this.attempts = attempts;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * Take another attempt right away, such as to follow a redirect.
+         *
+         * @param idempotent whether the request may be sent again, also true
+         *                   if it surely was not executed
+         * @return false if the attempts, the deadline or the budget ran out.
+         */
+        public boolean canRetry(boolean idempotent) {
+            if (!idempotent || remainingMillis() <= 0) {
+                return false;
+            }
+            int current;
+            do {
+                current = attempt.get();
+                if (current >= attempts) {
+                    return false;
+                }
+            } while (!attempt.compareAndSet(current, current + 1));
+            if (!budget.withdraw()) {
+                attempt.decrementAndGet();
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Wait the backoff of the current attempt, at most until the deadline.
+         *
+         * @return false if the deadline passed or the thread was interrupted.
+         */
+        public boolean backoff() {
+            long sleep = Math.min(delay(attempt.get() - 1), remainingMillis());
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return remainingMillis() > 0;
+        }
+
+        /**
+         * Take another attempt after the backoff.
+         *
+         * @param idempotent whether the request may be sent again, also true
+         *                   if it surely was not executed
+         * @return false if the request should not be sent again.
+         */
+        public boolean retry(boolean idempotent) {
+            return canRetry(idempotent) && backoff();
+        }
+
+        /**
+         * @return The number of the current attempt, starting from 1.
+         */
+        public int getAttempt() {
+            return attempt.get();
+        }
+
+        /**
+         * @return The time in ms left before the deadline, Long.MAX_VALUE if none.
+         */
+        public long remainingMillis() {
+            if (deadlineNanos == Long.MAX_VALUE) {
+                return Long.MAX_VALUE;
+            }
+            return TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+        }
+
+        /**
+         * @param timeout the timeout in ms of a request
+         * @return The timeout cut to the time left before the deadline.
+         */
+        public int attemptTimeout(int timeout) {
+            return (int) Math.max(1, Math.min(timeout, remainingMillis()));
+        }
+    }
+
+    public static class Builder {
+        private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+        private boolean maxAttemptsSet = false;
+        private long baseDelay = DEFAULT_BASE_DELAY_MS;
+        private long maxDelay = DEFAULT_MAX_DELAY_MS;
+        private long deadline = NO_DEADLINE;
+        private double budgetRatio = DEFAULT_BUDGET_RATIO;
+        private int budgetCapacity = DEFAULT_BUDGET_CAPACITY;
+
+        /**
+         * Supplement the max attempts of a call, the first one included. It
+         * overrides the retry counts the clients were constructed with.
+         *
+         * @param maxAttempts the maximum attempts.
+         * @return The builder instance of retry policy.
+         */
+        public Builder withMaxAttempts(int maxAttempts) {
+            checkArgument(maxAttempts > 0);
+            this.maxAttempts = maxAttempts;
+            this.maxAttemptsSet = true;
+            return this;
+        }
+
+        /**
+         * Supplement the backoff, doubled by every retry up to the maximum.
+         *
+         * @param baseDelay the backoff of the first retry in milliseconds.
+         * @param maxDelay  the maximum backoff in milliseconds.
+         * @return The builder instance of retry policy.
+         */
+        public Builder withBackoff(long baseDelay, long maxDelay) {
+            checkArgument(baseDelay > 0);
+            checkArgument(maxDelay >= baseDelay);
+            this.baseDelay = baseDelay;
+            this.maxDelay = maxDelay;
+            return this;
+        }
+
+        /**
+         * Supplement the total time of a call including all its retries. By
+         * default a call has no deadline, and every attempt keeps the timeout
+         * of its client.
+         *
+         * @param deadline the deadline in milliseconds.
+         * @return The builder instance of retry policy.
+         */
+        public Builder withDeadline(long deadline) {
+            checkArgument(deadline > 0);
+            this.deadline = deadline;
+            return this;
+        }
+
+        /**
+         * Supplement the retry budget: every call earns ratio of a retry,
+         * up to capacity retries kept for bursts.
+         *
+         * @param ratio    the retries earned per call.
+         * @param capacity the maximum retries kept.
+         * @return The builder instance of retry policy.
+         */
+        public Builder withBudget(double ratio, int capacity) {
+            checkArgument(ratio >= 0);
+            checkArgument(capacity >= 0);
+            this.budgetRatio = ratio;
+            this.budgetCapacity = capacity;
+            return this;
+        }
+
+        /**
+         * @return The retry policy instance.
+         */
+        public RetryPolicy build() {
+            return new RetryPolicy(this);
+        }
+    }
+}
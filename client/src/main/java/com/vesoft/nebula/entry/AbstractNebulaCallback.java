@@ -6,55 +6,81 @@
 
 package com.vesoft.nebula.entry;
 
-import com.facebook.thrift.TBase;
 import com.facebook.thrift.TException;
 import com.facebook.thrift.async.AsyncMethodCallback;
 import com.facebook.thrift.async.TAsyncMethodCall;
 import com.google.common.base.Optional;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.ExecutionException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public abstract class AbstractNebulaCallback implements AsyncMethodCallback {
+/**
+ * The callback of an async thrift call. The result is published through a
+ * future which is completed directly on the selector thread, so callers are
+ * woken up as soon as the response has been read.
+ *
+ * @param <T> the response type of the call
+ */
+public abstract class AbstractNebulaCallback<T> implements AsyncMethodCallback {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractNebulaCallback.class);
 
-    protected TBase result;
+    private final SettableFuture<T> future = SettableFuture.create();
 
-    protected AtomicBoolean isReady = new AtomicBoolean(false);
+    /**
+     * @return The future completed with the response, or failed with the call error.
+     */
+    public ListenableFuture<T> getFuture() {
+        return future;
+    }
 
-    public Optional<?> getResult() throws InterruptedException {
-        while (!checkReady()) {
-            Thread.sleep(100);
+    /**
+     * Wait for the response.
+     *
+     * @return The response, absent if the call failed.
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Optional<T> getResult() throws InterruptedException {
+        try {
+            return Optional.fromNullable(future.get());
+        } catch (ExecutionException e) {
+            return Optional.absent();
         }
-        return Optional.of(result);
     }
 
     @Override
     public void onComplete(TAsyncMethodCall response) {
         try {
-            doComplete(response);
-            isReady.compareAndSet(false, true);
+            future.set(doComplete(response));
         } catch (TException e) {
-            e.printStackTrace();
+            LOGGER.error(String.format("Read response failed: %s", e.getMessage()));
+            future.setException(e);
+        } finally {
+            // The response is decoded, its buffer can be reused
+            response.releaseBuffers();
         }
     }
 
-    public abstract void doComplete(TAsyncMethodCall response) throws TException;
+    /**
+     * Decode the response of the finished call.
+     *
+     * @param response the finished call
+     * @return The response.
+     * @throws TException if the response could not be read
+     */
+    public abstract T doComplete(TAsyncMethodCall response) throws TException;
 
     public boolean checkReady() {
-        if (isReady.get()) {
-            return true;
-        } else {
-            return false;
-        }
+        return future.isDone();
     }
 
     @Override
     public void onError(Exception exception) {
         LOGGER.error(String.format("onError: %s", exception.toString()));
-        exception.printStackTrace();
+        future.setException(exception);
     }
 }
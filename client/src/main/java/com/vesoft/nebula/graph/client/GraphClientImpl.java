@@ -12,12 +12,13 @@ import com.facebook.thrift.TException;
 import com.facebook.thrift.protocol.TCompactProtocol;
 import com.facebook.thrift.protocol.TProtocol;
 import com.facebook.thrift.transport.TSocket;
-import com.facebook.thrift.transport.TTransport;
 import com.facebook.thrift.transport.TTransportException;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.net.HostAndPort;
 import com.google.common.net.InetAddresses;
+import com.vesoft.nebula.RetryPolicy;
 import com.vesoft.nebula.graph.AuthResponse;
 import com.vesoft.nebula.graph.ErrorCode;
 import com.vesoft.nebula.graph.ExecutionResponse;
@@ -39,8 +40,14 @@ public class GraphClientImpl implements GraphClient {
     private final int executionRetry;
     private final int timeout;
     private long sessionID;
-    private TTransport transport = null;
+    private HostAndPort address;
+    private TSocket transport = null;
     private GraphService.Client client;
+    private volatile RetryPolicy retryPolicy = RetryPolicy.defaultPolicy();
+
+    // The statements which only read, so they are safe to execute again.
+    private static final List<String> READ_STATEMENTS = ImmutableList.of("GO", "FETCH",
+        "LOOKUP", "FIND", "MATCH", "SHOW", "DESCRIBE", "DESC", "USE", "YIELD");
 
     /**
      * The Constructor of Graph Client.
@@ -101,12 +108,12 @@ public class GraphClientImpl implements GraphClient {
      */
     @Override
     public int connect(String username, String password) {
-        int retry = connectionRetry;
-        while (retry-- != 0) {
-            Random random = new Random(System.currentTimeMillis());
-            int position = random.nextInt(addresses.size());
-            HostAndPort address = addresses.get(position);
-            transport = new TSocket(address.getHostText(), address.getPort(), timeout);
+        RetryPolicy.Retry retry = retryPolicy.start(connectionRetry);
+        int position = new Random(System.currentTimeMillis()).nextInt(addresses.size());
+        do {
+            address = addresses.get(position++ % addresses.size());
+            transport = new TSocket(address.getHostText(), address.getPort(),
+                retry.attemptTimeout(timeout));
             TProtocol protocol = new TCompactProtocol(transport);
 
             try {
@@ -123,6 +130,7 @@ public class GraphClientImpl implements GraphClient {
                         address.toString(), result.getError_msg()));
                 } else {
                     sessionID = result.getSession_id();
+                    transport.setTimeout(timeout);
                     return ErrorCode.SUCCEEDED;
                 }
             } catch (TTransportException tte) {
@@ -130,7 +138,8 @@ public class GraphClientImpl implements GraphClient {
             } catch (TException te) {
                 LOGGER.error("Connect failed: " + te.getMessage());
             }
-        }
+            transport.close();
+        } while (retry.retry(true));
         return ErrorCode.E_FAIL_TO_CONNECT;
     }
 
@@ -156,9 +165,10 @@ public class GraphClientImpl implements GraphClient {
             return ErrorCode.E_DISCONNECTED;
         }
 
-        int retry = executionRetry;
-        while (retry-- > 0) {
+        RetryPolicy.Retry retry = retryPolicy.start(executionRetry);
+        while (true) {
             try {
+                transport.setTimeout(retry.attemptTimeout(timeout));
                 ExecutionResponse executionResponse = client.execute(sessionID, statement);
                 if (executionResponse.getError_code() != ErrorCode.SUCCEEDED) {
                     LOGGER.error("execute error: " + executionResponse.getError_msg());
@@ -166,10 +176,12 @@ public class GraphClientImpl implements GraphClient {
                 return executionResponse.getError_code();
             } catch (TException e) {
                 LOGGER.error("Thrift rpc call failed: " + e.getMessage());
-                return ErrorCode.E_RPC_FAILURE;
+                transport.close();
+                if (!retry.retry(isReadOnly(statement)) || !reopen()) {
+                    return ErrorCode.E_RPC_FAILURE;
+                }
             }
         }
-        return ErrorCode.E_RPC_FAILURE;
     }
 
     /**
@@ -186,7 +198,20 @@ public class GraphClientImpl implements GraphClient {
             throw new ConnectionException();
         }
 
-        ExecutionResponse executionResponse = client.execute(sessionID, statement);
+        RetryPolicy.Retry retry = retryPolicy.start(executionRetry);
+        ExecutionResponse executionResponse;
+        while (true) {
+            try {
+                transport.setTimeout(retry.attemptTimeout(timeout));
+                executionResponse = client.execute(sessionID, statement);
+                break;
+            } catch (TException e) {
+                transport.close();
+                if (!retry.retry(isReadOnly(statement)) || !reopen()) {
+                    throw e;
+                }
+            }
+        }
         int code = executionResponse.getError_code();
         if (code == ErrorCode.SUCCEEDED) {
             return new ResultSet(executionResponse.getColumn_names(),
@@ -197,10 +222,86 @@ public class GraphClientImpl implements GraphClient {
         }
     }
 
-    private boolean checkTransportOpened(TTransport transport) {
+    /**
+     * Open the connection to the graph service of the session again, the
+     * session lives on as long as it does not expire.
+     *
+     * @return true if reopened.
+     */
+    private boolean reopen() {
+        transport = new TSocket(address.getHostText(), address.getPort(), timeout);
+        try {
+            transport.open();
+        } catch (TTransportException e) {
+            LOGGER.error(String.format("Reconnect %s failed: %s", address, e.getMessage()));
+            return false;
+        }
+        client = new GraphService.Client(new TCompactProtocol(transport));
+        return true;
+    }
+
+    /**
+     * A statement which may have been executed is only executed again if all
+     * its sentences only read.
+     */
+    private static boolean isReadOnly(String statement) {
+        for (String keyword : keywords(statement)) {
+            if (!READ_STATEMENTS.contains(keyword)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if a sentence of the statement switches the space.
+     */
+    static boolean isSwitchSpace(String statement) {
+        return keywords(statement).contains("USE");
+    }
+
+    /**
+     * @return The leading keyword of every sentence of the statement, upper cased.
+     */
+    private static List<String> keywords(String statement) {
+        List<String> keywords = Lists.newArrayList();
+        for (String sentence : statement.split("[;|]")) {
+            String trimmed = sentence.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int end = 0;
+            while (end < trimmed.length() && Character.isLetter(trimmed.charAt(end))) {
+                end++;
+            }
+            keywords.add(trimmed.substring(0, end).toUpperCase());
+        }
+        return keywords;
+    }
+
+    /**
+     * Replace the retry policy of connecting and executing.
+     *
+     * @param retryPolicy the retry policy
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    private boolean checkTransportOpened(TSocket transport) {
         return transport != null && transport.isOpen();
     }
 
+    /**
+     * Check whether the client holds an opened connection.
+     * A connection is closed once a RPC on it has failed.
+     *
+     * @return true if the connection is opened.
+     */
+    public boolean isConnected() {
+        return checkTransportOpened(transport);
+    }
+
     /**
      * Sign out from Graph Services.
      */
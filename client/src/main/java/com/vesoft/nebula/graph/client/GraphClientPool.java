@@ -0,0 +1,311 @@
+/* Copyright (c) 2019 vesoft inc. All rights reserved.
+ *
+ * This source code is licensed under Apache 2.0 License,
+ * attached with Common Clause Condition 1.0, found in the LICENSES directory.
+ */
+
+package com.vesoft.nebula.graph.client;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.collect.Lists;
+import com.google.common.net.HostAndPort;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.vesoft.nebula.Client;
+import com.vesoft.nebula.ConnectionPoolConfig;
+import com.vesoft.nebula.graph.ErrorCode;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A pool of authenticated graph sessions spread over all the graph services.
+ * The sessions are created up front, so borrowing one costs no round trip.
+ * Broken sessions are re-established in the background, moving to the next
+ * graph service when their own one can not be reached.
+ */
+public class GraphClientPool implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GraphClientPool.class);
+
+    private final List<HostAndPort> addresses;
+    private final String username;
+    private final String password;
+    private final String space;
+    private final ConnectionPoolConfig config;
+    private final int timeout;
+    private final int executionRetry;
+
+    private final BlockingQueue<PooledGraphClient> idleClients;
+    private final ConcurrentLinkedQueue<PooledGraphClient> brokenClients =
+        new ConcurrentLinkedQueue<PooledGraphClient>();
+    private final ScheduledExecutorService maintainer;
+    private volatile boolean closed = false;
+
+    /**
+     * The Constructor of Graph Client Pool.
+     *
+     * @param addresses      The addresses of graph services.
+     * @param username       The user's name.
+     * @param password       The user's password.
+     * @param space          The space every session uses, null if none.
+     * @param config         The pool config, max connections is the number of sessions.
+     * @param timeout        The timeout of RPC request.
+     * @param executionRetry The number of retries when execution failure.
+     */
+    public GraphClientPool(List<HostAndPort> addresses, String username, String password,
+                           String space, ConnectionPoolConfig config, int timeout,
+                           int executionRetry) {
+        checkArgument(!addresses.isEmpty());
+        checkArgument(timeout > 0);
+        this.addresses = Lists.newArrayList(addresses);
+        this.username = username;
+        this.password = password;
+        this.space = space;
+        this.config = config;
+        this.timeout = timeout;
+        this.executionRetry = executionRetry;
+
+        int size = config.getMaxConnections();
+        this.idleClients = new LinkedBlockingQueue<PooledGraphClient>(size);
+        for (int i = 0; i < size; i++) {
+            PooledGraphClient client = new PooledGraphClient(this, i % this.addresses.size());
+            if (reconnect(client)) {
+                idleClients.offer(client);
+            } else {
+                brokenClients.offer(client);
+            }
+        }
+
+        maintainer = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("graph-pool-maintainer-%d").setDaemon(true).build());
+        long interval = config.getHealthCheckInterval();
+        maintainer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                maintain();
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The Constructor of Graph Client Pool.
+     *
+     * @param addresses The addresses of graph services.
+     * @param username  The user's name.
+     * @param password  The user's password.
+     * @param space     The space every session uses, null if none.
+     */
+    public GraphClientPool(List<HostAndPort> addresses, String username, String password,
+                           String space) {
+        this(addresses, username, password, space, ConnectionPoolConfig.defaultConfig(),
+            Client.DEFAULT_TIMEOUT_MS, Client.DEFAULT_EXECUTION_RETRY_SIZE);
+    }
+
+    /**
+     * Borrow a session, waiting at most the borrow timeout for one to be returned.
+     * The session must be closed to give it back to the pool.
+     *
+     * @return The session.
+     * @throws ConnectionException if no healthy session is available in time.
+     */
+    public GraphClient borrow() throws ConnectionException {
+        long deadline = System.currentTimeMillis() + config.getBorrowTimeout();
+        while (!closed) {
+            long remaining = deadline - System.currentTimeMillis();
+            PooledGraphClient client;
+            try {
+                client = idleClients.poll(Math.max(remaining, 0), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            if (client == null) {
+                LOGGER.error(String.format("No session is available in %d ms",
+                    config.getBorrowTimeout()));
+                break;
+            }
+
+            if (isAlive(client)) {
+                client.lend();
+                return client;
+            }
+            brokenClients.offer(client);
+            scheduleMaintain();
+        }
+        throw new ConnectionException();
+    }
+
+    /**
+     * Execute the statement on a borrowed session.
+     *
+     * @param statement The query sentence.
+     * @return The ErrorCode of status, 0 is succeeded.
+     */
+    public int execute(String statement) {
+        PooledGraphClient client;
+        try {
+            client = (PooledGraphClient) borrow();
+        } catch (ConnectionException e) {
+            return ErrorCode.E_DISCONNECTED;
+        }
+
+        try {
+            return client.execute(statement);
+        } finally {
+            client.close();
+        }
+    }
+
+    /**
+     * @return The number of sessions ready to be borrowed.
+     */
+    public int getIdleClients() {
+        return idleClients.size();
+    }
+
+    /**
+     * @return The number of sessions waiting to be re-established.
+     */
+    public int getBrokenClients() {
+        return brokenClients.size();
+    }
+
+    GraphClientImpl newClient(HostAndPort address) {
+        return new GraphClientImpl(Lists.newArrayList(address), timeout, 1, executionRetry);
+    }
+
+    int authenticate(GraphClientImpl client) {
+        int code = client.connect(username, password);
+        if (code == ErrorCode.SUCCEEDED && space != null) {
+            code = client.switchSpace(space);
+        }
+        return code;
+    }
+
+    void release(PooledGraphClient client) {
+        if (closed) {
+            client.signout();
+            return;
+        }
+
+        client.reset(space);
+        if (client.isConnected()) {
+            idleClients.offer(client);
+        } else {
+            brokenClients.offer(client);
+            scheduleMaintain();
+        }
+    }
+
+    /**
+     * Re-establish the session, trying every graph service once starting
+     * from the one it was bound to.
+     */
+    private boolean reconnect(PooledGraphClient client) {
+        int size = addresses.size();
+        for (int i = 0; i < size; i++) {
+            int index = (client.getAddressIndex() + i) % size;
+            HostAndPort address = addresses.get(index);
+            int code = client.open(index, address);
+            if (code == ErrorCode.SUCCEEDED) {
+                return true;
+            }
+
+            if (code == ErrorCode.E_BAD_USERNAME_PASSWORD) {
+                break;
+            }
+            LOGGER.error(String.format("Open session to %s failed: %d", address, code));
+        }
+        return false;
+    }
+
+    /**
+     * A session unused for a health check interval is checked with a round
+     * trip before being trusted, the others only locally.
+     */
+    private boolean isAlive(PooledGraphClient client) {
+        long idleTime = System.currentTimeMillis() - client.getLastUsedTime();
+        if (idleTime < config.getHealthCheckInterval()) {
+            return client.isConnected();
+        }
+        return client.validate();
+    }
+
+    private void scheduleMaintain() {
+        if (closed) {
+            return;
+        }
+
+        try {
+            maintainer.execute(new Runnable() {
+                @Override
+                public void run() {
+                    maintain();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LOGGER.error("The pool has been closed");
+        }
+    }
+
+    private void maintain() {
+        // Idle sessions whose connection was closed by graphd or whose
+        // session expired, which only a round trip tells.
+        int idle = idleClients.size();
+        for (int i = 0; i < idle && !closed; i++) {
+            PooledGraphClient client = idleClients.poll();
+            if (client == null) {
+                break;
+            }
+
+            if (isAlive(client)) {
+                idleClients.offer(client);
+            } else {
+                brokenClients.offer(client);
+            }
+        }
+
+        int broken = brokenClients.size();
+        for (int i = 0; i < broken && !closed; i++) {
+            PooledGraphClient client = brokenClients.poll();
+            if (client == null) {
+                break;
+            }
+
+            if (reconnect(client)) {
+                idleClients.offer(client);
+            } else {
+                client.signout();
+                brokenClients.offer(client);
+            }
+        }
+    }
+
+    /**
+     * Sign out all the idle sessions. Borrowed sessions are signed out when returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        maintainer.shutdownNow();
+        PooledGraphClient client;
+        while ((client = idleClients.poll()) != null) {
+            client.signout();
+        }
+        while ((client = brokenClients.poll()) != null) {
+            client.signout();
+        }
+    }
+}
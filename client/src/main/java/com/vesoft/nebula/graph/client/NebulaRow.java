@@ -8,38 +8,63 @@ package com.vesoft.nebula.graph.client;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
+import com.google.common.base.Charsets;
 import com.google.common.base.Strings;
-import com.google.common.collect.Maps;
 import com.vesoft.nebula.graph.ColumnValue;
+import com.vesoft.nebula.graph.Date;
+import com.vesoft.nebula.graph.DateTime;
+import com.vesoft.nebula.graph.YearMonth;
 
-import java.nio.charset.Charset;
 import java.util.List;
 import java.util.Map;
 
 /**
- *
+ * A view over one row of a result. The rows of a {@link NebulaRowSet} share a
+ * single instance which is moved to the current row, so a row is only valid
+ * until the cursor advances.
  */
 public class NebulaRow {
+    private final Map<String, Integer> fieldIndex;
     private List<ColumnValue> columns;
-    private Map<String, Integer> fieldIndex = Maps.newHashMap();
 
     /**
      * Constructor
+     *
+     * @param fieldIndex the column index shared by all the rows of a result
+     */
+    NebulaRow(Map<String, Integer> fieldIndex) {
+        this.fieldIndex = fieldIndex;
+    }
+
+    /**
+     * Move the view to another row.
+     *
+     * @param columns the values of the row
      */
-    public NebulaRow() {
+    void reset(List<ColumnValue> columns) {
+        this.columns = columns;
+    }
 
+    /**
+     * @return The number of fields in the row.
+     */
+    public int size() {
+        return columns.size();
     }
 
     /**
      * Get field index by field name.
      *
      * @param field field name
-     * @return
+     * @return The field index.
      */
-    public Integer getFieldIndex(String field) {
+    public int getFieldIndex(String field) {
         checkArgument(!Strings.isNullOrEmpty(field));
-        checkArgument(fieldIndex.containsKey(field));
-        return fieldIndex.get(field);
+        Integer index = fieldIndex.get(field);
+        if (index == null) {
+            throw new IllegalArgumentException(String.format("Field %s does not exist", field));
+        }
+        return index;
     }
 
     /**
@@ -52,6 +77,68 @@ public class NebulaRow {
         return fieldIndex.containsKey(field);
     }
 
+    /**
+     * Get the type of field by field index.
+     *
+     * @param index field index
+     * @return The field id of ColumnValue which is set, 0 if the field is null.
+     */
+    public int getType(int index) {
+        return columns.get(index).getSetField();
+    }
+
+    /**
+     * Get the type of field by field name.
+     *
+     * @param field field name
+     * @return The field id of ColumnValue which is set, 0 if the field is null.
+     */
+    public int getType(String field) {
+        return getType(getFieldIndex(field));
+    }
+
+    /**
+     * Check whether the field is null by field index.
+     *
+     * @param index field index
+     * @return true if no value is set.
+     */
+    public boolean isNull(int index) {
+        return !columns.get(index).isSet();
+    }
+
+    /**
+     * Check whether the field is null by field name.
+     *
+     * @param field field name
+     * @return true if no value is set.
+     */
+    public boolean isNull(String field) {
+        return isNull(getFieldIndex(field));
+    }
+
+    /**
+     * Get the raw UTF-8 bytes of string value by field index. The array is
+     * not copied and must not be modified.
+     *
+     * @param index field index
+     * @return
+     */
+    public byte[] getBytes(int index) {
+        return (byte[]) value(index, ColumnValue.STR).getFieldValue();
+    }
+
+    /**
+     * Get the raw UTF-8 bytes of string value by field name. The array is
+     * not copied and must not be modified.
+     *
+     * @param field field name
+     * @return
+     */
+    public byte[] getBytes(String field) {
+        return getBytes(getFieldIndex(field));
+    }
+
     /**
      * Get string value by field index.
      *
@@ -59,8 +146,7 @@ public class NebulaRow {
      * @return
      */
     public String getString(int index) {
-        byte[] value = columns.get(index).getStr();
-        return new String(value, Charset.defaultCharset());
+        return new String(getBytes(index), Charsets.UTF_8);
     }
 
     /**
@@ -70,53 +156,124 @@ public class NebulaRow {
      * @return
      */
     public String getString(String field) {
-        Integer index = getFieldIndex(field);
-        return getString(index);
+        return getString(getFieldIndex(field));
     }
 
     /**
-     * Get long value by field index.
+     * Get boolean value by field index.
      *
      * @param index field index
      * @return
      */
-    public Long getLong(int index) {
-        return columns.get(index).getInteger();
+    public boolean getBoolean(int index) {
+        return (Boolean) value(index, ColumnValue.BOOL_VAL).getFieldValue();
     }
 
     /**
-     * Get long value by field name.
+     * Get boolean value by field name.
      *
      * @param field field name
      * @return
      */
-    public Long getLong(String field) {
-        Integer index = getFieldIndex(field);
-        return getLong(index);
+    public boolean getBoolean(String field) {
+        return getBoolean(getFieldIndex(field));
     }
 
     /**
-     * Get double value by field index.
+     * Get long value by field index, the field may be an integer, id or timestamp.
      *
      * @param index field index
      * @return
      */
-    public Double getDouble(int index) {
-        double value = columns.get(index).getDouble_precision();
-        return value;
+    public long getLong(int index) {
+        ColumnValue value = columns.get(index);
+        switch (value.getSetField()) {
+          case ColumnValue.INTEGER:
+          case ColumnValue.ID:
+          case ColumnValue.TIMESTAMP:
+              return (Long) value.getFieldValue();
+          default:
+              throw mismatch(index, value, ColumnValue.INTEGER);
+        }
+    }
+
+    /**
+     * Get long value by field name, the field may be an integer, id or timestamp.
+     *
+     * @param field field name
+     * @return
+     */
+    public long getLong(String field) {
+        return getLong(getFieldIndex(field));
     }
 
     /**
-     * Get double value by field name.
+     * Get vertex id by field index.
+     *
+     * @param index field index
+     * @return
+     */
+    public long getId(int index) {
+        return (Long) value(index, ColumnValue.ID).getFieldValue();
+    }
+
+    /**
+     * Get vertex id by field name.
      *
      * @param field field name
      * @return
      */
-    public Double getDouble(String field) {
-        Integer index = getFieldIndex(field);
-        return getDouble(index);
+    public long getId(String field) {
+        return getId(getFieldIndex(field));
     }
 
+    /**
+     * Get timestamp by field index.
+     *
+     * @param index field index
+     * @return The seconds since epoch.
+     */
+    public long getTimestamp(int index) {
+        return (Long) value(index, ColumnValue.TIMESTAMP).getFieldValue();
+    }
+
+    /**
+     * Get timestamp by field name.
+     *
+     * @param field field name
+     * @return The seconds since epoch.
+     */
+    public long getTimestamp(String field) {
+        return getTimestamp(getFieldIndex(field));
+    }
+
+    /**
+     * Get double value by field index, the field may be a double or a float.
+     *
+     * @param index field index
+     * @return
+     */
+    public double getDouble(int index) {
+        ColumnValue value = columns.get(index);
+        switch (value.getSetField()) {
+          case ColumnValue.DOUBLE_PRECISION:
+              return (Double) value.getFieldValue();
+          case ColumnValue.SINGLE_PRECISION:
+              return (Float) value.getFieldValue();
+          default:
+              throw mismatch(index, value, ColumnValue.DOUBLE_PRECISION);
+        }
+    }
+
+    /**
+     * Get double value by field name, the field may be a double or a float.
+     *
+     * @param field field name
+     * @return
+     */
+    public double getDouble(String field) {
+        return getDouble(getFieldIndex(field));
+    }
 
     /**
      * Get float value by field index.
@@ -124,9 +281,8 @@ public class NebulaRow {
      * @param index field index
      * @return
      */
-    public Float getFloat(int index) {
-        float value = columns.get(index).getSingle_precision();
-        return value;
+    public float getFloat(int index) {
+        return (Float) value(index, ColumnValue.SINGLE_PRECISION).getFieldValue();
     }
 
     /**
@@ -135,8 +291,100 @@ public class NebulaRow {
      * @param field field name
      * @return
      */
-    public Float getFloat(String field) {
-        Integer index = getFieldIndex(field);
-        return getFloat(index);
+    public float getFloat(String field) {
+        return getFloat(getFieldIndex(field));
+    }
+
+    /**
+     * Get year by field index.
+     *
+     * @param index field index
+     * @return
+     */
+    public short getYear(int index) {
+        return (Short) value(index, ColumnValue.YEAR).getFieldValue();
+    }
+
+    /**
+     * Get year by field name.
+     *
+     * @param field field name
+     * @return
+     */
+    public short getYear(String field) {
+        return getYear(getFieldIndex(field));
+    }
+
+    /**
+     * Get year and month by field index.
+     *
+     * @param index field index
+     * @return
+     */
+    public YearMonth getMonth(int index) {
+        return (YearMonth) value(index, ColumnValue.MONTH).getFieldValue();
+    }
+
+    /**
+     * Get year and month by field name.
+     *
+     * @param field field name
+     * @return
+     */
+    public YearMonth getMonth(String field) {
+        return getMonth(getFieldIndex(field));
+    }
+
+    /**
+     * Get date by field index.
+     *
+     * @param index field index
+     * @return
+     */
+    public Date getDate(int index) {
+        return (Date) value(index, ColumnValue.DATE).getFieldValue();
+    }
+
+    /**
+     * Get date by field name.
+     *
+     * @param field field name
+     * @return
+     */
+    public Date getDate(String field) {
+        return getDate(getFieldIndex(field));
+    }
+
+    /**
+     * Get date time by field index.
+     *
+     * @param index field index
+     * @return
+     */
+    public DateTime getDateTime(int index) {
+        return (DateTime) value(index, ColumnValue.DATETIME).getFieldValue();
+    }
+
+    /**
+     * Get date time by field name.
+     *
+     * @param field field name
+     * @return
+     */
+    public DateTime getDateTime(String field) {
+        return getDateTime(getFieldIndex(field));
+    }
+
+    private ColumnValue value(int index, int type) {
+        ColumnValue value = columns.get(index);
+        if (value.getSetField() != type) {
+            throw mismatch(index, value, type);
+        }
+        return value;
+    }
+
+    private static IllegalStateException mismatch(int index, ColumnValue value, int type) {
+        return new IllegalStateException(String.format("Field %d is of type %d, not %d",
+            index, value.getSetField(), type));
     }
 }
@@ -6,29 +6,58 @@
 
 package com.vesoft.nebula.graph.client;
 
-import java.util.Iterator;
+import com.vesoft.nebula.graph.RowValue;
 
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A forward only cursor over the rows of a {@link ResultSet}. The rows are
+ * decoded lazily and {@link #next()} always returns the same {@link NebulaRow}
+ * moved to the current row, so iterating a result allocates nothing per row.
+ * Copy the values out of a row before advancing if they are needed later.
+ */
 public class NebulaRowSet implements Iterator<NebulaRow> {
 
+    private final List<RowValue> rows;
+    private final NebulaRow row;
+    private int position = 0;
+
     /**
-     *
+     * @param rows       field values
+     * @param fieldIndex the column index shared by all the rows
      */
-    public NebulaRowSet() {
+    NebulaRowSet(List<RowValue> rows, Map<String, Integer> fieldIndex) {
+        this.rows = rows;
+        this.row = new NebulaRow(fieldIndex);
+    }
 
+    /**
+     * @return The number of rows already returned.
+     */
+    public int getPosition() {
+        return position;
     }
 
     @Override
     public boolean hasNext() {
-        return false;
+        return position < rows.size();
     }
 
     @Override
     public NebulaRow next() {
-        return null;
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        row.reset(rows.get(position++).getColumns());
+        return row;
     }
 
     @Override
     public void remove() {
-
+        throw new UnsupportedOperationException("The result is read only");
     }
 }
@@ -0,0 +1,179 @@
+/* Copyright (c) 2019 vesoft inc. All rights reserved.
+ *
+ * This source code is licensed under Apache 2.0 License,
+ * attached with Common Clause Condition 1.0, found in the LICENSES directory.
+ */
+
+package com.vesoft.nebula.graph.client;
+
+import com.facebook.thrift.TException;
+import com.google.common.net.HostAndPort;
+import com.vesoft.nebula.graph.ErrorCode;
+
+/**
+ * An authenticated session lent out by {@link GraphClientPool}.
+ * Closing it gives the session back to the pool instead of signing out.
+ */
+class PooledGraphClient implements GraphClient {
+
+    // The cheapest statement graphd answers, to check the session is alive.
+    private static final String VALIDATION_STATEMENT = "YIELD 1";
+
+    private final GraphClientPool pool;
+    private int addressIndex;
+    private GraphClientImpl client;
+    private volatile boolean borrowed = false;
+    private boolean spaceChanged = false;
+    private boolean broken = false;
+    private long lastUsedTime = System.currentTimeMillis();
+
+    PooledGraphClient(GraphClientPool pool, int addressIndex) {
+        this.pool = pool;
+        this.addressIndex = addressIndex;
+    }
+
+    int getAddressIndex() {
+        return addressIndex;
+    }
+
+    /**
+     * Replace the underlying session with one authenticated against the address.
+     *
+     * @param index   the index of the graph address
+     * @param address the graph address
+     * @return The ErrorCode of status, 0 is succeeded.
+     */
+    int open(int index, HostAndPort address) {
+        signout();
+        addressIndex = index;
+        client = pool.newClient(address);
+        broken = false;
+        lastUsedTime = System.currentTimeMillis();
+        int code = pool.authenticate(client);
+        if (code != ErrorCode.SUCCEEDED) {
+            signout();
+        }
+        return code;
+    }
+
+    /**
+     * The connection only looks closed once a RPC on it failed, so a session
+     * is also given up once graphd answered it is invalid or expired.
+     */
+    boolean isConnected() {
+        return client != null && !broken && client.isConnected();
+    }
+
+    /**
+     * Check the session with a round trip, as neither a connection closed by
+     * graphd nor an expired session show locally.
+     *
+     * @return true if the session is alive.
+     */
+    boolean validate() {
+        if (!isConnected()) {
+            return false;
+        }
+        check(client.execute(VALIDATION_STATEMENT));
+        lastUsedTime = System.currentTimeMillis();
+        return isConnected();
+    }
+
+    long getLastUsedTime() {
+        return lastUsedTime;
+    }
+
+    void lend() {
+        borrowed = true;
+        spaceChanged = false;
+    }
+
+    /**
+     * Switch back to the default space if the borrower changed it, through
+     * switchSpace or a USE sentence.
+     *
+     * @param space the default space of the pool, may be null
+     */
+    void reset(String space) {
+        if (spaceChanged && space != null && isConnected()
+                && client.switchSpace(space) != ErrorCode.SUCCEEDED) {
+            // Never lend a session in another space than the default one
+            broken = true;
+        }
+        spaceChanged = false;
+        lastUsedTime = System.currentTimeMillis();
+    }
+
+    void signout() {
+        if (client != null) {
+            client.close();
+            client = null;
+        }
+    }
+
+    @Override
+    public int connect(String username, String password) {
+        return isConnected() ? ErrorCode.SUCCEEDED : ErrorCode.E_DISCONNECTED;
+    }
+
+    @Override
+    public int switchSpace(String space) {
+        checkBorrowed();
+        spaceChanged = true;
+        return check(client.switchSpace(space));
+    }
+
+    @Override
+    public int execute(String statement) {
+        checkBorrowed();
+        spaceChanged |= GraphClientImpl.isSwitchSpace(statement);
+        return check(client.execute(statement));
+    }
+
+    @Override
+    public ResultSet executeQuery(String statement)
+            throws ConnectionException, NGQLException, TException {
+        checkBorrowed();
+        spaceChanged |= GraphClientImpl.isSwitchSpace(statement);
+        try {
+            return client.executeQuery(statement);
+        } catch (NGQLException e) {
+            check(e.getCode());
+            throw e;
+        } catch (ConnectionException e) {
+            broken = true;
+            throw e;
+        } catch (TException e) {
+            broken = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Mark the session broken on the error codes of a lost connection or session.
+     */
+    private int check(int code) {
+        if (code == ErrorCode.E_DISCONNECTED || code == ErrorCode.E_RPC_FAILURE
+                || code == ErrorCode.E_SESSION_INVALID || code == ErrorCode.E_SESSION_TIMEOUT) {
+            broken = true;
+        }
+        return code;
+    }
+
+    private void checkBorrowed() {
+        if (!borrowed) {
+            throw new IllegalStateException("The session has been given back to the pool");
+        }
+    }
+
+    /**
+     * Give the session back to the pool.
+     */
+    @Override
+    public void close() {
+        if (borrowed) {
+            borrowed = false;
+            pool.release(this);
+        }
+    }
+}
@@ -6,19 +6,28 @@
 
 package com.vesoft.nebula.graph.client;
 
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.vesoft.nebula.graph.RowValue;
 
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 /**
- *
+ * The result of a query. Iterating it walks the rows through a single
+ * {@link NebulaRow}, see {@link NebulaRowSet}.
  */
-public class ResultSet implements Iterator {
+public class ResultSet implements Iterator<NebulaRow> {
 
-    private List<String> columns;
-    private List<RowValue> rows;
+    private final List<String> columns;
+    private final Map<String, Integer> fieldIndex;
+    private final List<RowValue> rows;
+    private NebulaRowSet cursor;
 
     /**
      * Constructor
@@ -32,17 +41,27 @@ public class ResultSet implements Iterator {
      * @param rows    field values
      */
     public ResultSet(List<byte[]> columns, List<RowValue> rows) {
-        this.columns = Lists.newArrayListWithCapacity(columns.size());
+        ImmutableList.Builder<String> names = ImmutableList.builder();
+        Map<String, Integer> index = Maps.newHashMapWithExpectedSize(columns.size());
+        int position = 0;
         for (byte[] column : columns) {
-            this.columns.add(new String(column));
+            String name = new String(column, Charsets.UTF_8);
+            names.add(name);
+            // The first column wins when the names are duplicated.
+            if (!index.containsKey(name)) {
+                index.put(name, position);
+            }
+            position++;
         }
-        this.rows = rows;
+        this.columns = names.build();
+        this.fieldIndex = ImmutableMap.copyOf(index);
+        this.rows = rows == null ? Collections.<RowValue>emptyList() : rows;
     }
 
     /**
      * Get Column Names
      *
-     * @return
+     * @return The column names.
      */
     public List<String> getColumns() {
         return columns;
@@ -52,19 +71,43 @@ public class ResultSet implements Iterator {
         return rows;
     }
 
+    /**
+     * @return The number of rows.
+     */
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    /**
+     * Create a new cursor over the rows, independent from the one used by
+     * this result set's own iteration.
+     *
+     * @return The cursor positioned before the first row.
+     */
+    public NebulaRowSet getRowSet() {
+        return new NebulaRowSet(rows, fieldIndex);
+    }
+
+    private NebulaRowSet cursor() {
+        if (cursor == null) {
+            cursor = getRowSet();
+        }
+        return cursor;
+    }
+
     @Override
     public boolean hasNext() {
-        return false;
+        return cursor().hasNext();
     }
 
     @Override
-    public Object next() {
-        return null;
+    public NebulaRow next() {
+        return cursor().next();
     }
 
     @Override
     public void remove() {
-
+        cursor().remove();
     }
 
     @Override
@@ -8,21 +8,23 @@ package com.vesoft.nebula.graph.client.async;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
-import com.facebook.thrift.TBase;
 import com.facebook.thrift.TException;
 import com.facebook.thrift.async.TAsyncClientManager;
+import com.facebook.thrift.async.TAsyncEventLoopGroup;
 import com.facebook.thrift.protocol.TBinaryProtocol;
 import com.facebook.thrift.protocol.TProtocolFactory;
 import com.facebook.thrift.transport.TNonblockingSocket;
 import com.facebook.thrift.transport.TNonblockingTransport;
 import com.facebook.thrift.transport.TTransportException;
+import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.collect.Lists;
 import com.google.common.net.HostAndPort;
 import com.google.common.net.InetAddresses;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.FutureFallback;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
 import com.vesoft.nebula.graph.AuthResponse;
 import com.vesoft.nebula.graph.ErrorCode;
 import com.vesoft.nebula.graph.ExecutionResponse;
@@ -35,8 +37,6 @@ import com.vesoft.nebula.graph.client.async.entry.ExecuteCallback;
 import java.io.IOException;
 import java.util.List;
 import java.util.Random;
-import java.util.concurrent.Callable;
-import java.util.concurrent.Executors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,8 +45,6 @@ public class AsyncGraphClientImpl implements AsyncGraphClient {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AsyncGraphClientImpl.class);
 
-    private ListeningExecutorService service;
-
     private final List<HostAndPort> addresses;
     private final int connectionRetry;
     private final int executionRetry;
@@ -55,6 +53,7 @@ public class AsyncGraphClientImpl implements AsyncGraphClient {
     private GraphService.AsyncClient client;
     private TNonblockingTransport transport = null;
     private TAsyncClientManager manager;
+    private final TAsyncEventLoopGroup group;
 
     /**
      * The Constructor of Graph Client.
@@ -66,10 +65,26 @@ public class AsyncGraphClientImpl implements AsyncGraphClient {
      */
     public AsyncGraphClientImpl(List<HostAndPort> addresses, int timeout, int connectionRetry,
                                 int executionRetry) {
+        this(addresses, timeout, connectionRetry, executionRetry,
+            TAsyncEventLoopGroup.getDefault());
+    }
+
+    /**
+     * The Constructor of Graph Client.
+     *
+     * @param addresses       The addresses of graph services.
+     * @param timeout         The timeout of RPC request.
+     * @param connectionRetry The number of retries when connection failure.
+     * @param executionRetry  The number of retries when execution failure.
+     * @param group           The event loop group whose selector threads carry the
+     *                        connection, shared with other clients.
+     */
+    public AsyncGraphClientImpl(List<HostAndPort> addresses, int timeout, int connectionRetry,
+                                int executionRetry, TAsyncEventLoopGroup group) {
         checkArgument(timeout > 0);
         checkArgument(connectionRetry > 0);
         for (HostAndPort address : addresses) {
-            String host = address.getHost();
+            String host = address.getHostText();
             int port = address.getPort();
             if (!InetAddresses.isInetAddress(host) || (port <= 0 || port >= 65535)) {
                 throw new IllegalArgumentException(String.format("%s:%d is not a valid address",
@@ -77,12 +92,11 @@ public class AsyncGraphClientImpl implements AsyncGraphClient {
             }
         }
 
-        service = MoreExecutors.listeningDecorator(Executors.newCachedThreadPool());
-
         this.addresses = addresses;
         this.timeout = timeout;
         this.connectionRetry = connectionRetry;
         this.executionRetry = executionRetry;
+        this.group = group;
     }
 
     /**
@@ -133,18 +147,17 @@ public class AsyncGraphClientImpl implements AsyncGraphClient {
             HostAndPort address = addresses.get(position);
 
             try {
-                manager = new TAsyncClientManager();
-                transport = new TNonblockingSocket(address.getHost(), address.getPort(), timeout);
+                manager = group.next();
+                transport = new TNonblockingSocket(address.getHostText(), address.getPort(),
+                    timeout);
                 TProtocolFactory protocol = new TBinaryProtocol.Factory();
                 client = new GraphService.AsyncClient(protocol, manager, transport);
+                client.setTimeout(timeout);
                 AuthenticateCallback callback = new AuthenticateCallback();
                 client.authenticate(username, password, callback);
-                Optional<TBase> respOption = Optional.absent();
-                while (!callback.checkReady()) {
-                    respOption = (Optional<TBase>) callback.getResult();
-                }
+                Optional<AuthResponse> respOption = callback.getResult();
                 if (respOption.isPresent()) {
-                    AuthResponse result = (AuthResponse) respOption.get();
+                    AuthResponse result = respOption.get();
                     if (result.getError_code() == ErrorCode.E_BAD_USERNAME_PASSWORD) {
                         LOGGER.error("User name or password error");
                         return ErrorCode.E_BAD_USERNAME_PASSWORD;
@@ -180,70 +193,81 @@ public class AsyncGraphClientImpl implements AsyncGraphClient {
      * @return The ErrorCode of status, 0 is succeeded.
      */
     public ListenableFuture<Optional<Integer>> execute(final String statement) {
-        return service.submit(new Callable<Optional<Integer>>() {
-            @Override
-            public Optional<Integer> call() throws Exception {
-                ExecuteCallback callback = new ExecuteCallback();
-                try {
-                    client.execute(sessionID, statement, callback);
-                } catch (TException e) {
-                    e.printStackTrace();
-                }
-                while (!callback.checkReady()) {
-                    Thread.sleep(100);
-                }
-                if (callback.getResult().isPresent()) {
-                    ExecutionResponse resp = (ExecutionResponse) callback.getResult().get();
-                    if (resp.getError_code() != ErrorCode.SUCCEEDED) {
-                        LOGGER.error("execute error: " + resp.getError_msg());
+        return Futures.transform(call(statement),
+            new Function<Optional<ExecutionResponse>, Optional<Integer>>() {
+                @Override
+                public Optional<Integer> apply(Optional<ExecutionResponse> respOption) {
+                    if (respOption.isPresent()) {
+                        ExecutionResponse resp = respOption.get();
+                        if (resp.getError_code() != ErrorCode.SUCCEEDED) {
+                            LOGGER.error("execute error: " + resp.getError_msg());
+                        }
+                        return Optional.of(resp.getError_code());
+                    } else {
+                        return Optional.absent();
                     }
-                    return Optional.of(resp.getError_code());
-                } else {
-                    return Optional.absent();
                 }
-            }
-        });
+            });
     }
 
     @Override
     public ListenableFuture<Optional<ResultSet>> executeQuery(final String statement) {
-        return service.submit(new Callable<Optional<ResultSet>>() {
-            @Override
-            public Optional<ResultSet> call() throws Exception {
-                ExecuteCallback callback = new ExecuteCallback();
-                try {
-                    client.execute(sessionID, statement, callback);
-                } catch (TException e) {
-                    e.printStackTrace();
-                }
-                while (!callback.checkReady()) {
-                    Thread.sleep(100);
-                }
-                if (callback.getResult().isPresent()) {
-                    ExecutionResponse resp = (ExecutionResponse) callback.getResult().get();
-                    int code = resp.getError_code();
-                    if (code == ErrorCode.SUCCEEDED) {
-                        ResultSet rs = new ResultSet(resp.getColumn_names(), resp.getRows());
-                        return Optional.of(rs);
+        return Futures.transform(call(statement),
+            new AsyncFunction<Optional<ExecutionResponse>, Optional<ResultSet>>() {
+                @Override
+                public ListenableFuture<Optional<ResultSet>> apply(
+                        Optional<ExecutionResponse> respOption) {
+                    if (respOption.isPresent()) {
+                        ExecutionResponse resp = respOption.get();
+                        int code = resp.getError_code();
+                        if (code == ErrorCode.SUCCEEDED) {
+                            ResultSet rs = new ResultSet(resp.getColumn_names(), resp.getRows());
+                            return Futures.immediateFuture(Optional.of(rs));
+                        } else {
+                            LOGGER.error("Execute error: " + resp.getError_msg());
+                            return Futures.immediateFailedFuture(new NGQLException(code));
+                        }
                     } else {
-                        LOGGER.error("Execute error: " + resp.getError_msg());
-                        throw new NGQLException(code);
+                        return Futures.immediateFuture(Optional.<ResultSet>absent());
                     }
-                } else {
-                    return Optional.absent();
                 }
-            }
-        });
+            });
+    }
+
+    /**
+     * Send the statement; the returned future is completed on the selector
+     * thread when the response arrives.
+     *
+     * @param statement The query sentence.
+     * @return The response, absent if the call failed.
+     */
+    private ListenableFuture<Optional<ExecutionResponse>> call(String statement) {
+        ExecuteCallback callback = new ExecuteCallback();
+        try {
+            client.execute(sessionID, statement, callback);
+        } catch (TException e) {
+            callback.onError(e);
+        } catch (IllegalStateException e) {
+            callback.onError(e);
+        }
+        return Futures.withFallback(Futures.transform(callback.getFuture(),
+            new Function<ExecutionResponse, Optional<ExecutionResponse>>() {
+                @Override
+                public Optional<ExecutionResponse> apply(ExecutionResponse resp) {
+                    return Optional.fromNullable(resp);
+                }
+            }),
+            new FutureFallback<Optional<ExecutionResponse>>() {
+                @Override
+                public ListenableFuture<Optional<ExecutionResponse>> create(Throwable t) {
+                    LOGGER.error(String.format("Execute failed: %s", t.getMessage()));
+                    return Futures.immediateFuture(Optional.<ExecutionResponse>absent());
+                }
+            });
     }
 
     @Override
     public void close() {
-        service.shutdown();
         transport.close();
-        try {
-            manager.stop();
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
     }
 }
@@ -0,0 +1,22 @@
+/* Copyright (c) 2019 vesoft inc. All rights reserved.
+ *
+ * This source code is licensed under Apache 2.0 License,
+ * attached with Common Clause Condition 1.0, found in the LICENSES directory.
+ */
+
+package com.vesoft.nebula.meta.client;
+
+/**
+ * Notified when a refresh of the meta client publishes a changed snapshot.
+ */
+public interface MetaChangeListener {
+
+    /**
+     * Called on the thread which refreshed, after the new snapshot is published.
+     *
+     * @param previous the old snapshot
+     * @param current  the new snapshot
+     * @param diff     the changed spaces
+     */
+    public void onChange(MetaSnapshot previous, MetaSnapshot current, MetaDiff diff);
+}
@@ -8,18 +8,20 @@ package com.vesoft.nebula.meta.client;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
+import com.facebook.thrift.TBase;
 import com.facebook.thrift.TException;
-import com.facebook.thrift.protocol.TBinaryProtocol;
-import com.facebook.thrift.protocol.TProtocol;
-import com.facebook.thrift.transport.TSocket;
-import com.facebook.thrift.transport.TTransport;
-import com.facebook.thrift.transport.TTransportException;
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.net.HostAndPort;
 import com.google.common.net.InetAddresses;
-import com.vesoft.nebula.ColumnDef;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.vesoft.nebula.HostAddr;
+import com.vesoft.nebula.RetryPolicy;
+import com.vesoft.nebula.Schema;
 import com.vesoft.nebula.meta.EdgeItem;
 import com.vesoft.nebula.meta.ErrorCode;
 import com.vesoft.nebula.meta.GetEdgeReq;
@@ -28,49 +30,86 @@ import com.vesoft.nebula.meta.GetPartsAllocReq;
 import com.vesoft.nebula.meta.GetPartsAllocResp;
 import com.vesoft.nebula.meta.GetTagReq;
 import com.vesoft.nebula.meta.GetTagResp;
+import com.vesoft.nebula.meta.HostItem;
 import com.vesoft.nebula.meta.IdName;
 import com.vesoft.nebula.meta.ListEdgesReq;
 import com.vesoft.nebula.meta.ListEdgesResp;
+import com.vesoft.nebula.meta.ListHostsReq;
+import com.vesoft.nebula.meta.ListHostsResp;
 import com.vesoft.nebula.meta.ListSpacesReq;
 import com.vesoft.nebula.meta.ListSpacesResp;
 import com.vesoft.nebula.meta.ListTagsReq;
 import com.vesoft.nebula.meta.ListTagsResp;
 import com.vesoft.nebula.meta.MetaService;
 import com.vesoft.nebula.meta.TagItem;
-import com.vesoft.nebula.utils.NebulaTypeUtil;
+import com.vesoft.nebula.utils.IPv4IntTransformer;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Nebula Meta Client
+ * Nebula Meta Client, safe to be shared by concurrent callers. Every request
+ * borrows a pooled connection, goes to the meta leader learned from the
+ * previous responses, and fails over to the other addresses with a backoff
+ * per failed address.
  */
 public class MetaClientImpl implements MetaClient {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MetaClientImpl.class);
 
-    private MetaService.Client client;
-
-    private TTransport transport = null;
-
     private final List<HostAndPort> addresses;
     private final int connectionRetry;
     private final int timeout;
-    private HostAndPort leader;
-    private List<IdName> spaces;
-    private Map<String, Integer> spaceNames;
-    private Map<Integer, Map<Integer, List<HostAddr>>> parts;
-    private Map<Integer, Map<String, TagItem>> tagItems;
-    private Map<Integer, Map<String, EdgeItem>> edgeItems;
+    private final MetaConnectionPool pool;
+    private volatile HostAndPort leader;
+    private final AtomicInteger next = new AtomicInteger(0);
+    private final ConcurrentMap<HostAndPort, Backoff> backoffs = Maps.newConcurrentMap();
+    private volatile boolean closed = false;
+    private volatile RetryPolicy retryPolicy = RetryPolicy.defaultPolicy();
+    private volatile MetaSnapshot snapshot = MetaSnapshot.EMPTY;
+    private final List<MetaChangeListener> listeners =
+        new CopyOnWriteArrayList<MetaChangeListener>();
+    private final ScheduledExecutorService refresher;
 
     private static final int LATEST_TAG_VERSION = -1;
     private static final int LATEST_EDGE_VERSION = -1;
+    public static final long DEFAULT_REFRESH_INTERVAL_MS = 10 * 1000;
+    public static final int DEFAULT_SCHEMA_CACHE_SIZE = 1024;
+    public static final int DEFAULT_IDLE_CONNECTIONS = 4;
+    private static final long MIN_BACKOFF_MS = 100;
+    private static final long MAX_BACKOFF_MS = 1000;
+    // Every meta response carries the error code and the leader as its first two fields.
+    private static final int CODE_FIELD = 1;
+    private static final int LEADER_FIELD = 2;
+
+    private final Cache<SchemaKey, VersionedSchema> schemas = CacheBuilder.newBuilder()
+        .maximumSize(DEFAULT_SCHEMA_CACHE_SIZE).build();
 
     public MetaClientImpl(List<HostAndPort> addresses, int timeout, int connectionRetry) {
+        this(addresses, timeout, connectionRetry, DEFAULT_REFRESH_INTERVAL_MS);
+    }
+
+    /**
+     * The Constructor of Meta Client.
+     *
+     * @param addresses       The addresses of meta services.
+     * @param timeout         The timeout of RPC request.
+     * @param connectionRetry The number of retries when connection failure.
+     * @param refreshInterval The interval in ms to refresh spaces, parts and schemas,
+     *                        0 to never refresh in the background.
+     */
+    public MetaClientImpl(List<HostAndPort> addresses, int timeout, int connectionRetry,
+                          long refreshInterval) {
         checkArgument(timeout > 0);
         checkArgument(connectionRetry > 0);
+        checkArgument(refreshInterval >= 0);
         if (addresses.isEmpty()) {
             throw new IllegalArgumentException("No meta server address is specified.");
         }
@@ -84,16 +123,24 @@ public class MetaClientImpl implements MetaClient {
             }
         }
 
-        this.spaces = Lists.newArrayList();
-        this.spaceNames = Maps.newHashMap();
-        this.parts = Maps.newHashMap();
-        this.tagItems = Maps.newHashMap();
-        this.edgeItems = Maps.newHashMap();
         this.addresses = addresses;
         this.timeout = timeout;
         this.connectionRetry = connectionRetry;
+        this.pool = new MetaConnectionPool(timeout, DEFAULT_IDLE_CONNECTIONS);
 
         this.init();
+        if (refreshInterval > 0) {
+            refresher = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("meta-refresher-%d").setDaemon(true).build());
+            refresher.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    refresh();
+                }
+            }, refreshInterval, refreshInterval, TimeUnit.MILLISECONDS);
+        } else {
+            refresher = null;
+        }
     }
 
     public MetaClientImpl(String host, int port) {
@@ -114,11 +161,11 @@ public class MetaClientImpl implements MetaClient {
      */
     @Override
     public List<HostAddr> getPart(int spaceId, int partId) {
-        if (!this.parts.containsKey(spaceId)) {
-            getParts(spaceId);
+        if (!snapshot.getParts().containsKey(spaceId)) {
+            loadSpace(spaceId);
         }
 
-        Map<Integer, List<HostAddr>> map = parts.get(spaceId);
+        Map<Integer, List<HostAddr>> map = snapshot.getParts().get(spaceId);
         if (map == null || map.isEmpty()) {
             return null;
         }
@@ -127,11 +174,12 @@ public class MetaClientImpl implements MetaClient {
 
     @Override
     public List<HostAddr> getPart(String spaceName, int partId) {
-        if (!spaceNames.containsKey(spaceName)) {
+        Integer spaceId = snapshot.getSpaceId(spaceName);
+        if (spaceId == null) {
             LOGGER.error(String.format("There is no space named: %s", spaceName));
             return null;
         }
-        return getPart(spaceNames.get(spaceName), partId);
+        return getPart(spaceId, partId);
     }
 
     /**
@@ -143,11 +191,11 @@ public class MetaClientImpl implements MetaClient {
      */
     @Override
     public Integer getTagId(int spaceId, String tagName) {
-        if (!this.tagItems.containsKey(spaceId)) {
-            getTagItems(spaceId);
+        if (!snapshot.getTagItems().containsKey(spaceId)) {
+            loadSpace(spaceId);
         }
 
-        Map<String, TagItem> map = tagItems.get(spaceId);
+        Map<String, TagItem> map = snapshot.getTagItems().get(spaceId);
         if (map == null || map.isEmpty()) {
             return null;
         }
@@ -158,11 +206,12 @@ public class MetaClientImpl implements MetaClient {
 
     @Override
     public Integer getTagId(String spaceName, String tagName) {
-        if (!spaceNames.containsKey(spaceName)) {
+        Integer spaceId = snapshot.getSpaceId(spaceName);
+        if (spaceId == null) {
             LOGGER.error(String.format("There is no space named: %s", spaceName));
             return null;
         }
-        return getTagId(spaceNames.get(spaceName), tagName);
+        return getTagId(spaceId, tagName);
     }
 
     /**
@@ -174,11 +223,11 @@ public class MetaClientImpl implements MetaClient {
      */
     @Override
     public Integer getEdgeType(int space, String edgeName) {
-        if (!this.edgeItems.containsKey(space)) {
-            getEdgeTypes(space);
+        if (!snapshot.getEdgeItems().containsKey(space)) {
+            loadSpace(space);
         }
 
-        Map<String, EdgeItem> map = edgeItems.get(space);
+        Map<String, EdgeItem> map = snapshot.getEdgeItems().get(space);
         if (map == null || map.isEmpty()) {
             return null;
         }
@@ -189,108 +238,349 @@ public class MetaClientImpl implements MetaClient {
 
     @Override
     public Integer getEdgeType(String spaceName, String edgeName) {
-        if (!spaceNames.containsKey(spaceName)) {
+        Integer spaceId = snapshot.getSpaceId(spaceName);
+        if (spaceId == null) {
             LOGGER.error(String.format("There is no space named: %s", spaceName));
             return null;
         }
-        return getEdgeType(spaceNames.get(spaceName), edgeName);
+        return getEdgeType(spaceId, edgeName);
     }
 
+    /**
+     * Get the field classes of a tag schema version, cached.
+     *
+     * @param spaceName the space's name
+     * @param tagName   the tag's name
+     * @param version   the tag's version, -1 for the latest
+     * @return The immutable map of field name to class, empty if not found.
+     */
     @Override
     public Map<String, Class> getTagSchema(String spaceName, String tagName, long version) {
-        Map<String, Class> result = Maps.newHashMap();
-        if (!spaceNames.containsKey(spaceName)) {
-            return result;
+        VersionedSchema schema = getTagVersionedSchema(spaceName, tagName, version);
+        return schema == null ? ImmutableMap.<String, Class>of() : schema.getFieldClasses();
+    }
+
+    public Map<String, Class> getTagSchema(String spaceName, String tagName) {
+        return getTagSchema(spaceName, tagName, LATEST_TAG_VERSION);
+    }
+
+    /**
+     * Get the field classes of an edge schema version, cached.
+     *
+     * @param spaceName the space's name
+     * @param edgeName  the edge's name
+     * @param version   the edge's version, -1 for the latest
+     * @return The immutable map of field name to class, empty if not found.
+     */
+    @Override
+    public Map<String, Class> getEdgeSchema(String spaceName, String edgeName, long version) {
+        VersionedSchema schema = getEdgeVersionedSchema(spaceName, edgeName, version);
+        return schema == null ? ImmutableMap.<String, Class>of() : schema.getFieldClasses();
+    }
+
+    public Map<String, Class> getEdgeSchema(String spaceName, String edgeName) {
+        return getEdgeSchema(spaceName, edgeName, LATEST_EDGE_VERSION);
+    }
+
+    /**
+     * Get a tag schema version. The latest version comes from the refreshed
+     * tags and other versions are fetched once, both are then cached.
+     *
+     * @param spaceName the space's name
+     * @param tagName   the tag's name
+     * @param version   the tag's version, -1 for the latest
+     * @return The schema, null if not found.
+     */
+    public VersionedSchema getTagVersionedSchema(String spaceName, String tagName,
+                                                 long version) {
+        MetaSnapshot current = snapshot;
+        Integer spaceId = current.getSpaceId(spaceName);
+        if (spaceId == null) {
+            return null;
+        }
+
+        if (version == LATEST_TAG_VERSION) {
+            Map<String, TagItem> tags = current.getTagItems().get(spaceId);
+            TagItem item = tags == null ? null : tags.get(tagName);
+            if (item != null) {
+                return cachedSchema(new SchemaKey(spaceId, false, tagName, item.getVersion()),
+                    item.getSchema());
+            }
+        }
+
+        SchemaKey key = new SchemaKey(spaceId, false, tagName, version);
+        VersionedSchema schema = schemas.getIfPresent(key);
+        if (schema != null) {
+            return schema;
         }
 
-        GetTagReq request = new GetTagReq();
-        request.setSpace_id(spaceNames.get(spaceName));
+        final GetTagReq request = new GetTagReq();
+        request.setSpace_id(spaceId);
         request.setTag_name(tagName);
         request.setVersion(version);
 
-        GetTagResp response;
-        try {
-            response = client.getTag(request);
-        } catch (TException e) {
-            e.printStackTrace();
-            return result;
+        GetTagResp response = call("Get Tag", new MetaCall<GetTagResp>() {
+            @Override
+            public GetTagResp call(MetaService.Client client) throws TException {
+                return client.getTag(request);
+            }
+        });
+        if (response == null) {
+            return null;
         }
 
-        for (ColumnDef column : response.getSchema().columns) {
-            result.put(column.name, NebulaTypeUtil.supportedTypeToClass(column.type.type));
+        if (response.getCode() != ErrorCode.SUCCEEDED) {
+            LOGGER.error(String.format("Get Tag Error Code: %d", response.getCode()));
+            return null;
+        }
+        schema = new VersionedSchema(version, response.getSchema());
+        if (version != LATEST_TAG_VERSION) {
+            schemas.put(key, schema);
         }
-        return result;
+        return schema;
     }
 
-    public Map<String, Class> getTagSchema(String spaceName, String tagName) {
-        return getTagSchema(spaceName, tagName, LATEST_TAG_VERSION);
-    }
+    /**
+     * Get an edge schema version. The latest version comes from the refreshed
+     * edges and other versions are fetched once, both are then cached.
+     *
+     * @param spaceName the space's name
+     * @param edgeName  the edge's name
+     * @param version   the edge's version, -1 for the latest
+     * @return The schema, null if not found.
+     */
+    public VersionedSchema getEdgeVersionedSchema(String spaceName, String edgeName,
+                                                  long version) {
+        MetaSnapshot current = snapshot;
+        Integer spaceId = current.getSpaceId(spaceName);
+        if (spaceId == null) {
+            return null;
+        }
 
-    @Override
-    public Map<String, Class> getEdgeSchema(String spaceName, String edgeName, long version) {
-        Map<String, Class> result = Maps.newHashMap();
-        if (!spaceNames.containsKey(spaceName)) {
-            return result;
+        if (version == LATEST_EDGE_VERSION) {
+            Map<String, EdgeItem> edges = current.getEdgeItems().get(spaceId);
+            EdgeItem item = edges == null ? null : edges.get(edgeName);
+            if (item != null) {
+                return cachedSchema(new SchemaKey(spaceId, true, edgeName, item.getVersion()),
+                    item.getSchema());
+            }
+        }
+
+        SchemaKey key = new SchemaKey(spaceId, true, edgeName, version);
+        VersionedSchema schema = schemas.getIfPresent(key);
+        if (schema != null) {
+            return schema;
         }
 
-        GetEdgeReq request = new GetEdgeReq();
-        request.setSpace_id(spaceNames.get(spaceName));
+        final GetEdgeReq request = new GetEdgeReq();
+        request.setSpace_id(spaceId);
         request.setEdge_name(edgeName);
         request.setVersion(version);
 
-        GetEdgeResp response;
-        try {
-            response = client.getEdge(request);
-        } catch (TException e) {
-            e.printStackTrace();
-            return result;
+        GetEdgeResp response = call("Get Edge", new MetaCall<GetEdgeResp>() {
+            @Override
+            public GetEdgeResp call(MetaService.Client client) throws TException {
+                return client.getEdge(request);
+            }
+        });
+        if (response == null) {
+            return null;
         }
 
-        for (ColumnDef column : response.getSchema().columns) {
-            result.put(column.name, NebulaTypeUtil.supportedTypeToClass(column.type.type));
+        if (response.getCode() != ErrorCode.SUCCEEDED) {
+            LOGGER.error(String.format("Get Edge Error Code: %d", response.getCode()));
+            return null;
         }
-        return result;
+        schema = new VersionedSchema(version, response.getSchema());
+        if (version != LATEST_EDGE_VERSION) {
+            schemas.put(key, schema);
+        }
+        return schema;
     }
 
-    public Map<String, Class> getEdgeSchema(String spaceName, String edgeName) {
-        return getEdgeSchema(spaceName, edgeName, LATEST_EDGE_VERSION);
+    private VersionedSchema cachedSchema(SchemaKey key, Schema schema) {
+        VersionedSchema cached = schemas.getIfPresent(key);
+        if (cached == null) {
+            cached = new VersionedSchema(key.version, schema);
+            schemas.put(key, cached);
+        }
+        return cached;
+    }
+
+    /**
+     * Drop the cached schemas of tags and edges whose item changed, such as
+     * being altered or dropped and created again.
+     */
+    private void invalidateSchemas(MetaSnapshot previous, MetaSnapshot current, MetaDiff diff) {
+        for (SchemaKey key : schemas.asMap().keySet()) {
+            Object before;
+            Object after;
+            if (key.edge) {
+                if (!diff.getEdgesChanged().contains(key.space)) {
+                    continue;
+                }
+                before = item(previous.getEdgeItems(), key);
+                after = item(current.getEdgeItems(), key);
+            } else {
+                if (!diff.getTagsChanged().contains(key.space)) {
+                    continue;
+                }
+                before = item(previous.getTagItems(), key);
+                after = item(current.getTagItems(), key);
+            }
+            if (!Objects.equal(before, after)) {
+                schemas.invalidate(key);
+            }
+        }
     }
 
+    private static Object item(Map<Integer, ? extends Map<String, ?>> items, SchemaKey key) {
+        Map<String, ?> spaceItems = items.get(key.space);
+        return spaceItems == null ? null : spaceItems.get(key.name);
+    }
+
+    /**
+     * Check a meta service is reachable and load all the spaces.
+     */
     public void init() {
-        boolean isConnected = connect();
-        if (!isConnected) {
+        if (!connect()) {
             LOGGER.error("Connection has not been established. Connect Failed");
         }
+        refresh();
+    }
 
-        this.spaces = listSpaces();
+    /**
+     * Pull the spaces with their parts allocation, tags and edges, and
+     * publish them as a new snapshot if anything changed. The data of a
+     * space failed to be pulled is kept from the current snapshot.
+     *
+     * @return false if the spaces could not be listed.
+     */
+    public synchronized boolean refresh() {
+        List<IdName> spaces = listSpaces();
+        if (spaces == null) {
+            return false;
+        }
+
+        MetaSnapshot current = snapshot;
+        Map<Integer, Map<Integer, List<HostAddr>>> parts = Maps.newHashMap();
+        Map<Integer, Map<String, TagItem>> tagItems = Maps.newHashMap();
+        Map<Integer, Map<String, EdgeItem>> edgeItems = Maps.newHashMap();
         for (IdName space : spaces) {
             int spaceId = space.getId().getSpace_id();
-            spaceNames.put(space.getName(), spaceId);
-            getParts(spaceId);
-            getTagItems(spaceId);
-            getEdgeTypes(spaceId);
+            load(spaceId, current, parts, tagItems, edgeItems);
+        }
+        publish(current, new MetaSnapshot(current.getVersion() + 1, spaces, parts, tagItems,
+            edgeItems));
+        return true;
+    }
+
+    /**
+     * Pull a space missing from the snapshot.
+     */
+    private synchronized void loadSpace(int spaceId) {
+        MetaSnapshot current = snapshot;
+        if (current.getParts().containsKey(spaceId)
+                && current.getTagItems().containsKey(spaceId)
+                && current.getEdgeItems().containsKey(spaceId)) {
+            return;
+        }
+
+        Map<Integer, Map<Integer, List<HostAddr>>> parts = Maps.newHashMap(current.getParts());
+        Map<Integer, Map<String, TagItem>> tagItems = Maps.newHashMap(current.getTagItems());
+        Map<Integer, Map<String, EdgeItem>> edgeItems = Maps.newHashMap(current.getEdgeItems());
+        load(spaceId, current, parts, tagItems, edgeItems);
+        publish(current, new MetaSnapshot(current.getVersion() + 1, current.getSpaces(), parts,
+            tagItems, edgeItems));
+    }
+
+    private void load(int spaceId, MetaSnapshot current,
+                      Map<Integer, Map<Integer, List<HostAddr>>> parts,
+                      Map<Integer, Map<String, TagItem>> tagItems,
+                      Map<Integer, Map<String, EdgeItem>> edgeItems) {
+        Map<Integer, List<HostAddr>> part = getParts(spaceId);
+        if (part == null) {
+            part = current.getParts().get(spaceId);
+        }
+        if (part != null) {
+            parts.put(spaceId, part);
+        }
+
+        Map<String, TagItem> tags = getTagItems(spaceId);
+        if (tags == null) {
+            tags = current.getTagItems().get(spaceId);
+        }
+        if (tags != null) {
+            tagItems.put(spaceId, tags);
+        }
+
+        Map<String, EdgeItem> edges = getEdgeTypes(spaceId);
+        if (edges == null) {
+            edges = current.getEdgeItems().get(spaceId);
+        }
+        if (edges != null) {
+            edgeItems.put(spaceId, edges);
+        }
+    }
+
+    private void publish(MetaSnapshot current, MetaSnapshot next) {
+        MetaDiff diff = MetaDiff.between(current, next);
+        if (diff.isEmpty() && current.getSpaces().equals(next.getSpaces())) {
+            return;
+        }
+
+        snapshot = next;
+        if (diff.isEmpty()) {
+            return;
+        }
+        invalidateSchemas(current, next, diff);
+        LOGGER.info(String.format("Meta changed: %s", diff));
+        for (MetaChangeListener listener : listeners) {
+            try {
+                listener.onChange(current, next, diff);
+            } catch (RuntimeException e) {
+                LOGGER.error(String.format("Meta change listener failed: %s", e.getMessage()));
+            }
         }
     }
 
+    /**
+     * @return The snapshot of spaces, parts allocation and schemas.
+     */
+    public MetaSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public void addListener(MetaChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(MetaChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Open a connection to one of the meta services, the leader if known.
+     *
+     * @return true if any meta service is reachable.
+     */
     @Override
     public boolean connect() {
-        int retry = connectionRetry;
-        while (retry-- != 0) {
-            Random random = new Random(System.currentTimeMillis());
-            int position = random.nextInt(addresses.size());
-            HostAndPort address = addresses.get(position);
-            transport = new TSocket(address.getHostText(), address.getPort(), timeout);
-            TProtocol protocol = new TBinaryProtocol(transport);
+        RetryPolicy.Retry retry = retryPolicy.start(connectionRetry * addresses.size());
+        do {
+            HostAndPort address = nextAddress(retry);
+            if (address == null || closed) {
+                return false;
+            }
             try {
-                transport.open();
-                client = new MetaService.Client(protocol);
+                pool.release(pool.borrow(address));
+                succeeded(address);
                 return true;
-            } catch (TTransportException transportException) {
-                LOGGER.error("Connect failed: " + transportException.getMessage());
             } catch (TException e) {
-                LOGGER.error("Connect failed: " + e.getMessage());
+                LOGGER.error(String.format("Connect %s failed: %s", address, e.getMessage()));
+                failed(address);
             }
-        }
+        } while (retry.canRetry(true));
         return false;
     }
 
@@ -300,14 +590,17 @@ public class MetaClientImpl implements MetaClient {
      * @return
      */
     public List<IdName> listSpaces() {
-        ListSpacesReq request = new ListSpacesReq();
-        ListSpacesResp response;
-        try {
-            response = client.listSpaces(request);
-        } catch (TException e) {
-            LOGGER.error(String.format("List Spaces Error: %s", e.getMessage()));
+        final ListSpacesReq request = new ListSpacesReq();
+        ListSpacesResp response = call("List Spaces", new MetaCall<ListSpacesResp>() {
+            @Override
+            public ListSpacesResp call(MetaService.Client client) throws TException {
+                return client.listSpaces(request);
+            }
+        });
+        if (response == null) {
             return null;
         }
+
         if (response.getCode() == ErrorCode.SUCCEEDED) {
             return response.getSpaces();
         } else {
@@ -316,56 +609,82 @@ public class MetaClientImpl implements MetaClient {
         }
     }
 
+    /**
+     * Get all the storage hosts with their status and leader parts.
+     *
+     * @return The hosts, null if failed.
+     */
+    public List<HostItem> listHosts() {
+        final ListHostsReq request = new ListHostsReq();
+        ListHostsResp response = call("List Hosts", new MetaCall<ListHostsResp>() {
+            @Override
+            public ListHostsResp call(MetaService.Client client) throws TException {
+                return client.listHosts(request);
+            }
+        });
+        if (response == null) {
+            return null;
+        }
+
+        if (response.getCode() == ErrorCode.SUCCEEDED) {
+            return response.getHosts();
+        } else {
+            LOGGER.error(String.format("List Hosts Error Code: %d", response.getCode()));
+            return null;
+        }
+    }
+
     @Override
     public Map<Integer, Map<Integer, List<HostAddr>>> getParts() {
-        return this.parts;
+        return snapshot.getParts();
     }
 
     /**
      * Get all parts and the addrs in a space
-     * Store in this.parts
      *
      * @param spaceId Nebula space ID
-     * @return
+     * @return The parts allocation, null if failed.
      */
-    private boolean getParts(int spaceId) {
-        GetPartsAllocReq request = new GetPartsAllocReq();
+    private Map<Integer, List<HostAddr>> getParts(int spaceId) {
+        final GetPartsAllocReq request = new GetPartsAllocReq();
         request.setSpace_id(spaceId);
 
-        GetPartsAllocResp response;
-        try {
-            response = client.getPartsAlloc(request);
-        } catch (TException e) {
-            LOGGER.error(String.format("Get Parts failed: %s", e.getMessage()));
-            return false;
+        GetPartsAllocResp response = call("Get Parts", new MetaCall<GetPartsAllocResp>() {
+            @Override
+            public GetPartsAllocResp call(MetaService.Client client) throws TException {
+                return client.getPartsAlloc(request);
+            }
+        });
+        if (response == null) {
+            return null;
         }
 
         if (response.getCode() == ErrorCode.SUCCEEDED) {
-            Map<Integer, List<HostAddr>> part = response.getParts();
-            this.parts.put(spaceId, part);
+            return response.getParts();
         } else {
             LOGGER.error(String.format("Get Parts Error: %s", response.getCode()));
-            return false;
+            return null;
         }
-        return true;
     }
 
     /**
-     * Get all tags, store as tagName : tagItem in this.tagItems
+     * Get all tags as tagName : tagItem
      *
      * @param spaceId Nebula space ID
-     * @return
+     * @return The tags, null if failed.
      */
-    private boolean getTagItems(int spaceId) {
-        ListTagsReq request = new ListTagsReq();
+    private Map<String, TagItem> getTagItems(int spaceId) {
+        final ListTagsReq request = new ListTagsReq();
         request.setSpace_id(spaceId);
 
-        ListTagsResp response;
-        try {
-            response = client.listTags(request);
-        } catch (TException e) {
-            LOGGER.error(String.format("Get Tag Error: %s", e.getMessage()));
-            return false;
+        ListTagsResp response = call("List Tags", new MetaCall<ListTagsResp>() {
+            @Override
+            public ListTagsResp call(MetaService.Client client) throws TException {
+                return client.listTags(request);
+            }
+        });
+        if (response == null) {
+            return null;
         }
         if (response.getCode() == ErrorCode.SUCCEEDED) {
             List<TagItem> tagItem = response.getTags();
@@ -374,31 +693,32 @@ public class MetaClientImpl implements MetaClient {
                 for (TagItem ti : tagItem) {
                     tmp.put(ti.getTag_name(), ti);
                 }
-                this.tagItems.put(spaceId, tmp);
             }
+            return tmp;
         } else {
             LOGGER.error(String.format("Get tags Error: %s", response.getCode()));
-            return false;
+            return null;
         }
-        return true;
     }
 
     /**
-     * Get all edges, store as edgeName : edgeItem in this.edgeItems
+     * Get all edges as edgeName : edgeItem
      *
      * @param spaceId Nebula space ID
-     * @return
+     * @return The edges, null if failed.
      */
-    private boolean getEdgeTypes(int spaceId) {
-        ListEdgesReq request = new ListEdgesReq();
+    private Map<String, EdgeItem> getEdgeTypes(int spaceId) {
+        final ListEdgesReq request = new ListEdgesReq();
         request.setSpace_id(spaceId);
 
-        ListEdgesResp response;
-        try {
-            response = client.listEdges(request);
-        } catch (TException e) {
-            LOGGER.error(String.format("Get Edge Error: %s", e.getMessage()));
-            return false;
+        ListEdgesResp response = call("List Edges", new MetaCall<ListEdgesResp>() {
+            @Override
+            public ListEdgesResp call(MetaService.Client client) throws TException {
+                return client.listEdges(request);
+            }
+        });
+        if (response == null) {
+            return null;
         }
 
         if (response.getCode() == ErrorCode.SUCCEEDED) {
@@ -408,25 +728,226 @@ public class MetaClientImpl implements MetaClient {
                 for (EdgeItem ei : edgeItem) {
                     tmp.put(ei.getEdge_name(), ei);
                 }
-                this.edgeItems.put(spaceId, tmp);
             }
+            return tmp;
         } else {
-            LOGGER.error(String.format("Get tags Error: %s", response.getCode()));
-            return false;
+            LOGGER.error(String.format("Get edges Error: %s", response.getCode()));
+            return null;
         }
-        return true;
     }
 
+    /**
+     * Send a request to the leader, or to the other addresses in turn when
+     * the leader is unknown, unreachable or changed. Each address is tried
+     * at most connectionRetry times, within the deadline and the budget of
+     * the retry policy. The meta requests only read, so they are all resent.
+     *
+     * @param operation the name of the request for logging
+     * @param call      the request
+     * @return The response, null if no meta service answered.
+     */
+    private <T extends TBase> T call(String operation, MetaCall<T> call) {
+        RetryPolicy.Retry retry = retryPolicy.start(connectionRetry * addresses.size());
+        do {
+            HostAndPort address = nextAddress(retry);
+            if (address == null || closed) {
+                break;
+            }
+            MetaConnection connection;
+            try {
+                connection = pool.borrow(address);
+            } catch (TException e) {
+                LOGGER.error(String.format("Connect %s failed: %s", address, e.getMessage()));
+                failed(address);
+                continue;
+            }
+
+            T response;
+            try {
+                connection.setTimeout(retry.attemptTimeout(timeout));
+                response = call.call(connection.getClient());
+            } catch (TException e) {
+                LOGGER.error(String.format("%s on %s failed: %s", operation, address,
+                    e.getMessage()));
+                pool.invalidate(connection);
+                failed(address);
+                continue;
+            }
+            pool.release(connection);
+            succeeded(address);
+
+            HostAndPort reported = toAddress((HostAddr) response.getFieldValue(LEADER_FIELD));
+            if ((Integer) response.getFieldValue(CODE_FIELD) == ErrorCode.E_LEADER_CHANGED) {
+                // Go to the new leader right away, or to the next address if it is unknown.
+                leader = reported;
+                continue;
+            }
+            leader = reported == null ? address : reported;
+            return response;
+        } while (retry.canRetry(true));
+        LOGGER.error(String.format("%s failed on all the meta services", operation));
+        return null;
+    }
+
+    /**
+     * @return The leader if known and not backing off, otherwise the next
+     *         address in turn which is not backing off. When all are, wait
+     *         for the one to be retried first, null if the deadline passes.
+     */
+    private HostAndPort nextAddress(RetryPolicy.Retry retry) {
+        long now = System.currentTimeMillis();
+        HostAndPort current = leader;
+        if (current != null && backoff(current).retryTime <= now) {
+            return current;
+        }
+
+        HostAndPort earliest = null;
+        long earliestTime = Long.MAX_VALUE;
+        for (int i = 0; i < addresses.size(); i++) {
+            int position = (next.getAndIncrement() & Integer.MAX_VALUE) % addresses.size();
+            HostAndPort address = addresses.get(position);
+            long retryTime = backoff(address).retryTime;
+            if (retryTime <= now) {
+                return address;
+            }
+            if (retryTime < earliestTime) {
+                earliest = address;
+                earliestTime = retryTime;
+            }
+        }
+
+        long sleep = earliestTime - now;
+        if (sleep >= retry.remainingMillis()) {
+            return null;
+        }
+        try {
+            Thread.sleep(sleep);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        return earliest;
+    }
+
+    private Backoff backoff(HostAndPort address) {
+        Backoff backoff = backoffs.get(address);
+        if (backoff == null) {
+            Backoff newBackoff = new Backoff();
+            backoff = backoffs.putIfAbsent(address, newBackoff);
+            if (backoff == null) {
+                backoff = newBackoff;
+            }
+        }
+        return backoff;
+    }
+
+    private void failed(HostAndPort address) {
+        if (address.equals(leader)) {
+            leader = null;
+        }
+        pool.evict(address);
+        backoff(address).failed();
+    }
+
+    private void succeeded(HostAndPort address) {
+        backoff(address).succeeded();
+    }
+
+    private static HostAndPort toAddress(HostAddr address) {
+        if (address == null || address.getIp() == 0) {
+            return null;
+        }
+        return HostAndPort.fromParts(IPv4IntTransformer.intToIPv4(address.getIp()),
+            address.getPort());
+    }
+
+    /**
+     * @return The meta leader learned from the last response, null if unknown.
+     */
     public HostAndPort getLeader() {
         return leader;
     }
 
+    /**
+     * Replace the retry policy of connecting and requesting.
+     *
+     * @param retryPolicy the retry policy
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
     public List<IdName> getSpaces() {
-        return spaces;
+        return snapshot.getSpaces();
+    }
+
+    /**
+     * The key of a schema version, version -1 is never cached.
+     */
+    private static final class SchemaKey {
+        private final int space;
+        private final boolean edge;
+        private final String name;
+        private final long version;
+
+        SchemaKey(int space, boolean edge, String name, long version) {
+            this.space = space;
+            this.edge = edge;
+            this.name = name;
+            this.version = version;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SchemaKey)) {
+                return false;
+            }
+            SchemaKey that = (SchemaKey) o;
+            return space == that.space && edge == that.edge && version == that.version
+                && name.equals(that.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(space, edge, name, version);
+        }
+    }
+
+    /**
+     * A request to a meta service.
+     */
+    private interface MetaCall<T> {
+        T call(MetaService.Client client) throws TException;
+    }
+
+    /**
+     * The exponential backoff of an address after consecutive failures.
+     */
+    private static final class Backoff {
+        private int failures = 0;
+        private volatile long retryTime = 0;
+
+        synchronized void failed() {
+            failures = Math.min(failures + 1, 16);
+            long delay = Math.min(MIN_BACKOFF_MS << (failures - 1), MAX_BACKOFF_MS);
+            retryTime = System.currentTimeMillis() + delay;
+        }
+
+        synchronized void succeeded() {
+            failures = 0;
+            retryTime = 0;
+        }
     }
 
     public void close() {
-        transport.close();
+        closed = true;
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+        pool.close();
     }
 }
 
@@ -0,0 +1,55 @@
+/* Copyright (c) 2019 vesoft inc. All rights reserved.
+ *
+ * This source code is licensed under Apache 2.0 License,
+ * attached with Common Clause Condition 1.0, found in the LICENSES directory.
+ */
+
+package com.vesoft.nebula.meta.client;
+
+import com.facebook.thrift.TException;
+import com.facebook.thrift.protocol.TBinaryProtocol;
+import com.facebook.thrift.protocol.TProtocol;
+import com.facebook.thrift.transport.TSocket;
+import com.google.common.net.HostAndPort;
+import com.vesoft.nebula.meta.MetaService;
+
+/**
+ * A single blocking connection to a meta service, owned by one caller at a time.
+ */
+class MetaConnection {
+
+    private final HostAndPort address;
+    private final TSocket transport;
+    private final MetaService.Client client;
+
+    MetaConnection(HostAndPort address, int timeout) throws TException {
+        this.address = address;
+        this.transport = new TSocket(address.getHostText(), address.getPort(), timeout);
+        TProtocol protocol = new TBinaryProtocol(transport);
+        this.transport.open();
+        this.client = new MetaService.Client(protocol);
+    }
+
+    HostAndPort getAddress() {
+        return address;
+    }
+
+    MetaService.Client getClient() {
+        return client;
+    }
+
+    /**
+     * @param timeout the timeout in ms of the next requests
+     */
+    void setTimeout(int timeout) {
+        transport.setTimeout(timeout);
+    }
+
+    boolean isOpen() {
+        return transport.isOpen();
+    }
+
+    void close() {
+        transport.close();
+    }
+}
@@ -0,0 +1,101 @@
+/* Copyright (c) 2019 vesoft inc. All rights reserved.
+ *
+ * This source code is licensed under Apache 2.0 License,
+ * attached with Common Clause Condition 1.0, found in the LICENSES directory.
+ */
+
+package com.vesoft.nebula.meta.client;
+
+import com.facebook.thrift.TException;
+import com.google.common.collect.Maps;
+import com.google.common.net.HostAndPort;
+
+import java.io.Closeable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingDeque;
+
+/**
+ * Per-address pool of blocking meta connections. Meta requests are rare,
+ * so a caller finding no idle connection opens a new one instead of
+ * waiting, and at most maxIdle connections per address are kept.
+ */
+class MetaConnectionPool implements Closeable {
+
+    private final int timeout;
+    private final int maxIdle;
+    private final ConcurrentMap<HostAndPort, LinkedBlockingDeque<MetaConnection>> idle =
+        Maps.newConcurrentMap();
+    private volatile boolean closed = false;
+
+    /**
+     * @param timeout the timeout of RPC request
+     * @param maxIdle the max idle connections kept per address
+     */
+    MetaConnectionPool(int timeout, int maxIdle) {
+        this.timeout = timeout;
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * @param address meta service address
+     * @return An idle connection to the address, or a new one.
+     * @throws TException if a new connection could not be opened.
+     */
+    MetaConnection borrow(HostAndPort address) throws TException {
+        LinkedBlockingDeque<MetaConnection> connections = idleOf(address);
+        MetaConnection connection;
+        while ((connection = connections.pollFirst()) != null) {
+            if (connection.isOpen()) {
+                return connection;
+            }
+            connection.close();
+        }
+        return new MetaConnection(address, timeout);
+    }
+
+    void release(MetaConnection connection) {
+        connection.setTimeout(timeout);
+        if (closed || !idleOf(connection.getAddress()).offerFirst(connection)) {
+            connection.close();
+        }
+    }
+
+    void invalidate(MetaConnection connection) {
+        connection.close();
+    }
+
+    /**
+     * Close the idle connections of the address, such as after it failed.
+     */
+    void evict(HostAndPort address) {
+        LinkedBlockingDeque<MetaConnection> connections = idle.get(address);
+        MetaConnection connection;
+        while (connections != null && (connection = connections.pollFirst()) != null) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Close all the idle connections; the borrowed ones are closed on release.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (HostAndPort address : idle.keySet()) {
+            evict(address);
+        }
+    }
+
+    private LinkedBlockingDeque<MetaConnection> idleOf(HostAndPort address) {
+        LinkedBlockingDeque<MetaConnection> connections = idle.get(address);
+        if (connections == null) {
+            LinkedBlockingDeque<MetaConnection> newConnections =
+                new LinkedBlockingDeque<MetaConnection>(maxIdle);
+            connections = idle.putIfAbsent(address, newConnections);
+            if (connections == null) {
+                connections = newConnections;
+            }
+        }
+        return connections;
+    }
+}
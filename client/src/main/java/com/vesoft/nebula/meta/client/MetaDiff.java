@@ -0,0 +1,112 @@
+/* Copyright (c) 2019 vesoft inc. All rights reserved.
+ *
+ * This source code is licensed under Apache 2.0 License,
+ * attached with Common Clause Condition 1.0, found in the LICENSES directory.
+ */
+
+package com.vesoft.nebula.meta.client;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The spaces changed between two snapshots.
+ */
+public final class MetaDiff {
+
+    private final Set<Integer> addedSpaces;
+    private final Set<Integer> removedSpaces;
+    private final Set<Integer> partsChanged;
+    private final Set<Integer> tagsChanged;
+    private final Set<Integer> edgesChanged;
+
+    private MetaDiff(Set<Integer> addedSpaces, Set<Integer> removedSpaces,
+                     Set<Integer> partsChanged, Set<Integer> tagsChanged,
+                     Set<Integer> edgesChanged) {
+        this.addedSpaces = addedSpaces;
+        this.removedSpaces = removedSpaces;
+        this.partsChanged = partsChanged;
+        this.tagsChanged = tagsChanged;
+        this.edgesChanged = edgesChanged;
+    }
+
+    /**
+     * Compare two snapshots.
+     *
+     * @param previous the old snapshot
+     * @param current  the new snapshot
+     * @return The difference.
+     */
+    public static MetaDiff between(MetaSnapshot previous, MetaSnapshot current) {
+        Set<Integer> oldSpaces = previous.getParts().keySet();
+        Set<Integer> newSpaces = current.getParts().keySet();
+        return new MetaDiff(
+            ImmutableSet.copyOf(Sets.difference(newSpaces, oldSpaces)),
+            ImmutableSet.copyOf(Sets.difference(oldSpaces, newSpaces)),
+            changed(previous.getParts(), current.getParts()),
+            changed(previous.getTagItems(), current.getTagItems()),
+            changed(previous.getEdgeItems(), current.getEdgeItems()));
+    }
+
+    /**
+     * @return The spaces whose value differs, including added and removed ones.
+     */
+    private static Set<Integer> changed(Map<Integer, ?> previous, Map<Integer, ?> current) {
+        ImmutableSet.Builder<Integer> spaces = ImmutableSet.builder();
+        for (Integer space : Sets.union(previous.keySet(), current.keySet())) {
+            if (!Objects.equal(previous.get(space), current.get(space))) {
+                spaces.add(space);
+            }
+        }
+        return spaces.build();
+    }
+
+    public boolean isEmpty() {
+        return addedSpaces.isEmpty() && removedSpaces.isEmpty() && partsChanged.isEmpty()
+            && tagsChanged.isEmpty() && edgesChanged.isEmpty();
+    }
+
+    public Set<Integer> getAddedSpaces() {
+        return addedSpaces;
+    }
+
+    public Set<Integer> getRemovedSpaces() {
+        return removedSpaces;
+    }
+
+    /**
+     * @return The spaces whose parts allocation changed.
+     */
+    public Set<Integer> getPartsChanged() {
+        return partsChanged;
+    }
+
+    /**
+     * @return The spaces whose tags changed.
+     */
+    public Set<Integer> getTagsChanged() {
+        return tagsChanged;
+    }
+
+    /**
+     * @return The spaces whose edges changed.
+     */
+    public Set<Integer> getEdgesChanged() {
+        return edgesChanged;
+    }
+
+    @Override
+    public String toString() {
+        return "MetaDiff{"
+                + "addedSpaces=" + addedSpaces
+                + ", removedSpaces=" + removedSpaces
+                + ", partsChanged=" + partsChanged
+                + ", tagsChanged=" + tagsChanged
+                + ", edgesChanged=" + edgesChanged
+                + '}';
+    }
+}
@@ -0,0 +1,102 @@
+/* Copyright (c) 2019 vesoft inc. All rights reserved.
+ *
+ * This source code is licensed under Apache 2.0 License,
+ * attached with Common Clause Condition 1.0, found in the LICENSES directory.
+ */
+
+package com.vesoft.nebula.meta.client;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.vesoft.nebula.HostAddr;
+import com.vesoft.nebula.meta.EdgeItem;
+import com.vesoft.nebula.meta.IdName;
+import com.vesoft.nebula.meta.TagItem;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable view of the spaces, parts allocation and schemas pulled from
+ * the meta service. A new snapshot replaces the old one as a whole.
+ */
+public final class MetaSnapshot {
+
+    public static final MetaSnapshot EMPTY = new MetaSnapshot(0,
+        ImmutableList.<IdName>of(),
+        ImmutableMap.<Integer, Map<Integer, List<HostAddr>>>of(),
+        ImmutableMap.<Integer, Map<String, TagItem>>of(),
+        ImmutableMap.<Integer, Map<String, EdgeItem>>of());
+
+    private final long version;
+    private final List<IdName> spaces;
+    private final Map<String, Integer> spaceNames;
+    private final Map<Integer, Map<Integer, List<HostAddr>>> parts;
+    private final Map<Integer, Map<String, TagItem>> tagItems;
+    private final Map<Integer, Map<String, EdgeItem>> edgeItems;
+
+    MetaSnapshot(long version, List<IdName> spaces,
+                 Map<Integer, Map<Integer, List<HostAddr>>> parts,
+                 Map<Integer, Map<String, TagItem>> tagItems,
+                 Map<Integer, Map<String, EdgeItem>> edgeItems) {
+        this.version = version;
+        this.spaces = ImmutableList.copyOf(spaces);
+        ImmutableMap.Builder<String, Integer> names = ImmutableMap.builder();
+        for (IdName space : spaces) {
+            names.put(space.getName(), space.getId().getSpace_id());
+        }
+        this.spaceNames = names.build();
+
+        ImmutableMap.Builder<Integer, Map<Integer, List<HostAddr>>> partsBuilder =
+            ImmutableMap.builder();
+        for (Map.Entry<Integer, Map<Integer, List<HostAddr>>> entry : parts.entrySet()) {
+            ImmutableMap.Builder<Integer, List<HostAddr>> hosts = ImmutableMap.builder();
+            for (Map.Entry<Integer, List<HostAddr>> part : entry.getValue().entrySet()) {
+                hosts.put(part.getKey(), ImmutableList.copyOf(part.getValue()));
+            }
+            partsBuilder.put(entry.getKey(), hosts.build());
+        }
+        this.parts = partsBuilder.build();
+        this.tagItems = copy(tagItems);
+        this.edgeItems = copy(edgeItems);
+    }
+
+    private static <T> Map<Integer, Map<String, T>> copy(Map<Integer, Map<String, T>> items) {
+        ImmutableMap.Builder<Integer, Map<String, T>> builder = ImmutableMap.builder();
+        for (Map.Entry<Integer, Map<String, T>> entry : items.entrySet()) {
+            builder.put(entry.getKey(), ImmutableMap.copyOf(entry.getValue()));
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return The version increased by every published snapshot.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public List<IdName> getSpaces() {
+        return spaces;
+    }
+
+    /**
+     * @param spaceName the space's name
+     * @return The space id, null if there is no such space.
+     */
+    public Integer getSpaceId(String spaceName) {
+        return spaceNames.get(spaceName);
+    }
+
+    public Map<Integer, Map<Integer, List<HostAddr>>> getParts() {
+        return parts;
+    }
+
+    public Map<Integer, Map<String, TagItem>> getTagItems() {
+        return tagItems;
+    }
+
+    public Map<Integer, Map<String, EdgeItem>> getEdgeItems() {
+        return edgeItems;
+    }
+}
@@ -0,0 +1,92 @@
+/* Copyright (c) 2019 vesoft inc. All rights reserved.
+ *
+ * This source code is licensed under Apache 2.0 License,
+ * attached with Common Clause Condition 1.0, found in the LICENSES directory.
+ */
+
+package com.vesoft.nebula.meta.client;
+
+import com.google.common.collect.ImmutableMap;
+import com.vesoft.nebula.ColumnDef;
+import com.vesoft.nebula.Schema;
+import com.vesoft.nebula.utils.NebulaTypeUtil;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A version of tag or edge schema with the ordinal and type of every field
+ * computed once, shared by all the lookups of that version.
+ */
+public final class VersionedSchema {
+
+    private final long version;
+    private final Schema schema;
+    private final String[] names;
+    private final int[] types;
+    private final Map<String, Integer> ordinals;
+    private final Map<String, Class> classes;
+
+    /**
+     * @param version the schema version
+     * @param schema  the schema
+     */
+    public VersionedSchema(long version, Schema schema) {
+        this.version = version;
+        this.schema = schema;
+        List<ColumnDef> columns = schema.getColumns();
+        this.names = new String[columns.size()];
+        this.types = new int[columns.size()];
+        ImmutableMap.Builder<String, Integer> ordinalBuilder = ImmutableMap.builder();
+        ImmutableMap.Builder<String, Class> classBuilder = ImmutableMap.builder();
+        for (int i = 0; i < columns.size(); i++) {
+            ColumnDef column = columns.get(i);
+            names[i] = column.getName();
+            types[i] = column.getType().getType();
+            ordinalBuilder.put(names[i], i);
+            classBuilder.put(names[i], NebulaTypeUtil.supportedTypeToClass(types[i]));
+        }
+        this.ordinals = ordinalBuilder.build();
+        this.classes = classBuilder.build();
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Schema getSchema() {
+        return schema;
+    }
+
+    public int getFieldCount() {
+        return names.length;
+    }
+
+    public String getFieldName(int ordinal) {
+        return names[ordinal];
+    }
+
+    /**
+     * @param ordinal the field ordinal
+     * @return The SupportedType of the field.
+     */
+    public int getFieldType(int ordinal) {
+        return types[ordinal];
+    }
+
+    /**
+     * @param field the field name
+     * @return The field ordinal, -1 if the field does not exist.
+     */
+    public int getOrdinal(String field) {
+        Integer ordinal = ordinals.get(field);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    /**
+     * @return The immutable map of field name to its Java class.
+     */
+    public Map<String, Class> getFieldClasses() {
+        return classes;
+    }
+}
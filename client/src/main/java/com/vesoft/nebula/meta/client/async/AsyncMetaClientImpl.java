@@ -10,20 +10,22 @@ import static com.google.common.base.Preconditions.checkArgument;
 
 import com.facebook.thrift.TException;
 import com.facebook.thrift.async.TAsyncClientManager;
+import com.facebook.thrift.async.TAsyncEventLoopGroup;
 import com.facebook.thrift.protocol.TBinaryProtocol;
 import com.facebook.thrift.protocol.TProtocolFactory;
 import com.facebook.thrift.transport.TNonblockingSocket;
 import com.facebook.thrift.transport.TNonblockingTransport;
 import com.facebook.thrift.transport.TTransportException;
 
+import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.net.HostAndPort;
 import com.google.common.net.InetAddresses;
+import com.google.common.util.concurrent.FutureFallback;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
 
 import com.vesoft.nebula.meta.GetPartsAllocReq;
 import com.vesoft.nebula.meta.GetPartsAllocResp;
@@ -46,8 +48,6 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
-import java.util.concurrent.Callable;
-import java.util.concurrent.Executors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -64,7 +64,7 @@ public class AsyncMetaClientImpl implements AsyncMetaClient {
 
     private TAsyncClientManager manager;
 
-    private ListeningExecutorService service;
+    private final TAsyncEventLoopGroup group;
 
     private final List<HostAndPort> addresses;
     private final int connectionRetry;
@@ -73,6 +73,18 @@ public class AsyncMetaClientImpl implements AsyncMetaClient {
     private Map<String, Integer> spaceNames;
 
     public AsyncMetaClientImpl(List<HostAndPort> addresses, int timeout, int connectionRetry) {
+        this(addresses, timeout, connectionRetry, TAsyncEventLoopGroup.getDefault());
+    }
+
+    /**
+     * @param addresses       The addresses of meta services.
+     * @param timeout         The timeout of RPC request.
+     * @param connectionRetry The number of retries when connection failure.
+     * @param group           The event loop group whose selector threads carry the
+     *                        connection, shared with other clients.
+     */
+    public AsyncMetaClientImpl(List<HostAndPort> addresses, int timeout, int connectionRetry,
+                               TAsyncEventLoopGroup group) {
         checkArgument(timeout > 0);
         checkArgument(connectionRetry > 0);
         if (addresses.isEmpty()) {
@@ -80,7 +92,7 @@ public class AsyncMetaClientImpl implements AsyncMetaClient {
         }
 
         for (HostAndPort address : addresses) {
-            String host = address.getHost();
+            String host = address.getHostText();
             int port = address.getPort();
             if (!InetAddresses.isInetAddress(host) || (port <= 0 || port >= 65535)) {
                 throw new IllegalArgumentException(String.format("%s:%d is not a valid address",
@@ -88,13 +100,12 @@ public class AsyncMetaClientImpl implements AsyncMetaClient {
             }
         }
 
-        service = MoreExecutors.listeningDecorator(Executors.newCachedThreadPool());
-
         this.spaces = Lists.newArrayList();
         this.spaceNames = Maps.newHashMap();
         this.addresses = addresses;
         this.connectionRetry = connectionRetry;
         this.timeout = timeout;
+        this.group = group;
 
         this.metaClient = new MetaClientImpl(addresses, timeout, connectionRetry);
     }
@@ -127,10 +138,12 @@ public class AsyncMetaClientImpl implements AsyncMetaClient {
             int position = random.nextInt(addresses.size());
             HostAndPort address = addresses.get(position);
             try {
-                manager = new TAsyncClientManager();
-                transport = new TNonblockingSocket(address.getHost(), address.getPort(), timeout);
+                manager = group.next();
+                transport = new TNonblockingSocket(address.getHostText(), address.getPort(),
+                    timeout);
                 TProtocolFactory protocol = new TBinaryProtocol.Factory();
                 client = new MetaService.AsyncClient(protocol, manager, transport);
+                client.setTimeout(timeout);
                 return true;
             } catch (TTransportException tte) {
                 LOGGER.error("Connect failed: " + tte.getMessage());
@@ -148,23 +161,14 @@ public class AsyncMetaClientImpl implements AsyncMetaClient {
      */
     @Override
     public ListenableFuture<Optional<ListSpacesResp>> listSpaces() {
-        return service.submit(new Callable<Optional<ListSpacesResp>>() {
-            @Override
-            public Optional<ListSpacesResp> call() throws Exception {
-                ListSpaceCallback callback = new ListSpaceCallback();
-                try {
-                    client.listSpaces(new ListSpacesReq(), callback);
-                } catch (TException e) {
-                    LOGGER.error(String.format("List Space Call Error: %s", e.getMessage()));
-                }
-                if (callback.getResult().isPresent()) {
-                    ListSpacesResp resp = (ListSpacesResp) callback.getResult().get();
-                    return Optional.of(resp);
-                } else {
-                    return Optional.absent();
-                }
-            }
-        });
+        ListSpaceCallback callback = new ListSpaceCallback();
+        try {
+            client.listSpaces(new ListSpacesReq(), callback);
+        } catch (TException e) {
+            LOGGER.error(String.format("List Space Call Error: %s", e.getMessage()));
+            callback.onError(e);
+        }
+        return toOptional(callback.getFuture());
     }
 
     /**
@@ -190,29 +194,17 @@ public class AsyncMetaClientImpl implements AsyncMetaClient {
      * @return
      */
     @Override
-    public ListenableFuture<Optional<GetPartsAllocResp>> getPartsAlloc(final int spaceId) {
-        return service.submit(new Callable<Optional<GetPartsAllocResp>>() {
-            @Override
-            public Optional<GetPartsAllocResp> call() throws Exception {
-                GetPartsAllocCallback callback = new GetPartsAllocCallback();
-                GetPartsAllocReq req = new GetPartsAllocReq();
-                req.setSpace_id(spaceId);
-                try {
-                    client.getPartsAlloc(req, callback);
-                } catch (TException e) {
-                    LOGGER.error(String.format("Get Parts Alloc Call Error: %s", e.getMessage()));
-                }
-                while (!callback.checkReady()) {
-                    Thread.sleep(100);
-                }
-                if (callback.getResult().isPresent()) {
-                    GetPartsAllocResp resp = (GetPartsAllocResp) callback.getResult().get();
-                    return Optional.of(resp);
-                } else {
-                    return Optional.absent();
-                }
-            }
-        });
+    public ListenableFuture<Optional<GetPartsAllocResp>> getPartsAlloc(int spaceId) {
+        GetPartsAllocCallback callback = new GetPartsAllocCallback();
+        GetPartsAllocReq req = new GetPartsAllocReq();
+        req.setSpace_id(spaceId);
+        try {
+            client.getPartsAlloc(req, callback);
+        } catch (TException e) {
+            LOGGER.error(String.format("Get Parts Alloc Call Error: %s", e.getMessage()));
+            callback.onError(e);
+        }
+        return toOptional(callback.getFuture());
     }
 
     /**
@@ -238,29 +230,17 @@ public class AsyncMetaClientImpl implements AsyncMetaClient {
      * @return
      */
     @Override
-    public ListenableFuture<Optional<ListTagsResp>> listTags(final int spaceId) {
-        return service.submit(new Callable<Optional<ListTagsResp>>() {
-            @Override
-            public Optional<ListTagsResp> call() throws Exception {
-                ListTagsCallback callback = new ListTagsCallback();
-                ListTagsReq req = new ListTagsReq();
-                req.setSpace_id(spaceId);
-                try {
-                    client.listTags(req, callback);
-                } catch (TException e) {
-                    LOGGER.error(String.format("List Tags Call Error: %s", e.getMessage()));
-                }
-                while (!callback.checkReady()) {
-                    Thread.sleep(100);
-                }
-                if (callback.getResult().isPresent()) {
-                    ListTagsResp resp = (ListTagsResp) callback.getResult().get();
-                    return Optional.of(resp);
-                } else {
-                    return Optional.absent();
-                }
-            }
-        });
+    public ListenableFuture<Optional<ListTagsResp>> listTags(int spaceId) {
+        ListTagsCallback callback = new ListTagsCallback();
+        ListTagsReq req = new ListTagsReq();
+        req.setSpace_id(spaceId);
+        try {
+            client.listTags(req, callback);
+        } catch (TException e) {
+            LOGGER.error(String.format("List Tags Call Error: %s", e.getMessage()));
+            callback.onError(e);
+        }
+        return toOptional(callback.getFuture());
     }
 
     /**
@@ -286,39 +266,41 @@ public class AsyncMetaClientImpl implements AsyncMetaClient {
      * @return
      */
     @Override
-    public ListenableFuture<Optional<ListEdgesResp>> listEdges(final int spaceId) {
-        return service.submit(new Callable<Optional<ListEdgesResp>>() {
+    public ListenableFuture<Optional<ListEdgesResp>> listEdges(int spaceId) {
+        ListEdgesCallback callback = new ListEdgesCallback();
+        ListEdgesReq req = new ListEdgesReq();
+        req.setSpace_id(spaceId);
+        try {
+            client.listEdges(req, callback);
+        } catch (TException e) {
+            LOGGER.error(String.format("List Edges Call Error: %s", e.getMessage()));
+            callback.onError(e);
+        }
+        return toOptional(callback.getFuture());
+    }
+
+    /**
+     * Turn a failed call into an absent result, like a call without a response.
+     *
+     * @param future the future of the callback
+     * @return
+     */
+    private <T> ListenableFuture<Optional<T>> toOptional(ListenableFuture<T> future) {
+        return Futures.withFallback(Futures.transform(future, new Function<T, Optional<T>>() {
             @Override
-            public Optional<ListEdgesResp> call() throws Exception {
-                ListEdgesCallback callback = new ListEdgesCallback();
-                ListEdgesReq req = new ListEdgesReq();
-                req.setSpace_id(spaceId);
-                try {
-                    client.listEdges(req, callback);
-                } catch (TException e) {
-                    LOGGER.error(String.format("List Edges Call Error: %s", e.getMessage()));
-                }
-                while (!callback.checkReady()) {
-                    Thread.sleep(100);
-                }
-                if (callback.getResult().isPresent()) {
-                    ListEdgesResp resp = (ListEdgesResp) callback.getResult().get();
-                    return Optional.of(resp);
-                } else {
-                    return Optional.absent();
-                }
+            public Optional<T> apply(T resp) {
+                return Optional.fromNullable(resp);
+            }
+        }), new FutureFallback<Optional<T>>() {
+            @Override
+            public ListenableFuture<Optional<T>> create(Throwable t) {
+                return Futures.immediateFuture(Optional.<T>absent());
             }
         });
     }
 
     @Override
     public void close() {
-        service.shutdown();
         transport.close();
-        try {
-            manager.stop();
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
     }
 }
@@ -9,16 +9,13 @@ package com.vesoft.nebula.meta.client.async.entry;
 import com.facebook.thrift.TException;
 import com.facebook.thrift.async.TAsyncMethodCall;
 import com.vesoft.nebula.entry.AbstractNebulaCallback;
+import com.vesoft.nebula.meta.GetPartsAllocResp;
 import com.vesoft.nebula.meta.MetaService.AsyncClient;
 
-public class GetPartsAllocCallback extends AbstractNebulaCallback {
+public class GetPartsAllocCallback extends AbstractNebulaCallback<GetPartsAllocResp> {
     @Override
-    public void doComplete(TAsyncMethodCall response) {
+    public GetPartsAllocResp doComplete(TAsyncMethodCall response) throws TException {
         AsyncClient.getPartsAlloc_call call = (AsyncClient.getPartsAlloc_call) response;
-        try {
-            result = call.getResult();
-        } catch (TException e) {
-            e.printStackTrace();
-        }
+        return call.getResult();
     }
 }
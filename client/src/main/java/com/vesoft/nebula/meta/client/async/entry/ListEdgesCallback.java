@@ -9,16 +9,13 @@ package com.vesoft.nebula.meta.client.async.entry;
 import com.facebook.thrift.TException;
 import com.facebook.thrift.async.TAsyncMethodCall;
 import com.vesoft.nebula.entry.AbstractNebulaCallback;
+import com.vesoft.nebula.meta.ListEdgesResp;
 import com.vesoft.nebula.meta.MetaService.AsyncClient;
 
-public class ListEdgesCallback extends AbstractNebulaCallback {
+public class ListEdgesCallback extends AbstractNebulaCallback<ListEdgesResp> {
     @Override
-    public void doComplete(TAsyncMethodCall response) {
+    public ListEdgesResp doComplete(TAsyncMethodCall response) throws TException {
         AsyncClient.listEdges_call call = (AsyncClient.listEdges_call) response;
-        try {
-            result = call.getResult();
-        } catch (TException e) {
-            e.printStackTrace();
-        }
+        return call.getResult();
     }
 }
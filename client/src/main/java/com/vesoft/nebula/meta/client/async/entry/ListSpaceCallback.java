@@ -9,16 +9,13 @@ package com.vesoft.nebula.meta.client.async.entry;
 import com.facebook.thrift.TException;
 import com.facebook.thrift.async.TAsyncMethodCall;
 import com.vesoft.nebula.entry.AbstractNebulaCallback;
+import com.vesoft.nebula.meta.ListSpacesResp;
 import com.vesoft.nebula.meta.MetaService.AsyncClient;
 
-public class ListSpaceCallback extends AbstractNebulaCallback {
+public class ListSpaceCallback extends AbstractNebulaCallback<ListSpacesResp> {
     @Override
-    public void doComplete(TAsyncMethodCall response) {
+    public ListSpacesResp doComplete(TAsyncMethodCall response) throws TException {
         AsyncClient.listSpaces_call call = (AsyncClient.listSpaces_call) response;
-        try {
-            result = call.getResult();
-        } catch (TException e) {
-            e.printStackTrace();
-        }
+        return call.getResult();
     }
 }
@@ -9,16 +9,13 @@ package com.vesoft.nebula.meta.client.async.entry;
 import com.facebook.thrift.TException;
 import com.facebook.thrift.async.TAsyncMethodCall;
 import com.vesoft.nebula.entry.AbstractNebulaCallback;
+import com.vesoft.nebula.meta.ListTagsResp;
 import com.vesoft.nebula.meta.MetaService.AsyncClient;
 
-public class ListTagsCallback extends AbstractNebulaCallback {
+public class ListTagsCallback extends AbstractNebulaCallback<ListTagsResp> {
     @Override
-    public void doComplete(TAsyncMethodCall response) {
+    public ListTagsResp doComplete(TAsyncMethodCall response) throws TException {
         AsyncClient.listTags_call call = (AsyncClient.listTags_call) response;
-        try {
-            result = call.getResult();
-        } catch (TException e) {
-            e.printStackTrace();
-        }
+        return call.getResult();
     }
 }
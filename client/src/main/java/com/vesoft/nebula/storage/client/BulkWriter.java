@@ -0,0 +1,517 @@
+/* Copyright (c) 2019 vesoft inc. All rights reserved.
+ *
+ * This source code is licensed under Apache 2.0 License,
+ * attached with Common Clause Condition 1.0, found in the LICENSES directory.
+ */
+
+package com.vesoft.nebula.storage.client;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.facebook.thrift.TException;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.vesoft.nebula.HostAddr;
+import com.vesoft.nebula.RetryPolicy;
+import com.vesoft.nebula.storage.AddEdgesRequest;
+import com.vesoft.nebula.storage.AddVerticesRequest;
+import com.vesoft.nebula.storage.Edge;
+import com.vesoft.nebula.storage.EdgeKey;
+import com.vesoft.nebula.storage.ErrorCode;
+import com.vesoft.nebula.storage.ExecResponse;
+import com.vesoft.nebula.storage.ResultCode;
+import com.vesoft.nebula.storage.Vertex;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Write vertices and edges of a space straight to the storage leaders.
+ * Items are routed by vid to their part and leader and buffered per leader;
+ * a buffer is sent as one addVertices/addEdges pair once it holds the batch
+ * size or has waited the flush interval. At most a bounded number of batches
+ * are in flight per host, adding blocks when a host falls behind. Parts
+ * whose leader changed, and items not acknowledged for a broken connection,
+ * are resent to their latest leaders as the retry policy of the storage
+ * client allows.
+ *
+ * <p>Failed items are logged and counted, see {@link #getFailures()}.
+ */
+public class BulkWriter implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BulkWriter.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 512;
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = 100;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+    private final StorageClientImpl client;
+    private final int space;
+    private final int batchSize;
+    private final long flushInterval;
+    private final int maxInFlight;
+    private final boolean writeReverseEdges;
+
+    // Guarded by itself.
+    private final Map<HostAddr, Batch> batches = Maps.newHashMap();
+    private final ConcurrentMap<HostAddr, Semaphore> permits = Maps.newConcurrentMap();
+    private final Object inFlightLock = new Object();
+    private int inFlight = 0;
+    private final AtomicLong failures = new AtomicLong();
+    private volatile boolean closed = false;
+
+    private final ExecutorService senders;
+    private final ScheduledExecutorService flusher;
+
+    /**
+     * @param client            the storage client providing routing and connections
+     * @param space             nebula space id
+     * @param batchSize         the number of items sending a leader's buffer
+     * @param flushInterval     the max time in ms an item waits in a buffer
+     * @param maxInFlight       the max number of batches in flight per host
+     * @param writeReverseEdges whether to also write the reverse edge to the part of dst,
+     *                          as inserting edges by statements does
+     */
+    public BulkWriter(StorageClientImpl client, int space, int batchSize, long flushInterval,
+                      int maxInFlight, boolean writeReverseEdges) {
+        checkArgument(batchSize > 0);
+        checkArgument(flushInterval > 0);
+        checkArgument(maxInFlight > 0);
+        this.client = client;
+        this.space = space;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.maxInFlight = maxInFlight;
+        this.writeReverseEdges = writeReverseEdges;
+
+        this.senders = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+            .setNameFormat("bulk-writer-sender-%d").setDaemon(true).build());
+        this.flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("bulk-writer-flusher-%d").setDaemon(true).build());
+        this.flusher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                flushExpired();
+            }
+        }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param client the storage client providing routing and connections
+     * @param space  nebula space id
+     */
+    public BulkWriter(StorageClientImpl client, int space) {
+        this(client, space, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL_MS, DEFAULT_MAX_IN_FLIGHT,
+            true);
+    }
+
+    /**
+     * Add a vertex, routed by its id.
+     *
+     * @param vertex the vertex
+     * @return false if the space or the leader of its part is unknown.
+     */
+    public boolean add(Vertex vertex) {
+        checkOpened();
+        int part = client.vidToPartId(space, vertex.getId());
+        HostAddr leader = leader(part, 1);
+        if (leader == null) {
+            return false;
+        }
+
+        Batch full;
+        synchronized (batches) {
+            // Checked again under the lock, so nothing is buffered after the last flush.
+            checkOpened();
+            Batch batch = batchOf(batches, leader);
+            batch.add(part, vertex);
+            full = takeIfFull(leader, batch);
+        }
+        submit(leader, full);
+        return true;
+    }
+
+    /**
+     * Add an edge, routed by its src, and its reverse routed by its dst if enabled.
+     *
+     * @param edge the edge
+     * @return false if the space or the leader of its part is unknown.
+     */
+    public boolean add(Edge edge) {
+        checkOpened();
+        EdgeKey key = edge.getKey();
+        if (!addEdge(key.getSrc(), edge)) {
+            return false;
+        }
+
+        if (writeReverseEdges) {
+            EdgeKey reverseKey = new EdgeKey(key.getDst(), -key.getEdge_type(),
+                key.getRanking(), key.getSrc());
+            return addEdge(key.getDst(), new Edge(reverseKey, edge.getProps()));
+        }
+        return true;
+    }
+
+    private boolean addEdge(long vid, Edge edge) {
+        int part = client.vidToPartId(space, vid);
+        HostAddr leader = leader(part, 1);
+        if (leader == null) {
+            return false;
+        }
+
+        Batch full;
+        synchronized (batches) {
+            checkOpened();
+            Batch batch = batchOf(batches, leader);
+            batch.add(part, edge);
+            full = takeIfFull(leader, batch);
+        }
+        submit(leader, full);
+        return true;
+    }
+
+    /**
+     * Send all the buffered items and wait for every batch in flight.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void flush() throws InterruptedException {
+        Map<HostAddr, Batch> pending;
+        synchronized (batches) {
+            pending = Maps.newHashMap(batches);
+            batches.clear();
+        }
+        for (Map.Entry<HostAddr, Batch> entry : pending.entrySet()) {
+            submit(entry.getKey(), entry.getValue());
+        }
+
+        synchronized (inFlightLock) {
+            while (inFlight > 0) {
+                inFlightLock.wait();
+            }
+        }
+    }
+
+    /**
+     * @return The number of vertices and edges failed to be written.
+     */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * Flush and stop the writer, the storage client is not closed.
+     */
+    @Override
+    public void close() {
+        synchronized (batches) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+
+        try {
+            flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("Close interrupted before all the items are written");
+        }
+        flusher.shutdownNow();
+        senders.shutdown();
+    }
+
+    private void checkOpened() {
+        if (closed) {
+            throw new IllegalStateException("The writer has been closed");
+        }
+    }
+
+    private Batch takeIfFull(HostAddr leader, Batch batch) {
+        if (batch.size < batchSize) {
+            return null;
+        }
+        batches.remove(leader);
+        return batch;
+    }
+
+    private void flushExpired() {
+        long now = System.currentTimeMillis();
+        Map<HostAddr, Batch> expired = Maps.newHashMap();
+        synchronized (batches) {
+            Iterator<Map.Entry<HostAddr, Batch>> iterator = batches.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<HostAddr, Batch> entry = iterator.next();
+                if (now - entry.getValue().createdTime >= flushInterval) {
+                    expired.put(entry.getKey(), entry.getValue());
+                    iterator.remove();
+                }
+            }
+        }
+        for (Map.Entry<HostAddr, Batch> entry : expired.entrySet()) {
+            submit(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Send the batch on a sender thread, blocking while the host has too many batches in flight.
+     */
+    private void submit(final HostAddr leader, final Batch batch) {
+        if (batch == null) {
+            return;
+        }
+
+        final Semaphore semaphore = permitsOf(leader);
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(batch.size, "Submit interrupted");
+            return;
+        }
+
+        synchronized (inFlightLock) {
+            inFlight++;
+        }
+        senders.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    send(leader, batch, client.startRetry());
+                } finally {
+                    semaphore.release();
+                    synchronized (inFlightLock) {
+                        inFlight--;
+                        inFlightLock.notifyAll();
+                    }
+                }
+            }
+        });
+    }
+
+    private Semaphore permitsOf(HostAddr leader) {
+        Semaphore semaphore = permits.get(leader);
+        if (semaphore == null) {
+            permits.putIfAbsent(leader, new Semaphore(maxInFlight));
+            semaphore = permits.get(leader);
+        }
+        return semaphore;
+    }
+
+    private void send(HostAddr leader, Batch batch, RetryPolicy.Retry retry) {
+        StorageConnection connection = client.getPool().borrow(leader);
+        if (connection == null) {
+            invalidLeaders(batch);
+            resend(batch, retry, String.format("No connection to %s", leader));
+            return;
+        }
+
+        Map<HostAddr, Batch> redirects = Maps.newHashMap();
+        // The items neither written, failed nor redirected yet.
+        Batch unacknowledged = batch;
+        try {
+            if (!batch.vertices.isEmpty()) {
+                AddVerticesRequest request = new AddVerticesRequest(space, batch.vertices, true);
+                ExecResponse response = connection.getClient().addVertices(request);
+                for (ResultCode code : response.result.getFailed_codes()) {
+                    List<Vertex> vertices = batch.vertices.get(code.getPart_id());
+                    HostAddr newLeader = redirect(code);
+                    if (newLeader != null) {
+                        batchOf(redirects, newLeader).addVertices(code.getPart_id(), vertices);
+                    } else {
+                        fail(vertices.size(), String.format("Add vertices to part %d failed: %d",
+                            code.getPart_id(), code.getCode()));
+                    }
+                }
+                unacknowledged = batch.edgesOnly();
+            }
+
+            if (!batch.edges.isEmpty()) {
+                AddEdgesRequest request = new AddEdgesRequest(space, batch.edges, true);
+                ExecResponse response = connection.getClient().addEdges(request);
+                for (ResultCode code : response.result.getFailed_codes()) {
+                    List<Edge> edges = batch.edges.get(code.getPart_id());
+                    HostAddr newLeader = redirect(code);
+                    if (newLeader != null) {
+                        batchOf(redirects, newLeader).addEdges(code.getPart_id(), edges);
+                    } else {
+                        fail(edges.size(), String.format("Add edges to part %d failed: %d",
+                            code.getPart_id(), code.getCode()));
+                    }
+                }
+            }
+            client.getPool().release(connection);
+        } catch (TException e) {
+            client.getPool().invalidate(connection);
+            invalidLeaders(unacknowledged);
+            resend(unacknowledged, retry, String.format("Write to %s failed: %s", leader,
+                e.getMessage()));
+        }
+
+        if (redirects.isEmpty()) {
+            return;
+        }
+        // A leader change is followed at once, without the backoff.
+        boolean follow = retry.canRetry(true);
+        for (Map.Entry<HostAddr, Batch> entry : redirects.entrySet()) {
+            if (follow) {
+                send(entry.getKey(), entry.getValue(), retry);
+            } else {
+                fail(entry.getValue().size, String.format("Leader changed, give up writing to %s",
+                    entry.getKey()));
+            }
+        }
+    }
+
+    /**
+     * Resend the items to the latest leaders of their parts after the
+     * backoff, or count them as failed if the retries ran out.
+     */
+    private void resend(Batch batch, RetryPolicy.Retry retry, String message) {
+        if (batch.size == 0) {
+            return;
+        }
+        if (!retry.retry(true)) {
+            fail(batch.size, message);
+            return;
+        }
+
+        LOGGER.warn(message);
+        Map<HostAddr, Batch> regrouped = Maps.newHashMap();
+        for (Map.Entry<Integer, List<Vertex>> entry : batch.vertices.entrySet()) {
+            HostAddr leader = leader(entry.getKey(), entry.getValue().size());
+            if (leader != null) {
+                batchOf(regrouped, leader).addVertices(entry.getKey(), entry.getValue());
+            }
+        }
+        for (Map.Entry<Integer, List<Edge>> entry : batch.edges.entrySet()) {
+            HostAddr leader = leader(entry.getKey(), entry.getValue().size());
+            if (leader != null) {
+                batchOf(regrouped, leader).addEdges(entry.getKey(), entry.getValue());
+            }
+        }
+        for (Map.Entry<HostAddr, Batch> entry : regrouped.entrySet()) {
+            send(entry.getKey(), entry.getValue(), retry);
+        }
+    }
+
+    /**
+     * @return The leader to resend the part to, null if the failure is not retryable.
+     */
+    private HostAddr redirect(ResultCode code) {
+        if (code.getCode() != ErrorCode.E_LEADER_CHANGED) {
+            return null;
+        }
+
+        HostAddr addr = code.getLeader();
+        if (addr != null && addr.getIp() != 0 && addr.getPort() != 0) {
+            HostAddr newLeader = new HostAddr(addr.getIp(), addr.getPort());
+            client.updateLeader(space, code.getPart_id(), newLeader);
+            return newLeader;
+        }
+        client.invalidLeader(space, code.getPart_id());
+        return leader(code.getPart_id(), 0);
+    }
+
+    private HostAddr leader(int part, int count) {
+        if (part < 0) {
+            fail(count, String.format("Space %d has no parts", space));
+            return null;
+        }
+        HostAddr leader = client.getLeader(space, part);
+        if (leader == null && count > 0) {
+            fail(count, String.format("Leader of part %d is unknown", part));
+        }
+        return leader;
+    }
+
+    private void invalidLeaders(Batch batch) {
+        for (Integer part : batch.vertices.keySet()) {
+            client.invalidLeader(space, part);
+        }
+        for (Integer part : batch.edges.keySet()) {
+            client.invalidLeader(space, part);
+        }
+    }
+
+    private void fail(int count, String message) {
+        failures.addAndGet(count);
+        LOGGER.error(message);
+    }
+
+    private static Batch batchOf(Map<HostAddr, Batch> batches, HostAddr leader) {
+        Batch batch = batches.get(leader);
+        if (batch == null) {
+            batch = new Batch();
+            batches.put(leader, batch);
+        }
+        return batch;
+    }
+
+    /**
+     * The items buffered for a leader, grouped by part.
+     */
+    private static class Batch {
+        private final Map<Integer, List<Vertex>> vertices = Maps.newHashMap();
+        private final Map<Integer, List<Edge>> edges = Maps.newHashMap();
+        private final long createdTime = System.currentTimeMillis();
+        private int size = 0;
+        private int vertexCount = 0;
+
+        void add(int part, Vertex vertex) {
+            List<Vertex> list = vertices.get(part);
+            if (list == null) {
+                list = Lists.newArrayList();
+                vertices.put(part, list);
+            }
+            list.add(vertex);
+            size++;
+            vertexCount++;
+        }
+
+        void add(int part, Edge edge) {
+            List<Edge> list = edges.get(part);
+            if (list == null) {
+                list = Lists.newArrayList();
+                edges.put(part, list);
+            }
+            list.add(edge);
+            size++;
+        }
+
+        void addVertices(int part, List<Vertex> list) {
+            vertices.put(part, list);
+            size += list.size();
+            vertexCount += list.size();
+        }
+
+        void addEdges(int part, List<Edge> list) {
+            edges.put(part, list);
+            size += list.size();
+        }
+
+        /**
+         * @return A batch of the edges only.
+         */
+        Batch edgesOnly() {
+            Batch batch = new Batch();
+            for (Map.Entry<Integer, List<Edge>> entry : edges.entrySet()) {
+                batch.addEdges(entry.getKey(), entry.getValue());
+            }
+            return batch;
+        }
+    }
+}
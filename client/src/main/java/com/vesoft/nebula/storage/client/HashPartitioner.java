@@ -0,0 +1,131 @@
+/* Copyright (c) 2019 vesoft inc. All rights reserved.
+ *
+ * This source code is licensed under Apache 2.0 License,
+ * attached with Common Clause Condition 1.0, found in the LICENSES directory.
+ */
+
+package com.vesoft.nebula.storage.client;
+
+import com.google.common.primitives.UnsignedLongs;
+
+import java.util.List;
+
+import org.apache.commons.codec.digest.MurmurHash2;
+
+/**
+ * The partitioning of the storage services. A key is hashed by the 64-bit
+ * MurmurHash2 of its UTF-8 bytes, and the hash as well as a vertex id are
+ * taken as unsigned numbers, so part = unsigned % partCount + 1.
+ *
+ * <p>Strings are encoded into the hash on the fly instead of through
+ * {@link String#getBytes}, which also depends on the platform charset.</p>
+ */
+public class HashPartitioner implements Partitioner {
+
+    private static final long M = 0xc6a4a7935bd1e995L;
+    private static final int R = 47;
+    // The default seed of MurmurHash2.hash64.
+    private static final int SEED = 0xe17a1465;
+
+    @Override
+    public int partition(String key, int partCount) {
+        return (int) UnsignedLongs.remainder(hash64(key), partCount) + 1;
+    }
+
+    @Override
+    public int partition(byte[] key, int partCount) {
+        return (int) UnsignedLongs.remainder(MurmurHash2.hash64(key, key.length), partCount) + 1;
+    }
+
+    @Override
+    public int partition(long vid, int partCount) {
+        return (int) UnsignedLongs.remainder(vid, partCount) + 1;
+    }
+
+    @Override
+    public void partitionBatch(List<String> keys, int partCount, int[] parts) {
+        int i = 0;
+        for (String key : keys) {
+            parts[i++] = (int) UnsignedLongs.remainder(hash64(key), partCount) + 1;
+        }
+    }
+
+    /**
+     * @return MurmurHash2.hash64 of the UTF-8 bytes of key, without encoding them.
+     */
+    static long hash64(String key) {
+        int length = utf8Length(key);
+        long h = (SEED & 0xffffffffL) ^ (length * M);
+        long block = 0;
+        int filled = 0;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            // The UTF-8 bytes of the char, the first one in the lowest byte.
+            int bytes;
+            int count;
+            if (c < 0x80) {
+                bytes = c;
+                count = 1;
+            } else if (c < 0x800) {
+                bytes = (0xc0 | c >> 6) | (0x80 | c & 0x3f) << 8;
+                count = 2;
+            } else if (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE) {
+                bytes = (0xe0 | c >> 12) | (0x80 | c >> 6 & 0x3f) << 8 | (0x80 | c & 0x3f) << 16;
+                count = 3;
+            } else if (Character.isHighSurrogate(c) && i + 1 < key.length()
+                    && Character.isLowSurrogate(key.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, key.charAt(++i));
+                bytes = (0xf0 | cp >> 18) | (0x80 | cp >> 12 & 0x3f) << 8
+                    | (0x80 | cp >> 6 & 0x3f) << 16 | (0x80 | cp & 0x3f) << 24;
+                count = 4;
+            } else {
+                // Malformed, encoded as '?' the same as String.getBytes.
+                bytes = '?';
+                count = 1;
+            }
+
+            for (int j = 0; j < count; j++) {
+                block |= (long) (bytes >>> (j << 3) & 0xff) << (filled << 3);
+                if (++filled == 8) {
+                    long k = block * M;
+                    k ^= k >>> R;
+                    k *= M;
+                    h ^= k;
+                    h *= M;
+                    block = 0;
+                    filled = 0;
+                }
+            }
+        }
+
+        if (filled > 0) {
+            h ^= block;
+            h *= M;
+        }
+        h ^= h >>> R;
+        h *= M;
+        h ^= h >>> R;
+        return h;
+    }
+
+    private static int utf8Length(String key) {
+        int length = 0;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE) {
+                length += 3;
+            } else if (Character.isHighSurrogate(c) && i + 1 < key.length()
+                    && Character.isLowSurrogate(key.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 1;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,75 @@
+/* Copyright (c) 2019 vesoft inc. All rights reserved.
+ *
+ * This source code is licensed under Apache 2.0 License,
+ * attached with Common Clause Condition 1.0, found in the LICENSES directory.
+ */
+
+package com.vesoft.nebula.storage.client;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outcome of a multi-key operation, part by part. The parts not in
+ * the failed parts succeeded, so a caller only needs to retry the failed
+ * keys rather than the whole batch.
+ */
+public class MultiKeyResult {
+
+    private final Map<String, String> values;
+    private final Map<Integer, Integer> failedParts;
+    private final List<String> failedKeys;
+
+    /**
+     * @param values      the values got, empty for writes
+     * @param failedParts the error code of every failed part
+     * @param failedKeys  the keys of the failed parts
+     */
+    public MultiKeyResult(Map<String, String> values, Map<Integer, Integer> failedParts,
+                          List<String> failedKeys) {
+        this.values = ImmutableMap.copyOf(values);
+        this.failedParts = ImmutableMap.copyOf(failedParts);
+        this.failedKeys = ImmutableList.copyOf(failedKeys);
+    }
+
+    /**
+     * @return true if every part succeeded.
+     */
+    public boolean isSucceeded() {
+        return failedParts.isEmpty() && failedKeys.isEmpty();
+    }
+
+    /**
+     * @return The values found of the parts succeeded.
+     */
+    public Map<String, String> getValues() {
+        return values;
+    }
+
+    /**
+     * @return The storage ErrorCode of every failed part, by part id. It is
+     *         empty while all the keys failed if the space is unknown.
+     */
+    public Map<Integer, Integer> getFailedParts() {
+        return failedParts;
+    }
+
+    /**
+     * @return The keys of the failed parts.
+     */
+    public List<String> getFailedKeys() {
+        return failedKeys;
+    }
+
+    @Override
+    public String toString() {
+        return "MultiKeyResult{"
+                + "values=" + values.size()
+                + ", failedParts=" + failedParts
+                + ", failedKeys=" + failedKeys.size()
+                + '}';
+    }
+}
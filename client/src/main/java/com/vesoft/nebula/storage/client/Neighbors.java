@@ -0,0 +1,117 @@
+/* Copyright (c) 2019 vesoft inc. All rights reserved.
+ *
+ * This source code is licensed under Apache 2.0 License,
+ * attached with Common Clause Condition 1.0, found in the LICENSES directory.
+ */
+
+package com.vesoft.nebula.storage.client;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.vesoft.nebula.Schema;
+import com.vesoft.nebula.storage.EdgeData;
+import com.vesoft.nebula.storage.QueryResponse;
+import com.vesoft.nebula.storage.TagData;
+import com.vesoft.nebula.storage.VertexData;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The neighbors of vertices merged from the responses of all the storage
+ * leaders, with the returned tag and edge schemas compiled once.
+ */
+public class Neighbors {
+
+    private final Map<Integer, RowSchema> tagSchemas = Maps.newHashMap();
+    private final Map<Integer, RowSchema> edgeSchemas = Maps.newHashMap();
+    private final List<VertexData> vertices = Lists.newArrayList();
+
+    /**
+     * Merge a response into the result.
+     *
+     * @param response the response of getBound
+     */
+    void merge(QueryResponse response) {
+        compile(response.getVertex_schema(), tagSchemas);
+        compile(response.getEdge_schema(), edgeSchemas);
+        if (response.getVertices() != null) {
+            vertices.addAll(response.getVertices());
+        }
+    }
+
+    private static void compile(Map<Integer, Schema> schemas, Map<Integer, RowSchema> compiled) {
+        if (schemas == null) {
+            return;
+        }
+
+        for (Map.Entry<Integer, Schema> entry : schemas.entrySet()) {
+            if (!compiled.containsKey(entry.getKey())) {
+                compiled.put(entry.getKey(), RowSchema.compile(entry.getValue()));
+            }
+        }
+    }
+
+    public List<VertexData> getVertices() {
+        return Collections.unmodifiableList(vertices);
+    }
+
+    /**
+     * @param tagId the tag id
+     * @return The schema of returned tag properties, null if none is returned.
+     */
+    public RowSchema getTagSchema(int tagId) {
+        return tagSchemas.get(tagId);
+    }
+
+    /**
+     * @param edgeType the edge type
+     * @return The schema of returned edge properties, null if none is returned.
+     */
+    public RowSchema getEdgeSchema(int edgeType) {
+        return edgeSchemas.get(edgeType);
+    }
+
+    /**
+     * Read the properties of a tag on the vertex.
+     *
+     * @param vertex the vertex
+     * @param tagId  the tag id
+     * @return The reader of properties, null if the tag is not returned.
+     */
+    public RowReader getTag(VertexData vertex, int tagId) {
+        RowSchema schema = tagSchemas.get(tagId);
+        if (schema == null || vertex.getTag_data() == null) {
+            return null;
+        }
+
+        for (TagData tag : vertex.getTag_data()) {
+            if (tag.getTag_id() == tagId) {
+                return new RowReader(schema, tag.getData());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Read the edges of an edge type out of the vertex, one row per edge.
+     *
+     * @param vertex   the vertex
+     * @param edgeType the edge type
+     * @return The reader of edges, null if the edge type is not returned.
+     */
+    public RowSetReader getEdges(VertexData vertex, int edgeType) {
+        RowSchema schema = edgeSchemas.get(edgeType);
+        if (schema == null || vertex.getEdge_data() == null) {
+            return null;
+        }
+
+        for (EdgeData edge : vertex.getEdge_data()) {
+            if (edge.getType() == edgeType) {
+                return new RowSetReader(schema, edge.getData());
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,82 @@
+/* Copyright (c) 2019 vesoft inc. All rights reserved.
+ *
+ * This source code is licensed under Apache 2.0 License,
+ * attached with Common Clause Condition 1.0, found in the LICENSES directory.
+ */
+
+package com.vesoft.nebula.storage.client;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Values grouped by part id in an array indexed by part, so that grouping
+ * a key neither boxes its part id nor hashes it. The parts are kept in the
+ * order they were first seen.
+ */
+public class PartGroups<V> {
+
+    private final List<V>[] groups;
+    private final int[] parts;
+    private int size = 0;
+
+    /**
+     * @param partCount the number of parts of the space, part ids start from 1
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public PartGroups(int partCount) {
+        this.groups = new List[partCount + 1];
+        this.parts = new int[partCount];
+    }
+
+    /**
+     * @param part  part id
+     * @param value the value of the part
+     */
+    public void add(int part, V value) {
+        List<V> group = groups[part];
+        if (group == null) {
+            group = Lists.newArrayList();
+            groups[part] = group;
+            parts[size++] = part;
+        }
+        group.add(value);
+    }
+
+    /**
+     * @return The number of parts having values.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param i the position of the part, in [0, size)
+     * @return The part id.
+     */
+    public int getPart(int i) {
+        return parts[i];
+    }
+
+    /**
+     * @param i the position of the part, in [0, size)
+     * @return The values of the part.
+     */
+    public List<V> getValues(int i) {
+        return groups[parts[i]];
+    }
+
+    /**
+     * @return The values of each part, as requests take them.
+     */
+    public Map<Integer, List<V>> toMap() {
+        Map<Integer, List<V>> map = Maps.newHashMapWithExpectedSize(size);
+        for (int i = 0; i < size; i++) {
+            map.put(parts[i], groups[parts[i]]);
+        }
+        return map;
+    }
+}
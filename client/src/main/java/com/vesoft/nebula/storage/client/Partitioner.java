@@ -0,0 +1,47 @@
+/* Copyright (c) 2019 vesoft inc. All rights reserved.
+ *
+ * This source code is licensed under Apache 2.0 License,
+ * attached with Common Clause Condition 1.0, found in the LICENSES directory.
+ */
+
+package com.vesoft.nebula.storage.client;
+
+import java.util.List;
+
+/**
+ * Map keys and vertex ids to parts. Part ids start from 1, and a client
+ * must partition exactly like the storage services do, otherwise every
+ * mis-routed request costs a redirect or misses the data.
+ */
+public interface Partitioner {
+
+    /**
+     * @param key       the key
+     * @param partCount the number of parts of the space
+     * @return The part id of the key.
+     */
+    int partition(String key, int partCount);
+
+    /**
+     * @param key       the key as UTF-8 bytes
+     * @param partCount the number of parts of the space
+     * @return The part id of the key.
+     */
+    int partition(byte[] key, int partCount);
+
+    /**
+     * @param vid       the vertex id
+     * @param partCount the number of parts of the space
+     * @return The part id of the vertex.
+     */
+    int partition(long vid, int partCount);
+
+    /**
+     * Partition the keys in one pass.
+     *
+     * @param keys      the keys
+     * @param partCount the number of parts of the space
+     * @param parts     the part ids of the keys in order, at least as long as keys
+     */
+    void partitionBatch(List<String> keys, int partCount, int[] parts);
+}
@@ -0,0 +1,205 @@
+/* Copyright (c) 2019 vesoft inc. All rights reserved.
+ *
+ * This source code is licensed under Apache 2.0 License,
+ * attached with Common Clause Condition 1.0, found in the LICENSES directory.
+ */
+
+package com.vesoft.nebula.storage.client;
+
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.vesoft.nebula.HostAddr;
+import com.vesoft.nebula.storage.GetRequest;
+import com.vesoft.nebula.utils.TokenBudget;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hedge the gets to cut their tail latency. A get is sent to the leader and
+ * if it has not answered within a percentile of the recent get latencies,
+ * the same get is sent once more, to a follower of the part if the storage
+ * services allow follower reads or to the leader on another connection
+ * otherwise. The first successful answer wins. Hedges draw from a budget
+ * refilled by a fraction of the gets, which caps the extra load.
+ */
+class ReadHedger implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReadHedger.class);
+
+    private static final int SAMPLES = 1024;
+    // The delay is computed again once this number of latencies is recorded.
+    private static final int REFRESH_SAMPLES = 64;
+
+    private final StorageClientImpl client;
+    private final ExecutorService executor;
+    private final double percentile;
+    private final long minDelayNanos;
+    private final boolean followerReads;
+    private final TokenBudget budget;
+
+    private final AtomicLongArray latencies = new AtomicLongArray(SAMPLES);
+    private final AtomicInteger recorded = new AtomicInteger();
+    private volatile long delayNanos;
+
+    /**
+     * @param client        the storage client sending the gets
+     * @param percentile    the percentile of the latencies to wait, in (0, 100)
+     * @param minDelayMs    the min delay in ms before a hedge
+     * @param budgetRatio   the hedges allowed per get
+     * @param followerReads whether a follower may answer a get
+     */
+    ReadHedger(StorageClientImpl client, double percentile, long minDelayMs,
+               double budgetRatio, boolean followerReads) {
+        this.client = client;
+        this.percentile = percentile;
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMs);
+        this.delayNanos = minDelayNanos;
+        this.followerReads = followerReads;
+        this.budget = new TokenBudget(budgetRatio, Math.max(1, 10 * budgetRatio));
+        this.executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+            .setNameFormat("storage-hedger-%d").setDaemon(true).build());
+    }
+
+    /**
+     * @return The values got, absent if both the get and its hedge failed.
+     */
+    Optional<Map<String, String>> get(final int space, final HostAddr leader,
+                                      final GetRequest request) {
+        budget.deposit();
+        CompletionService<Optional<Map<String, String>>> completion =
+            new ExecutorCompletionService<Optional<Map<String, String>>>(executor);
+        try {
+            completion.submit(new Callable<Optional<Map<String, String>>>() {
+                @Override
+                public Optional<Map<String, String>> call() {
+                    long start = System.nanoTime();
+                    Optional<Map<String, String>> result = client.getFromLeader(space, leader,
+                        request);
+                    record(System.nanoTime() - start);
+                    return result;
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            return client.getFromLeader(space, leader, request);
+        }
+
+        int sent = 1;
+        try {
+            Future<Optional<Map<String, String>>> first =
+                completion.poll(delayNanos, TimeUnit.NANOSECONDS);
+            if (first == null) {
+                if (budget.withdraw() && hedge(completion, space, leader, request)) {
+                    sent++;
+                }
+                first = completion.take();
+            }
+
+            Optional<Map<String, String>> result = result(first);
+            while (!result.isPresent() && --sent > 0) {
+                result = result(completion.take());
+            }
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.absent();
+        }
+    }
+
+    private boolean hedge(CompletionService<Optional<Map<String, String>>> completion,
+                          final int space, HostAddr leader, final GetRequest request) {
+        final HostAddr host = hedgeHost(space, leader, request);
+        try {
+            completion.submit(new Callable<Optional<Map<String, String>>>() {
+                @Override
+                public Optional<Map<String, String>> call() {
+                    return client.getOnce(host, request);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return A follower of the only part of the request if follower reads
+     *         are allowed, otherwise the leader.
+     */
+    private HostAddr hedgeHost(int space, HostAddr leader, GetRequest request) {
+        if (!followerReads || request.parts.size() != 1) {
+            return leader;
+        }
+
+        List<HostAddr> replicas = client.getReplicas(space,
+            request.parts.keySet().iterator().next());
+        if (replicas != null) {
+            for (HostAddr replica : replicas) {
+                if (!replica.equals(leader)) {
+                    return replica;
+                }
+            }
+        }
+        return leader;
+    }
+
+    private static Optional<Map<String, String>> result(
+            Future<Optional<Map<String, String>>> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            LOGGER.error(String.format("Hedged get failed: %s", e.getMessage()));
+            return Optional.absent();
+        }
+    }
+
+    /**
+     * Record the latency of a get to its leader, and compute the delay again
+     * once in a while.
+     */
+    private void record(long latency) {
+        int count = recorded.getAndIncrement() & Integer.MAX_VALUE;
+        latencies.set(count % SAMPLES, latency);
+        if (count % REFRESH_SAMPLES == REFRESH_SAMPLES - 1) {
+            int size = Math.min(count + 1, SAMPLES);
+            long[] sorted = new long[size];
+            for (int i = 0; i < size; i++) {
+                sorted[i] = latencies.get(i);
+            }
+            Arrays.sort(sorted);
+            int index = Math.min(size - 1, (int) (size * percentile / 100));
+            delayNanos = Math.max(minDelayNanos, sorted[index]);
+        }
+    }
+
+    /**
+     * @return The current delay in ms before a hedge.
+     */
+    long getDelayMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(delayNanos);
+    }
+
+    /**
+     * Stop hedging, the gets in flight still complete.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,324 @@
+/* Copyright (c) 2019 vesoft inc. All rights reserved.
+ *
+ * This source code is licensed under Apache 2.0 License,
+ * attached with Common Clause Condition 1.0, found in the LICENSES directory.
+ */
+
+package com.vesoft.nebula.storage.client;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.SettableFuture;
+import com.vesoft.nebula.HostAddr;
+import com.vesoft.nebula.Pair;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Coalesce the single-key puts and gets of many callers into one request
+ * per leader. A caller's operation is queued for its leader and the queue
+ * is sent as one multi-part request once it holds the batch size, or at
+ * most the linger after the first operation queued. The parts of a queue
+ * are sent and retried like a multi-key request, so each caller waits for
+ * the outcome of its own part only.
+ */
+class RequestCoalescer implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RequestCoalescer.class);
+
+    private final StorageClientImpl client;
+    private final ExecutorService executor;
+    private final int batchSize;
+    private final long lingerNanos;
+
+    private final ConcurrentMap<HostAddr, Batch> batches = Maps.newConcurrentMap();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Thread flusher;
+    private volatile boolean closed = false;
+
+    /**
+     * @param client       the storage client sending the requests
+     * @param executor     the executor sending the requests
+     * @param batchSize    the number of operations sending a leader's queue
+     * @param lingerMicros the max time in microseconds an operation is queued
+     */
+    RequestCoalescer(StorageClientImpl client, ExecutorService executor, int batchSize,
+                     long lingerMicros) {
+        this.client = client;
+        this.executor = executor;
+        this.batchSize = batchSize;
+        this.lingerNanos = TimeUnit.MICROSECONDS.toNanos(lingerMicros);
+        this.flusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flushLoop();
+            }
+        }, "storage-coalescer-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * @return true if the pair was put.
+     */
+    boolean put(HostAddr leader, int space, int part, String key, String value) {
+        Operation operation = new Operation(space, part, key, value);
+        enqueue(leader, operation);
+        Optional<String> result = await(operation);
+        return result != null && result.isPresent();
+    }
+
+    /**
+     * @return The value, absent if not found or failed.
+     */
+    Optional<String> get(HostAddr leader, int space, int part, String key) {
+        Operation operation = new Operation(space, part, key, null);
+        enqueue(leader, operation);
+        Optional<String> result = await(operation);
+        return result == null ? Optional.<String>absent() : result;
+    }
+
+    private void enqueue(HostAddr leader, Operation operation) {
+        Batch batch = batches.get(leader);
+        if (batch == null) {
+            Batch newBatch = new Batch(leader);
+            batch = batches.putIfAbsent(leader, newBatch);
+            if (batch == null) {
+                batch = newBatch;
+            }
+        }
+
+        List<Operation> full = null;
+        synchronized (batch) {
+            batch.operations.add(operation);
+            if (batch.operations.size() >= batchSize) {
+                full = batch.take();
+            }
+        }
+
+        if (full == null && closed) {
+            synchronized (batch) {
+                full = batch.take();
+            }
+        }
+
+        if (full != null) {
+            if (!full.isEmpty()) {
+                send(batch.leader, full);
+            }
+        } else if (pending.getAndIncrement() == 0) {
+            LockSupport.unpark(flusher);
+        }
+    }
+
+    /**
+     * Wait for the outcome at most the linger and the time the request may take.
+     *
+     * @return The outcome, null if the operation failed or timed out.
+     */
+    private Optional<String> await(Operation operation) {
+        long timeout = lingerNanos + TimeUnit.MILLISECONDS.toNanos(client.getCallTimeout());
+        try {
+            return operation.future.get(timeout, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            LOGGER.error(String.format("Coalesced request failed: %s", e.getMessage()));
+            return null;
+        } catch (TimeoutException e) {
+            LOGGER.error(String.format("Coalesced request of key %s timeout", operation.key));
+            return null;
+        }
+    }
+
+    /**
+     * Sleep while nothing is queued, otherwise send every queue after each linger.
+     */
+    private void flushLoop() {
+        while (!closed) {
+            if (pending.get() == 0) {
+                LockSupport.park(this);
+                continue;
+            }
+
+            LockSupport.parkNanos(this, lingerNanos);
+            pending.set(0);
+            for (Batch batch : batches.values()) {
+                List<Operation> operations;
+                synchronized (batch) {
+                    operations = batch.take();
+                }
+                if (!operations.isEmpty()) {
+                    send(batch.leader, operations);
+                }
+            }
+        }
+    }
+
+    private void send(final HostAddr leader, final List<Operation> operations) {
+        try {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    doSend(leader, operations);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            fail(operations);
+        }
+    }
+
+    private void doSend(HostAddr leader, List<Operation> operations) {
+        try {
+            Map<Integer, List<Operation>> spaces = Maps.newHashMap();
+            for (Operation operation : operations) {
+                List<Operation> spaceOperations = spaces.get(operation.space);
+                if (spaceOperations == null) {
+                    spaceOperations = Lists.newArrayList();
+                    spaces.put(operation.space, spaceOperations);
+                }
+                spaceOperations.add(operation);
+            }
+
+            for (Map.Entry<Integer, List<Operation>> entry : spaces.entrySet()) {
+                sendPuts(entry.getKey(), entry.getValue());
+                sendGets(entry.getKey(), entry.getValue());
+            }
+        } catch (RuntimeException e) {
+            LOGGER.error(String.format("Send coalesced requests to %s failed: %s", leader,
+                e.getMessage()));
+            fail(operations);
+        }
+    }
+
+    private void sendPuts(int space, List<Operation> operations) {
+        Map<Integer, List<Pair>> parts = Maps.newHashMap();
+        for (Operation operation : operations) {
+            if (operation.value != null) {
+                List<Pair> pairs = parts.get(operation.part);
+                if (pairs == null) {
+                    pairs = Lists.newArrayList();
+                    parts.put(operation.part, pairs);
+                }
+                pairs.add(new Pair(operation.key, operation.value));
+            }
+        }
+        if (parts.isEmpty()) {
+            return;
+        }
+
+        Map<Integer, Integer> failedParts = client.putParts(space, parts);
+        for (Operation operation : operations) {
+            if (operation.value != null) {
+                operation.future.set(failedParts.containsKey(operation.part)
+                    ? null : Optional.of(operation.value));
+            }
+        }
+    }
+
+    private void sendGets(int space, List<Operation> operations) {
+        Map<Integer, List<String>> parts = Maps.newHashMap();
+        for (Operation operation : operations) {
+            if (operation.value == null) {
+                List<String> keys = parts.get(operation.part);
+                if (keys == null) {
+                    keys = Lists.newArrayList();
+                    parts.put(operation.part, keys);
+                }
+                keys.add(operation.key);
+            }
+        }
+        if (parts.isEmpty()) {
+            return;
+        }
+
+        ConcurrentMap<String, String> values = Maps.newConcurrentMap();
+        Map<Integer, Integer> failedParts = client.getParts(space, parts, values);
+        for (Operation operation : operations) {
+            if (operation.value == null) {
+                operation.future.set(failedParts.containsKey(operation.part)
+                    ? null : Optional.fromNullable(values.get(operation.key)));
+            }
+        }
+    }
+
+    private void fail(List<Operation> operations) {
+        for (Operation operation : operations) {
+            operation.future.set(null);
+        }
+    }
+
+    /**
+     * Send what is queued and stop; later operations are still sent at once.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(flusher);
+        for (Batch batch : batches.values()) {
+            List<Operation> operations;
+            synchronized (batch) {
+                operations = batch.take();
+            }
+            if (!operations.isEmpty()) {
+                send(batch.leader, operations);
+            }
+        }
+    }
+
+    /**
+     * A queued put, or a get when the value is null. The outcome of a put
+     * is its value if it succeeded.
+     */
+    private static class Operation {
+        private final int space;
+        private final int part;
+        private final String key;
+        private final String value;
+        private final SettableFuture<Optional<String>> future = SettableFuture.create();
+
+        Operation(int space, int part, String key, String value) {
+            this.space = space;
+            this.part = part;
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * The operations queued for a leader, guarded by itself.
+     */
+    private static class Batch {
+        private final HostAddr leader;
+        private List<Operation> operations = Lists.newArrayList();
+
+        Batch(HostAddr leader) {
+            this.leader = leader;
+        }
+
+        List<Operation> take() {
+            if (operations.isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<Operation> taken = operations;
+            operations = Lists.newArrayList();
+            return taken;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/* Copyright (c) 2019 vesoft inc. All rights reserved.
+ *
+ * This source code is licensed under Apache 2.0 License,
+ * attached with Common Clause Condition 1.0, found in the LICENSES directory.
+ */
+
+package com.vesoft.nebula.storage.client;
+
+import com.google.common.collect.Maps;
+import com.vesoft.nebula.HostAddr;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * The routing of parts to storage hosts. Spaces are kept in an array
+ * indexed by space id, and each space keeps its number of parts and an
+ * array indexed by part id holding the index of the leader in the interned
+ * hosts. Routing a key takes no lock and allocates nothing. An update
+ * racing with the growth of a space's array may be lost, which only costs
+ * a redirect later.
+ */
+public class RoutingTable {
+
+    private static final int UNKNOWN = -1;
+
+    // Copy on write, indexed by space id.
+    private volatile Space[] spaces = new Space[0];
+    // Copy on write, an index is never reused.
+    private final Map<HostAddr, Integer> hostIndexes = Maps.newHashMap();
+    private volatile HostAddr[] hosts = new HostAddr[0];
+
+    /**
+     * @param space nebula space id
+     * @return The number of parts, 0 if the space is unknown.
+     */
+    public int getPartCount(int space) {
+        Space routes = spaceOf(space);
+        return routes == null ? 0 : routes.partCount;
+    }
+
+    public void setPartCount(int space, int partCount) {
+        if (space >= 0) {
+            createSpace(space).partCount = partCount;
+        }
+    }
+
+    /**
+     * Take the number of parts of every space from the parts allocation,
+     * the spaces missing from it are forgotten.
+     *
+     * @param partsAlloc the parts allocation of the meta client
+     */
+    public void update(Map<Integer, Map<Integer, List<HostAddr>>> partsAlloc) {
+        Space[] current = spaces;
+        for (int space = 0; space < current.length; space++) {
+            if (current[space] != null && !partsAlloc.containsKey(space)) {
+                current[space].partCount = 0;
+            }
+        }
+        for (Map.Entry<Integer, Map<Integer, List<HostAddr>>> entry : partsAlloc.entrySet()) {
+            setPartCount(entry.getKey(), entry.getValue().size());
+        }
+    }
+
+    /**
+     * @param space nebula space id
+     * @param part  part id
+     * @return The leader, null if unknown.
+     */
+    public HostAddr get(int space, int part) {
+        Space routes = spaceOf(space);
+        if (routes == null) {
+            return null;
+        }
+
+        AtomicIntegerArray parts = routes.leaders;
+        if (part < 0 || part >= parts.length()) {
+            return null;
+        }
+
+        int index = parts.get(part);
+        return index == UNKNOWN ? null : hosts[index];
+    }
+
+    public void put(int space, int part, HostAddr leader) {
+        if (space >= 0 && part >= 0) {
+            leadersOf(createSpace(space), part).set(part, intern(leader));
+        }
+    }
+
+    public void remove(int space, int part) {
+        Space routes = spaceOf(space);
+        if (routes == null) {
+            return;
+        }
+
+        AtomicIntegerArray parts = routes.leaders;
+        if (part >= 0 && part < parts.length()) {
+            parts.set(part, UNKNOWN);
+        }
+    }
+
+    /**
+     * @param space nebula space id
+     * @return The number of parts whose leader is known.
+     */
+    public int size(int space) {
+        Space routes = spaceOf(space);
+        if (routes == null) {
+            return 0;
+        }
+
+        AtomicIntegerArray parts = routes.leaders;
+        int size = 0;
+        for (int i = 0; i < parts.length(); i++) {
+            if (parts.get(i) != UNKNOWN) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return The index of host, assigned at the first time it is seen.
+     */
+    int intern(HostAddr host) {
+        synchronized (hostIndexes) {
+            Integer index = hostIndexes.get(host);
+            if (index == null) {
+                index = hosts.length;
+                HostAddr[] newHosts = Arrays.copyOf(hosts, index + 1);
+                newHosts[index] = host;
+                hosts = newHosts;
+                hostIndexes.put(host, index);
+            }
+            return index;
+        }
+    }
+
+    private Space spaceOf(int space) {
+        Space[] current = spaces;
+        return space < 0 || space >= current.length ? null : current[space];
+    }
+
+    private Space createSpace(int space) {
+        Space routes = spaceOf(space);
+        if (routes != null) {
+            return routes;
+        }
+
+        synchronized (this) {
+            Space[] current = spaces;
+            if (space < current.length && current[space] != null) {
+                return current[space];
+            }
+            Space[] newSpaces = space < current.length
+                ? current.clone() : Arrays.copyOf(current, space + 1);
+            routes = new Space();
+            newSpaces[space] = routes;
+            spaces = newSpaces;
+            return routes;
+        }
+    }
+
+    private AtomicIntegerArray leadersOf(Space routes, int part) {
+        AtomicIntegerArray parts = routes.leaders;
+        if (part < parts.length()) {
+            return parts;
+        }
+
+        synchronized (routes) {
+            parts = routes.leaders;
+            if (part >= parts.length()) {
+                // Part ids start from 1, grow to fit with some room for new parts.
+                int length = Math.max(Math.max(part, routes.partCount) + 1, parts.length() * 2);
+                AtomicIntegerArray newParts = new AtomicIntegerArray(length);
+                for (int i = 0; i < length; i++) {
+                    newParts.set(i, i < parts.length() ? parts.get(i) : UNKNOWN);
+                }
+                routes.leaders = newParts;
+                parts = newParts;
+            }
+            return parts;
+        }
+    }
+
+    private static class Space {
+        private volatile int partCount = 0;
+        private volatile AtomicIntegerArray leaders = new AtomicIntegerArray(0);
+    }
+}
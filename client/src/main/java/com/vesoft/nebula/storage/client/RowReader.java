@@ -0,0 +1,322 @@
+/* Copyright (c) 2019 vesoft inc. All rights reserved.
+ *
+ * This source code is licensed under Apache 2.0 License,
+ * attached with Common Clause Condition 1.0, found in the LICENSES directory.
+ */
+
+package com.vesoft.nebula.storage.client;
+
+import com.google.common.base.Charsets;
+import com.vesoft.nebula.SupportedType;
+
+import java.util.Arrays;
+
+/**
+ * Decode the property blobs of TagData, EdgeData and Edge against a
+ * {@link RowSchema}. Only the header is parsed when a row is set, every
+ * field is decoded when it is read. A reader can be moved over many rows
+ * of the same schema with {@link #reset(byte[])}.
+ *
+ * <p>A row starts with a header byte whose lowest three bits are the
+ * number of bytes of each block offset minus one, and whose highest three
+ * bits are the number of bytes of the schema version. The version and the
+ * block offsets follow in little endian, then the fields. Integers and
+ * timestamps are varints, strings are a varint length and the bytes.
+ */
+public class RowReader {
+
+    private final RowSchema schema;
+    private byte[] data;
+    private int base;
+    private int offsetBytes;
+    private int versionBytes;
+    private int headerLength;
+    private int version;
+
+    // The last field located by scanning, reused by reads of later fields in its block.
+    private int scannedField;
+    private int scannedOffset;
+
+    /**
+     * @param schema the schema of rows
+     */
+    public RowReader(RowSchema schema) {
+        this.schema = schema;
+    }
+
+    /**
+     * @param schema the schema of row
+     * @param data   the encoded row
+     */
+    public RowReader(RowSchema schema, byte[] data) {
+        this(schema);
+        reset(data);
+    }
+
+    /**
+     * Move the reader to another row.
+     *
+     * @param data the encoded row
+     */
+    public void reset(byte[] data) {
+        reset(data, 0, data.length);
+    }
+
+    /**
+     * Move the reader to a row stored in a slice of the array.
+     *
+     * @param data   the array holding the encoded row
+     * @param offset the start of row
+     * @param length the length of row
+     */
+    public void reset(byte[] data, int offset, int length) {
+        if (length <= 0) {
+            throw new IllegalArgumentException("The row is empty");
+        }
+
+        int header = data[offset] & 0xff;
+        this.data = data;
+        this.base = offset;
+        this.offsetBytes = (header & 0x07) + 1;
+        this.versionBytes = header >> 5;
+        this.version = (int) readFixed(offset + 1, versionBytes);
+        this.headerLength = 1 + versionBytes + offsetBytes * schema.getBlockCount();
+        if (headerLength > length) {
+            throw new IllegalArgumentException(String.format(
+                "The row of %d bytes is too short for its header", length));
+        }
+        this.scannedField = -1;
+        this.scannedOffset = -1;
+    }
+
+    public RowSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * @return The schema version the row was encoded with.
+     */
+    public int getSchemaVersion() {
+        return version;
+    }
+
+    public boolean getBoolean(int index) {
+        return data[offset(index, SupportedType.BOOL)] != 0;
+    }
+
+    public boolean getBoolean(String field) {
+        return getBoolean(index(field));
+    }
+
+    /**
+     * Get long value by field index, the field may be an int, vid or timestamp.
+     *
+     * @param index field index
+     * @return
+     */
+    public long getLong(int index) {
+        int type = schema.getFieldType(index);
+        switch (type) {
+          case SupportedType.VID:
+              return readFixed(offset(index, type), 8);
+          case SupportedType.INT:
+          case SupportedType.TIMESTAMP:
+              return readVarint(data, offset(index, type));
+          default:
+              throw mismatch(index, SupportedType.INT);
+        }
+    }
+
+    public long getLong(String field) {
+        return getLong(index(field));
+    }
+
+    public float getFloat(int index) {
+        return Float.intBitsToFloat((int) readFixed(offset(index, SupportedType.FLOAT), 4));
+    }
+
+    public float getFloat(String field) {
+        return getFloat(index(field));
+    }
+
+    /**
+     * Get double value by field index, the field may be a double or a float.
+     *
+     * @param index field index
+     * @return
+     */
+    public double getDouble(int index) {
+        if (schema.getFieldType(index) == SupportedType.FLOAT) {
+            return getFloat(index);
+        }
+        return Double.longBitsToDouble(readFixed(offset(index, SupportedType.DOUBLE), 8));
+    }
+
+    public double getDouble(String field) {
+        return getDouble(index(field));
+    }
+
+    public String getString(int index) {
+        int offset = offset(index, SupportedType.STRING);
+        int length = (int) readVarint(data, offset);
+        int start = offset + varintLength(data, offset);
+        return new String(data, start, length, Charsets.UTF_8);
+    }
+
+    public String getString(String field) {
+        return getString(index(field));
+    }
+
+    /**
+     * Get the bytes of string value by field index.
+     *
+     * @param index field index
+     * @return The copy of bytes.
+     */
+    public byte[] getBytes(int index) {
+        int offset = offset(index, SupportedType.STRING);
+        int length = (int) readVarint(data, offset);
+        int start = offset + varintLength(data, offset);
+        return Arrays.copyOfRange(data, start, start + length);
+    }
+
+    public byte[] getBytes(String field) {
+        return getBytes(index(field));
+    }
+
+    /**
+     * Decode field by field index into its boxed value.
+     *
+     * @param index field index
+     * @return
+     */
+    public Object getValue(int index) {
+        switch (schema.getFieldType(index)) {
+          case SupportedType.BOOL:
+              return getBoolean(index);
+          case SupportedType.INT:
+          case SupportedType.VID:
+          case SupportedType.TIMESTAMP:
+              return getLong(index);
+          case SupportedType.FLOAT:
+              return getFloat(index);
+          case SupportedType.DOUBLE:
+              return getDouble(index);
+          case SupportedType.STRING:
+              return getString(index);
+          default:
+              throw unsupported(index);
+        }
+    }
+
+    public Object getValue(String field) {
+        return getValue(index(field));
+    }
+
+    private int index(String field) {
+        int index = schema.getFieldIndex(field);
+        if (index < 0) {
+            throw new IllegalArgumentException(String.format("Field %s does not exist", field));
+        }
+        return index;
+    }
+
+    /**
+     * Locate the field, checking its type.
+     *
+     * @return The position of field in the array.
+     */
+    private int offset(int index, int type) {
+        if (schema.getFieldType(index) != type) {
+            throw mismatch(index, type);
+        }
+
+        int block = index / RowSchema.BLOCK_SIZE;
+        int fixed = schema.getFixedOffset(index);
+        if (fixed != RowSchema.VARIABLE) {
+            return blockStart(block) + fixed;
+        }
+
+        int field;
+        int offset;
+        if (scannedField >= 0 && scannedField <= index
+                && scannedField / RowSchema.BLOCK_SIZE == block) {
+            field = scannedField;
+            offset = scannedOffset;
+        } else {
+            field = block * RowSchema.BLOCK_SIZE;
+            offset = blockStart(block);
+        }
+
+        while (field < index) {
+            offset += length(field, offset);
+            field++;
+        }
+        scannedField = field;
+        scannedOffset = offset;
+        return offset;
+    }
+
+    private int blockStart(int block) {
+        if (block == 0) {
+            return base + headerLength;
+        }
+        int position = base + 1 + versionBytes + (block - 1) * offsetBytes;
+        return base + headerLength + (int) readFixed(position, offsetBytes);
+    }
+
+    private int length(int index, int offset) {
+        int width = schema.getWidth(index);
+        if (width != RowSchema.VARIABLE) {
+            return width;
+        }
+
+        switch (schema.getFieldType(index)) {
+          case SupportedType.INT:
+          case SupportedType.TIMESTAMP:
+              return varintLength(data, offset);
+          case SupportedType.STRING:
+              return varintLength(data, offset) + (int) readVarint(data, offset);
+          default:
+              throw unsupported(index);
+        }
+    }
+
+    private long readFixed(int offset, int length) {
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            value |= (data[offset + i] & 0xffL) << (8 * i);
+        }
+        return value;
+    }
+
+    static long readVarint(byte[] data, int offset) {
+        long value = 0;
+        int shift = 0;
+        byte current;
+        do {
+            current = data[offset++];
+            value |= (long) (current & 0x7f) << shift;
+            shift += 7;
+        } while (current < 0);
+        return value;
+    }
+
+    static int varintLength(byte[] data, int offset) {
+        int length = 1;
+        while (data[offset++] < 0) {
+            length++;
+        }
+        return length;
+    }
+
+    private IllegalStateException mismatch(int index, int type) {
+        return new IllegalStateException(String.format("Field %s is of type %d, not %d",
+            schema.getFieldName(index), schema.getFieldType(index), type));
+    }
+
+    private IllegalStateException unsupported(int index) {
+        return new IllegalStateException(String.format("Field %s of type %d is not supported",
+            schema.getFieldName(index), schema.getFieldType(index)));
+    }
+}
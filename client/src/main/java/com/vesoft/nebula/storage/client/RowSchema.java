@@ -0,0 +1,154 @@
+/* Copyright (c) 2019 vesoft inc. All rights reserved.
+ *
+ * This source code is licensed under Apache 2.0 License,
+ * attached with Common Clause Condition 1.0, found in the LICENSES directory.
+ */
+
+package com.vesoft.nebula.storage.client;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.vesoft.nebula.ColumnDef;
+import com.vesoft.nebula.Schema;
+import com.vesoft.nebula.SupportedType;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A schema compiled for decoding the rows encoded by storage services.
+ * The fields are stored in blocks of {@link #BLOCK_SIZE}, each block
+ * starting at an offset recorded in the row header. Within a block the
+ * offset of every field only preceded by fixed width fields is computed
+ * once here, so reading it never scans the row.
+ */
+public final class RowSchema {
+
+    public static final int BLOCK_SIZE = 16;
+    static final int VARIABLE = -1;
+
+    private final int version;
+    private final String[] names;
+    private final int[] types;
+    private final int[] widths;
+    private final int[] fixedOffsets;
+    private final Map<String, Integer> fieldIndex;
+
+    private RowSchema(int version, String[] names, int[] types) {
+        this.version = version;
+        this.names = names;
+        this.types = types;
+        this.widths = new int[types.length];
+        this.fixedOffsets = new int[types.length];
+
+        Map<String, Integer> index = Maps.newHashMapWithExpectedSize(names.length);
+        int offset = 0;
+        for (int i = 0; i < types.length; i++) {
+            if (i % BLOCK_SIZE == 0) {
+                offset = 0;
+            }
+            widths[i] = width(types[i]);
+            fixedOffsets[i] = offset;
+            if (offset != VARIABLE) {
+                offset = widths[i] == VARIABLE ? VARIABLE : offset + widths[i];
+            }
+            if (!index.containsKey(names[i])) {
+                index.put(names[i], i);
+            }
+        }
+        this.fieldIndex = ImmutableMap.copyOf(index);
+    }
+
+    /**
+     * Compile the schema returned by storage or meta services.
+     *
+     * @param version the schema version
+     * @param schema  the schema
+     * @return The compiled schema.
+     */
+    public static RowSchema compile(int version, Schema schema) {
+        List<ColumnDef> columns = schema.getColumns();
+        String[] names = new String[columns.size()];
+        int[] types = new int[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            ColumnDef column = columns.get(i);
+            names[i] = column.getName();
+            types[i] = column.getType().getType();
+        }
+        return new RowSchema(version, names, types);
+    }
+
+    /**
+     * Compile a schema of version 0, which rows returned by queries are encoded with.
+     *
+     * @param schema the schema
+     * @return The compiled schema.
+     */
+    public static RowSchema compile(Schema schema) {
+        return compile(0, schema);
+    }
+
+    private static int width(int type) {
+        switch (type) {
+          case SupportedType.BOOL:
+              return 1;
+          case SupportedType.FLOAT:
+              return 4;
+          case SupportedType.VID:
+          case SupportedType.DOUBLE:
+              return 8;
+          default:
+              return VARIABLE;
+        }
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public int getFieldCount() {
+        return names.length;
+    }
+
+    public String getFieldName(int index) {
+        return names[index];
+    }
+
+    /**
+     * @param index field index
+     * @return The SupportedType of the field.
+     */
+    public int getFieldType(int index) {
+        return types[index];
+    }
+
+    /**
+     * Get field index by field name.
+     *
+     * @param field field name
+     * @return The field index, -1 if the field does not exist.
+     */
+    public int getFieldIndex(String field) {
+        Integer index = fieldIndex.get(field);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @return The number of block offsets stored in the row header.
+     */
+    int getBlockCount() {
+        return names.length / BLOCK_SIZE;
+    }
+
+    int getWidth(int index) {
+        return widths[index];
+    }
+
+    /**
+     * @param index field index
+     * @return The offset of field from its block start, VARIABLE if it has to be scanned.
+     */
+    int getFixedOffset(int index) {
+        return fixedOffsets[index];
+    }
+}
@@ -0,0 +1,58 @@
+/* Copyright (c) 2019 vesoft inc. All rights reserved.
+ *
+ * This source code is licensed under Apache 2.0 License,
+ * attached with Common Clause Condition 1.0, found in the LICENSES directory.
+ */
+
+package com.vesoft.nebula.storage.client;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterate the rows of a row set, such as the edges of EdgeData, where
+ * every row is prefixed by its varint length. {@link #next()} always
+ * returns the same {@link RowReader} moved to the current row.
+ */
+public class RowSetReader implements Iterator<RowReader> {
+
+    private final byte[] data;
+    private final RowReader reader;
+    private int position = 0;
+
+    /**
+     * @param schema the schema of rows
+     * @param data   the encoded row set
+     */
+    public RowSetReader(RowSchema schema, byte[] data) {
+        this.data = data;
+        this.reader = new RowReader(schema);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return position < data.length;
+    }
+
+    @Override
+    public RowReader next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        int length = (int) RowReader.readVarint(data, position);
+        int start = position + RowReader.varintLength(data, position);
+        if (start + length > data.length) {
+            throw new IllegalStateException(String.format(
+                "The row of %d bytes at %d exceeds the row set", length, start));
+        }
+        reader.reset(data, start, length);
+        position = start + length;
+        return reader;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("The row set is read only");
+    }
+}
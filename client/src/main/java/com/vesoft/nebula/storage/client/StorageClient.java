@@ -8,6 +8,7 @@ package com.vesoft.nebula.storage.client;
 
 import com.google.common.base.Optional;
 import com.vesoft.nebula.Client;
+import com.vesoft.nebula.storage.PropDef;
 import java.util.List;
 import java.util.Map;
 
@@ -17,13 +18,25 @@ public interface StorageClient extends Client {
 
     public boolean put(int space, Map<String, String> kvs);
 
+    public MultiKeyResult putAll(int space, Map<String, String> kvs);
+
     public Optional<String> get(int space, String key);
 
     public Optional<Map<String, String>> get(int space, List<String> keys);
 
+    public MultiKeyResult getAll(int space, List<String> keys);
+
     public boolean remove(int space, String key);
 
     public boolean remove(int space, List<String> keys);
 
+    public MultiKeyResult removeAll(int space, List<String> keys);
+
+    public Optional<Neighbors> getNeighbors(int space, List<Long> vids, List<Integer> edgeTypes,
+                                            List<PropDef> returnColumns);
+
+    public Optional<Neighbors> getNeighbors(int space, List<Long> vids, List<Integer> edgeTypes,
+                                            byte[] filter, List<PropDef> returnColumns);
+
     // public boolean removeRange(int space, String start, String end);
 }
@@ -7,37 +7,49 @@
 package com.vesoft.nebula.storage.client;
 
 import com.facebook.thrift.TException;
-import com.facebook.thrift.protocol.TBinaryProtocol;
-import com.facebook.thrift.protocol.TProtocol;
-import com.facebook.thrift.transport.TSocket;
-import com.facebook.thrift.transport.TTransport;
-import com.facebook.thrift.transport.TTransportException;
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.net.HostAndPort;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.vesoft.nebula.ConnectionPoolConfig;
 import com.vesoft.nebula.HostAddr;
 import com.vesoft.nebula.Pair;
-import com.vesoft.nebula.meta.ErrorCode;
+import com.vesoft.nebula.RetryPolicy;
+import com.vesoft.nebula.meta.client.MetaChangeListener;
 import com.vesoft.nebula.meta.client.MetaClientImpl;
+import com.vesoft.nebula.meta.client.MetaDiff;
+import com.vesoft.nebula.meta.client.MetaSnapshot;
+import com.vesoft.nebula.storage.ErrorCode;
 import com.vesoft.nebula.storage.ExecResponse;
 import com.vesoft.nebula.storage.GeneralResponse;
+import com.vesoft.nebula.storage.GetLeaderReq;
+import com.vesoft.nebula.storage.GetLeaderResp;
+import com.vesoft.nebula.storage.GetNeighborsRequest;
 import com.vesoft.nebula.storage.GetRequest;
+import com.vesoft.nebula.storage.PropDef;
 import com.vesoft.nebula.storage.PutRequest;
+import com.vesoft.nebula.storage.QueryResponse;
 import com.vesoft.nebula.storage.RemoveRequest;
+import com.vesoft.nebula.storage.ResponseCommon;
 import com.vesoft.nebula.storage.ResultCode;
 import com.vesoft.nebula.storage.StorageService;
-import com.vesoft.nebula.utils.IPv4IntTransformer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import org.apache.commons.codec.digest.MurmurHash2;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,16 +60,29 @@ public class StorageClientImpl implements StorageClient {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(StorageClientImpl.class);
 
-    private TTransport transport = null;
-    private Map<HostAddr, StorageService.Client> clientMap;
+    private static final long MIN_DISCOVERY_INTERVAL_MS = 1000;
+
+    private final StorageConnectionPool pool;
 
     private final int connectionRetry;
     private final int timeout;
     private MetaClientImpl metaClient;
-    private Map<Integer, Map<Integer, HostAddr>> leaders;
-    private Map<Integer, Map<Integer, List<HostAddr>>> partsAlloc;
+    private final RoutingTable routes = new RoutingTable();
+    private final AtomicLong lastDiscovery = new AtomicLong();
+    private volatile Partitioner partitioner = new HashPartitioner();
+    private volatile RequestCoalescer coalescer;
+    private volatile ReadHedger hedger;
+    private volatile RetryPolicy retryPolicy = RetryPolicy.defaultPolicy();
 
     private ExecutorService threadPool;
+    // Runs the discoveries triggered by misses, which wait for the threadPool.
+    private final ExecutorService discoveryExecutor = Executors.newSingleThreadExecutor(
+        new ThreadFactoryBuilder().setNameFormat("storage-leader-discovery-%d")
+            .setDaemon(true).build());
+    // Sends the coalesced batches, which wait for the threadPool too.
+    private final ExecutorService coalescerExecutor = Executors.newFixedThreadPool(
+        DEFAULT_THREAD_COUNT, new ThreadFactoryBuilder().setNameFormat("storage-coalescer-%d")
+            .setDaemon(true).build());
 
     /**
      * Constructor
@@ -67,13 +92,25 @@ public class StorageClientImpl implements StorageClient {
      * @param connectionRetry The number of retries when connection failure.
      */
     public StorageClientImpl(List<HostAndPort> addresses, int timeout, int connectionRetry) {
+        this(addresses, timeout, connectionRetry, ConnectionPoolConfig.defaultConfig());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param addresses       The addresses of storage services.
+     * @param timeout         The timeout of RPC request.
+     * @param connectionRetry The number of retries when connection failure.
+     * @param poolConfig      The configuration of the per-host connection pools.
+     */
+    public StorageClientImpl(List<HostAndPort> addresses, int timeout, int connectionRetry,
+                             ConnectionPoolConfig poolConfig) {
         com.google.common.base.Preconditions.checkArgument(timeout > 0);
         com.google.common.base.Preconditions.checkArgument(connectionRetry > 0);
 
         this.timeout = timeout;
         this.connectionRetry = connectionRetry;
-        this.leaders = Maps.newConcurrentMap();
-        this.clientMap = Maps.newConcurrentMap();
+        this.pool = new StorageConnectionPool(poolConfig, timeout, connectionRetry);
         this.threadPool = Executors.newFixedThreadPool(DEFAULT_THREAD_COUNT);
     }
 
@@ -83,36 +120,31 @@ public class StorageClientImpl implements StorageClient {
      * @param metaClient The Nebula MetaClient
      */
     public StorageClientImpl(MetaClientImpl metaClient) {
-        this(Lists.<HostAndPort>newArrayList(), DEFAULT_TIMEOUT_MS, DEFAULT_CONNECTION_RETRY_SIZE);
-        this.metaClient = metaClient;
-        this.metaClient.init();
-        this.partsAlloc = this.metaClient.getParts();
+        this(metaClient, ConnectionPoolConfig.defaultConfig());
     }
 
-    private StorageService.Client connect(HostAddr addr) {
-        if (clientMap.containsKey(addr)) {
-            return clientMap.get(addr);
-        }
-
-        int retry = connectionRetry;
-        while (retry-- != 0) {
-            String ip = IPv4IntTransformer.intToIPv4(addr.getIp());
-            int port = addr.getPort();
-            transport = new TSocket(ip, port, timeout);
-            TProtocol protocol = new TBinaryProtocol(transport);
-
-            try {
-                transport.open();
-                StorageService.Client client = new StorageService.Client(protocol);
-                clientMap.put(addr, client);
-                return client;
-            } catch (TTransportException tte) {
-                LOGGER.error("Connect failed: " + tte.getMessage());
-            } catch (TException te) {
-                LOGGER.error("Connect failed: " + te.getMessage());
+    /**
+     * Constructor with a MetaClient object and the connection pool configuration
+     *
+     * @param metaClient The Nebula MetaClient
+     * @param poolConfig The configuration of the per-host connection pools.
+     */
+    public StorageClientImpl(MetaClientImpl metaClient, ConnectionPoolConfig poolConfig) {
+        this(Lists.<HostAndPort>newArrayList(), DEFAULT_TIMEOUT_MS, DEFAULT_CONNECTION_RETRY_SIZE,
+            poolConfig);
+        this.metaClient = metaClient;
+        this.metaClient.init();
+        this.metaClient.addListener(new MetaChangeListener() {
+            @Override
+            public void onChange(MetaSnapshot previous, MetaSnapshot current, MetaDiff diff) {
+                if (!diff.getPartsChanged().isEmpty()) {
+                    routes.update(current.getParts());
+                    discoverLeaders();
+                }
             }
-        }
-        return null;
+        });
+        routes.update(metaClient.getParts());
+        discoverLeaders();
     }
 
     /**
@@ -131,6 +163,11 @@ public class StorageClientImpl implements StorageClient {
             return false;
         }
 
+        RequestCoalescer current = coalescer;
+        if (current != null) {
+            return current.put(leader, space, part, key, value);
+        }
+
         PutRequest request = new PutRequest();
         request.setSpace_id(space);
         Map<Integer, List<Pair>> parts = Maps.newHashMap();
@@ -150,105 +187,94 @@ public class StorageClientImpl implements StorageClient {
      * @return
      */
     @Override
-    public boolean put(final int space, Map<String, String> kvs) {
-        Map<Integer, List<Pair>> groups = Maps.newHashMap();
-        for (Map.Entry<String, String> kv : kvs.entrySet()) {
-            int part = keyToPartId(space, kv.getKey());
-            if (!groups.containsKey(part)) {
-                groups.put(part, new ArrayList<Pair>());
-            }
-            groups.get(part).add(new Pair(kv.getKey(), kv.getValue()));
-        }
+    public boolean put(int space, Map<String, String> kvs) {
+        return putAll(space, kvs).isSucceeded();
+    }
 
-        Map<HostAddr, PutRequest> requests = Maps.newHashMap();
-        for (Map.Entry<Integer, List<Pair>> entry : groups.entrySet()) {
-            int part = entry.getKey();
-            HostAddr leader = getLeader(space, part);
-            if (!requests.containsKey(leader)) {
-                PutRequest request = new PutRequest();
-                request.setSpace_id(space);
-                Map<Integer, List<Pair>> parts = Maps.newHashMap();
-                parts.put(part, entry.getValue());
-                request.setParts(parts);
-                LOGGER.debug(String.format("Put Request: %s", request.toString()));
-                requests.put(leader, request);
-            } else {
-                PutRequest request = requests.get(leader);
-                if (!request.parts.containsKey(part)) {
-                    request.parts.put(part, entry.getValue());
-                } else {
-                    request.parts.get(part).addAll(entry.getValue());
-                }
-            }
+    /**
+     * Put multi key-value pairs, resending only the parts failed for a
+     * leader change or a broken connection to their latest leaders.
+     *
+     * @param space nebula space id
+     * @param kvs   key-value pairs
+     * @return The outcome of every part.
+     */
+    @Override
+    public MultiKeyResult putAll(int space, Map<String, String> kvs) {
+        int partCount = getPartCount(space);
+        if (partCount == 0) {
+            LOGGER.error(String.format("Invalid space %d", space));
+            return invalidSpace(kvs.keySet());
         }
 
-        final CountDownLatch countDownLatch = new CountDownLatch(groups.size());
-        final List<Boolean> responses = Collections.synchronizedList(
-                new ArrayList<Boolean>(groups.size()));
-        for (final Map.Entry<HostAddr, PutRequest> entry : requests.entrySet()) {
-            threadPool.submit(new Runnable() {
-                @Override
-                public void run() {
-                    if (doPut(space, entry.getKey(), entry.getValue())) {
-                        responses.add(true);
-                    } else {
-                        responses.add(false);
-                    }
-                    countDownLatch.countDown();
-                }
-            });
-        }
-        try {
-            countDownLatch.await();
-        } catch (InterruptedException e) {
-            LOGGER.error("Put interrupted");
-            return false;
+        PartGroups<Pair> groups = new PartGroups<Pair>(partCount);
+        for (Map.Entry<String, String> kv : kvs.entrySet()) {
+            int part = partitioner.partition(kv.getKey(), partCount);
+            groups.add(part, new Pair(kv.getKey(), kv.getValue()));
         }
 
-        for (Boolean ret : responses) {
-            if (!ret) {
-                return false;
+        Map<Integer, List<Pair>> parts = groups.toMap();
+        Map<Integer, Integer> failedParts = execute(space, parts, PUT, null);
+        List<String> failedKeys = Lists.newArrayList();
+        for (Integer part : failedParts.keySet()) {
+            for (Pair pair : parts.get(part)) {
+                failedKeys.add(pair.getKey());
             }
         }
-        return true;
+        return new MultiKeyResult(ImmutableMap.<String, String>of(), failedParts, failedKeys);
+    }
+
+    /**
+     * Put the pairs of each part like {@link #putAll}, for the coalescer.
+     *
+     * @return The error code of every part failed at last.
+     */
+    Map<Integer, Integer> putParts(int space, Map<Integer, List<Pair>> parts) {
+        return execute(space, parts, PUT, null);
     }
 
-    private boolean doPut(int space, HostAddr leader, PutRequest request) {
-        StorageService.Client client = connect(leader);
-        if (client == null) {
+    boolean doPut(int space, HostAddr leader, PutRequest request) {
+        StorageConnection connection = pool.borrow(leader);
+        if (connection == null) {
             return false;
         }
 
         ExecResponse response;
-        int retry = connectionRetry;
-        while (retry-- != 0) {
-            try {
-                response = client.put(request);
-                if (!isSuccessfully(response)) {
-                    for (ResultCode code : response.result.getFailed_codes()) {
-                        if (code.getCode() == ErrorCode.E_LEADER_CHANGED) {
-                            HostAddr addr = code.getLeader();
-                            if (addr != null && addr.getIp() != 0 && addr.getPort() != 0) {
-                                HostAddr newLeader = new HostAddr(addr.getIp(), addr.getPort());
-                                updateLeader(space, code.getPart_id(), newLeader);
-                                StorageService.Client newClient = connect(newLeader);
-                                if (newClient != null) {
-                                    client = newClient;
-                                }
-                            }
-                        }
+        RetryPolicy.Retry retry = retryPolicy.start(connectionRetry);
+        try {
+            while (true) {
+                try {
+                    connection.setTimeout(retry.attemptTimeout(timeout));
+                    response = connection.getClient().put(request);
+                    if (isSuccessfully(response)) {
+                        return true;
+                    }
+                    connection = switchLeader(space, response.result.getFailed_codes(),
+                        connection);
+                    if (!retry.canRetry(true)) {
+                        return false;
+                    }
+                } catch (TException e) {
+                    for (Integer part : request.parts.keySet()) {
+                        invalidLeader(space, part);
+                    }
+                    LOGGER.error(String.format("Put Failed: %s", e.getMessage()));
+                    // The leader the request was switched to last, not the first one.
+                    final HostAddr host = connection.getAddress();
+                    pool.invalidate(connection);
+                    connection = null;
+                    if (!retry.retry(true)) {
+                        return false;
+                    }
+                    connection = pool.borrow(host);
+                    if (connection == null) {
+                        return false;
                     }
-                } else {
-                    return true;
-                }
-            } catch (TException e) {
-                for (Integer part : request.parts.keySet()) {
-                    invalidLeader(space, part);
                 }
-                LOGGER.error(String.format("Put Failed: %s", e.getMessage()));
             }
+        } finally {
+            pool.release(connection);
         }
-        return false;
     }
 
     /**
@@ -266,6 +292,11 @@ public class StorageClientImpl implements StorageClient {
             return Optional.absent();
         }
 
+        RequestCoalescer current = coalescer;
+        if (current != null) {
+            return current.get(leader, space, part, key);
+        }
+
         GetRequest request = new GetRequest();
         request.setSpace_id(space);
         Map<Integer, List<String>> parts = Maps.newHashMap();
@@ -289,104 +320,120 @@ public class StorageClientImpl implements StorageClient {
      * @return
      */
     @Override
-    public Optional<Map<String, String>> get(final int space, List<String> keys) {
-        Map<Integer, List<String>> groups = Maps.newHashMap();
-        for (String key : keys) {
-            int part = keyToPartId(space, key);
-            if (!groups.containsKey(part)) {
-                groups.put(part, new ArrayList<String>());
-            }
-            groups.get(part).add(key);
+    public Optional<Map<String, String>> get(int space, List<String> keys) {
+        if (getPartCount(space) == 0) {
+            LOGGER.error(String.format("Invalid space %d", space));
+            return Optional.absent();
         }
+        return Optional.of(getAll(space, keys).getValues());
+    }
 
-        Map<HostAddr, GetRequest> requests = Maps.newHashMap();
-        for (Map.Entry<Integer, List<String>> entry : groups.entrySet()) {
-            int part = entry.getKey();
-            HostAddr leader = getLeader(space, part);
-            if (!requests.containsKey(leader)) {
-                GetRequest request = new GetRequest();
-                request.setSpace_id(space);
-                Map<Integer, List<String>> parts = Maps.newHashMap();
-                parts.put(part, entry.getValue());
-                request.setParts(parts);
-                LOGGER.debug(String.format("Get Request: %s", request.toString()));
-                requests.put(leader, request);
-            } else {
-                GetRequest request = requests.get(leader);
-                if (!request.parts.containsKey(part)) {
-                    request.parts.put(part, entry.getValue());
-                } else {
-                    request.parts.get(part).addAll(entry.getValue());
-                }
-            }
+    /**
+     * Get multi keys, resending only the parts failed for a leader change
+     * or a broken connection to their latest leaders.
+     *
+     * @param space nebula space id
+     * @param keys  nebula keys
+     * @return The values found and the outcome of every part.
+     */
+    @Override
+    public MultiKeyResult getAll(int space, List<String> keys) {
+        Map<Integer, List<String>> parts = groupByPart(space, keys);
+        if (parts == null) {
+            return invalidSpace(keys);
         }
 
-        final CountDownLatch countDownLatch = new CountDownLatch(groups.size());
-        final List<Optional<Map<String, String>>> responses = Collections.synchronizedList(
-                new ArrayList<Optional<Map<String, String>>>(groups.size()));
-        for (final Map.Entry<HostAddr, GetRequest> entry : requests.entrySet()) {
-            threadPool.submit(new Runnable() {
-                @Override
-                public void run() {
-                    responses.add(doGet(space, entry.getKey(), entry.getValue()));
-                    countDownLatch.countDown();
-                }
-            });
-        }
-        try {
-            countDownLatch.await();
-        } catch (InterruptedException e) {
-            LOGGER.error("Put interrupted");
-            return Optional.absent();
-        }
+        Map<String, String> values = Maps.newConcurrentMap();
+        Map<Integer, Integer> failedParts = execute(space, parts, GET, values);
+        return new MultiKeyResult(values, failedParts, failedKeys(parts, failedParts));
+    }
 
-        Map<String, String> result = Maps.newHashMap();
-        for (Optional<Map<String, String>> response : responses) {
-            if (response.isPresent()) {
-                result.putAll(response.get());
-            }
+    /**
+     * Get the keys of each part like {@link #getAll}, for the coalescer.
+     *
+     * @param values the values got, shared by the parts sent in parallel
+     * @return The error code of every part failed at last.
+     */
+    Map<Integer, Integer> getParts(int space, Map<Integer, List<String>> parts,
+                                   ConcurrentMap<String, String> values) {
+        return execute(space, parts, GET, values);
+    }
+
+    Optional<Map<String, String>> doGet(int space, HostAddr leader, GetRequest request) {
+        ReadHedger current = hedger;
+        if (current != null) {
+            return current.get(space, leader, request);
         }
-        return Optional.of(result);
+        return getFromLeader(space, leader, request);
     }
 
-    private Optional<Map<String, String>> doGet(int space, HostAddr leader,
+    Optional<Map<String, String>> getFromLeader(int space, HostAddr leader,
                                                 GetRequest request) {
-        StorageService.Client client = connect(leader);
-        if (client == null) {
+        StorageConnection connection = pool.borrow(leader);
+        if (connection == null) {
             return Optional.absent();
         }
 
         GeneralResponse response;
-        int retry = connectionRetry;
-        while (retry-- != 0) {
-            try {
-                response = client.get(request);
-                if (!isSuccessfully(response)) {
-                    for (ResultCode code : response.result.getFailed_codes()) {
-                        if (code.getCode() == ErrorCode.E_LEADER_CHANGED) {
-                            HostAddr addr = code.getLeader();
-                            if (addr != null && addr.getIp() != 0 && addr.getPort() != 0) {
-                                HostAddr newLeader = new HostAddr(addr.getIp(), addr.getPort());
-                                updateLeader(space, code.getPart_id(), newLeader);
-                                StorageService.Client newClient = connect(newLeader);
-                                if (newClient != null) {
-                                    client = newClient;
-                                }
-                            }
-                        }
+        RetryPolicy.Retry retry = retryPolicy.start(connectionRetry);
+        try {
+            while (true) {
+                try {
+                    connection.setTimeout(retry.attemptTimeout(timeout));
+                    response = connection.getClient().get(request);
+                    if (isSuccessfully(response)) {
+                        return Optional.of(response.values);
+                    }
+                    connection = switchLeader(space, response.result.getFailed_codes(),
+                        connection);
+                    if (!retry.canRetry(true)) {
+                        return Optional.absent();
+                    }
+                } catch (TException e) {
+                    for (Integer part : request.parts.keySet()) {
+                        invalidLeader(space, part);
+                    }
+                    LOGGER.error(String.format("Get Failed: %s", e.getMessage()));
+                    final HostAddr host = connection.getAddress();
+                    pool.invalidate(connection);
+                    connection = null;
+                    if (!retry.retry(true)) {
+                        return Optional.absent();
+                    }
+                    connection = pool.borrow(host);
+                    if (connection == null) {
+                        return Optional.absent();
                     }
-                } else {
-                    return Optional.of(response.values);
-                }
-            } catch (TException e) {
-                for (Integer part : request.parts.keySet()) {
-                    invalidLeader(space, part);
                 }
-                LOGGER.error(String.format("Get Failed: %s", e.getMessage()));
+            }
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    /**
+     * Send a get to a host once, without following a leader change.
+     *
+     * @return The values got, absent if the host did not answer every part.
+     */
+    Optional<Map<String, String>> getOnce(HostAddr host, GetRequest request) {
+        StorageConnection connection = pool.borrow(host);
+        if (connection == null) {
+            return Optional.absent();
+        }
+
+        try {
+            GeneralResponse response = connection.getClient().get(request);
+            pool.release(connection);
+            if (!isSuccessfully(response)) {
                 return Optional.absent();
             }
+            return Optional.of(response.values);
+        } catch (TException e) {
+            LOGGER.error(String.format("Get from %s Failed: %s", host, e.getMessage()));
+            pool.invalidate(connection);
+            return Optional.absent();
         }
-        return Optional.absent();
     }
 
     /**
@@ -422,69 +469,250 @@ public class StorageClientImpl implements StorageClient {
      * @return
      */
     @Override
-    public boolean remove(final int space, List<String> keys) {
-        Map<Integer, List<String>> groups = Maps.newHashMap();
+    public boolean remove(int space, List<String> keys) {
+        return removeAll(space, keys).isSucceeded();
+    }
+
+    /**
+     * Remove multi keys, resending only the parts failed for a leader
+     * change or a broken connection to their latest leaders.
+     *
+     * @param space nebula space id
+     * @param keys  nebula keys
+     * @return The outcome of every part.
+     */
+    @Override
+    public MultiKeyResult removeAll(int space, List<String> keys) {
+        Map<Integer, List<String>> parts = groupByPart(space, keys);
+        if (parts == null) {
+            return invalidSpace(keys);
+        }
+
+        Map<Integer, Integer> failedParts = execute(space, parts, REMOVE, null);
+        return new MultiKeyResult(ImmutableMap.<String, String>of(), failedParts,
+            failedKeys(parts, failedParts));
+    }
+
+    /**
+     * @return The keys of each part, or null if the space is unknown.
+     */
+    private Map<Integer, List<String>> groupByPart(int space, List<String> keys) {
+        int partCount = getPartCount(space);
+        if (partCount == 0) {
+            LOGGER.error(String.format("Invalid space %d", space));
+            return null;
+        }
+
+        int[] parts = new int[keys.size()];
+        partitioner.partitionBatch(keys, partCount, parts);
+        PartGroups<String> groups = new PartGroups<String>(partCount);
+        int position = 0;
         for (String key : keys) {
-            int part = keyToPartId(space, key);
-            if (!groups.containsKey(part)) {
-                groups.put(part, new ArrayList<String>());
-            }
-            groups.get(part).add(key);
+            groups.add(parts[position++], key);
         }
+        return groups.toMap();
+    }
 
-        Map<HostAddr, RemoveRequest> requests = Maps.newHashMap();
-        for (Map.Entry<Integer, List<String>> entry : groups.entrySet()) {
-            int part = entry.getKey();
-            HostAddr leader = getLeader(space, part);
-            if (!requests.containsKey(leader)) {
-                RemoveRequest request = new RemoveRequest();
-                request.setSpace_id(space);
-                Map<Integer, List<String>> parts = Maps.newHashMap();
-                parts.put(part, entry.getValue());
-                request.setParts(parts);
-                LOGGER.debug(String.format("Put Request: %s", request.toString()));
-                requests.put(leader, request);
-            } else {
-                RemoveRequest request = requests.get(leader);
-                if (!request.parts.containsKey(part)) {
-                    request.parts.put(part, entry.getValue());
-                } else {
-                    request.parts.get(part).addAll(entry.getValue());
+    private static List<String> failedKeys(Map<Integer, List<String>> parts,
+                                           Map<Integer, Integer> failedParts) {
+        List<String> failedKeys = Lists.newArrayList();
+        for (Integer part : failedParts.keySet()) {
+            failedKeys.addAll(parts.get(part));
+        }
+        return failedKeys;
+    }
+
+    private static MultiKeyResult invalidSpace(Collection<String> keys) {
+        return new MultiKeyResult(ImmutableMap.<String, String>of(),
+            ImmutableMap.<Integer, Integer>of(), Lists.newArrayList(keys));
+    }
+
+    /**
+     * Send the parts to their leaders in parallel. The parts failed for a
+     * leader change or a broken connection are resent to their latest
+     * leaders, at most connectionRetry times in all. A leader change is
+     * followed at once, a broken connection after the retry backoff.
+     *
+     * @param space  nebula space id
+     * @param parts  the values of each part
+     * @param call   the request of the parts on a leader
+     * @param values the values got, null for writes
+     * @return The error code of every part failed at last.
+     */
+    private <V> Map<Integer, Integer> execute(final int space, Map<Integer, List<V>> parts,
+                                              final PartsCall<V> call,
+                                              final Map<String, String> values) {
+        Map<Integer, Integer> failedParts = Maps.newHashMap();
+        Map<Integer, List<V>> remaining = parts;
+        final RetryPolicy.Retry retry = retryPolicy.start(connectionRetry);
+        while (!remaining.isEmpty()) {
+            Map<HostAddr, Map<Integer, List<V>>> requests = Maps.newHashMap();
+            for (Map.Entry<Integer, List<V>> entry : remaining.entrySet()) {
+                HostAddr leader = getLeader(space, entry.getKey());
+                if (leader == null) {
+                    failedParts.put(entry.getKey(), ErrorCode.E_PART_NOT_FOUND);
+                    continue;
+                }
+                Map<Integer, List<V>> leaderParts = requests.get(leader);
+                if (leaderParts == null) {
+                    leaderParts = Maps.newHashMap();
+                    requests.put(leader, leaderParts);
                 }
+                leaderParts.put(entry.getKey(), entry.getValue());
             }
-        }
 
-        final CountDownLatch countDownLatch = new CountDownLatch(groups.size());
-        final List<Boolean> responses = Collections.synchronizedList(
-                new ArrayList<Boolean>(groups.size()));
-        for (final Map.Entry<HostAddr, RemoveRequest> entry : requests.entrySet()) {
-            threadPool.submit(new Runnable() {
-                @Override
-                public void run() {
-                    if (doRemove(space, entry.getKey(), entry.getValue())) {
-                        responses.add(true);
-                    } else {
-                        responses.add(false);
+            final Map<Integer, Integer> codes = Maps.newConcurrentMap();
+            final CountDownLatch countDownLatch = new CountDownLatch(requests.size());
+            for (final Map.Entry<HostAddr, Map<Integer, List<V>>> entry : requests.entrySet()) {
+                threadPool.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            codes.putAll(send(space, entry.getKey(), entry.getValue(), call,
+                                values, retry));
+                        } finally {
+                            countDownLatch.countDown();
+                        }
+                    }
+                });
+            }
+            try {
+                countDownLatch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOGGER.error("Multi-key request interrupted");
+                for (Integer part : remaining.keySet()) {
+                    if (!failedParts.containsKey(part)) {
+                        failedParts.put(part, ErrorCode.E_RPC_FAILURE);
                     }
-                    countDownLatch.countDown();
                 }
-            });
+                return failedParts;
+            }
+
+            Map<Integer, List<V>> retryParts = Maps.newHashMap();
+            boolean broken = false;
+            for (Map.Entry<Integer, Integer> code : codes.entrySet()) {
+                if (isRetryable(code.getValue())) {
+                    retryParts.put(code.getKey(), remaining.get(code.getKey()));
+                    broken |= code.getValue() != ErrorCode.E_LEADER_CHANGED;
+                } else {
+                    failedParts.put(code.getKey(), code.getValue());
+                }
+            }
+            if (!retryParts.isEmpty()
+                && !(broken ? retry.retry(true) : retry.canRetry(true))) {
+                for (Integer part : retryParts.keySet()) {
+                    failedParts.put(part, codes.get(part));
+                }
+                break;
+            }
+            remaining = retryParts;
+        }
+        return failedParts;
+    }
+
+    /**
+     * Send the parts to a leader once.
+     *
+     * @return The error code of every failed part.
+     */
+    private <V> Map<Integer, Integer> send(int space, HostAddr leader,
+                                           Map<Integer, List<V>> parts, PartsCall<V> call,
+                                           Map<String, String> values,
+                                           RetryPolicy.Retry retry) {
+        Map<Integer, Integer> codes = Maps.newHashMap();
+        StorageConnection connection = pool.borrow(leader);
+        if (connection == null) {
+            for (Integer part : parts.keySet()) {
+                invalidLeader(space, part);
+                codes.put(part, ErrorCode.E_FAILED_TO_CONNECT);
+            }
+            return codes;
         }
+
+        ResponseCommon result;
         try {
-            countDownLatch.await();
-        } catch (InterruptedException e) {
-            LOGGER.error("Put interrupted");
-            return false;
+            connection.setTimeout(retry.attemptTimeout(timeout));
+            result = call.call(connection.getClient(), space, parts, values);
+        } catch (TException e) {
+            LOGGER.error(String.format("Request to %s failed: %s", leader, e.getMessage()));
+            pool.invalidate(connection);
+            for (Integer part : parts.keySet()) {
+                invalidLeader(space, part);
+                codes.put(part, ErrorCode.E_RPC_FAILURE);
+            }
+            return codes;
         }
+        pool.release(connection);
 
-        for (Boolean ret : responses) {
-            if (!ret) {
-                return false;
+        for (ResultCode code : result.getFailed_codes()) {
+            if (code.getCode() == ErrorCode.E_LEADER_CHANGED) {
+                HostAddr addr = code.getLeader();
+                if (addr != null && addr.getIp() != 0 && addr.getPort() != 0) {
+                    updateLeader(space, code.getPart_id(), new HostAddr(addr.getIp(),
+                        addr.getPort()));
+                } else {
+                    invalidLeader(space, code.getPart_id());
+                }
             }
+            codes.put(code.getPart_id(), code.getCode());
         }
-        return true;
+        return codes;
+    }
+
+    private static boolean isRetryable(int code) {
+        return code == ErrorCode.E_LEADER_CHANGED || code == ErrorCode.E_RPC_FAILURE
+            || code == ErrorCode.E_FAILED_TO_CONNECT;
+    }
+
+    /**
+     * A request carrying some parts to a storage service.
+     */
+    private interface PartsCall<V> {
+        ResponseCommon call(StorageService.Client client, int space, Map<Integer, List<V>> parts,
+                            Map<String, String> values) throws TException;
     }
 
+    private static final PartsCall<Pair> PUT = new PartsCall<Pair>() {
+        @Override
+        public ResponseCommon call(StorageService.Client client, int space,
+                                   Map<Integer, List<Pair>> parts, Map<String, String> values)
+            throws TException {
+            PutRequest request = new PutRequest();
+            request.setSpace_id(space);
+            request.setParts(parts);
+            return client.put(request).result;
+        }
+    };
+
+    private static final PartsCall<String> GET = new PartsCall<String>() {
+        @Override
+        public ResponseCommon call(StorageService.Client client, int space,
+                                   Map<Integer, List<String>> parts, Map<String, String> values)
+            throws TException {
+            GetRequest request = new GetRequest();
+            request.setSpace_id(space);
+            request.setParts(parts);
+            GeneralResponse response = client.get(request);
+            if (response.values != null) {
+                values.putAll(response.values);
+            }
+            return response.result;
+        }
+    };
+
+    private static final PartsCall<String> REMOVE = new PartsCall<String>() {
+        @Override
+        public ResponseCommon call(StorageService.Client client, int space,
+                                   Map<Integer, List<String>> parts, Map<String, String> values)
+            throws TException {
+            RemoveRequest request = new RemoveRequest();
+            request.setSpace_id(space);
+            request.setParts(parts);
+            return client.remove(request).result;
+        }
+    };
+
     /*
     @Override
     public boolean removeRange(int part, String start, String end) {
@@ -528,44 +756,219 @@ public class StorageClientImpl implements StorageClient {
     }
      */
     private boolean doRemove(int space, HostAddr leader, RemoveRequest request) {
-        StorageService.Client client = connect(leader);
-        if (client == null) {
+        StorageConnection connection = pool.borrow(leader);
+        if (connection == null) {
             return false;
         }
 
         ExecResponse response;
-        int retry = connectionRetry;
-        while (retry-- != 0) {
-            try {
-                response = client.remove(request);
-                if (!isSuccessfully(response)) {
-                    for (ResultCode code : response.result.getFailed_codes()) {
-                        if (code.getCode() == ErrorCode.E_LEADER_CHANGED) {
-                            HostAddr addr = code.getLeader();
-                            if (addr != null && addr.getIp() != 0 && addr.getPort() != 0) {
-                                HostAddr newLeader = new HostAddr(addr.getIp(), addr.getPort());
-                                updateLeader(space, code.getPart_id(), newLeader);
-                                StorageService.Client newClient = connect(newLeader);
-                                if (newClient != null) {
-                                    client = newClient;
-                                }
-                            }
-                        }
+        RetryPolicy.Retry retry = retryPolicy.start(connectionRetry);
+        try {
+            while (true) {
+                try {
+                    connection.setTimeout(retry.attemptTimeout(timeout));
+                    response = connection.getClient().remove(request);
+                    if (isSuccessfully(response)) {
+                        return true;
+                    }
+                    connection = switchLeader(space, response.result.getFailed_codes(),
+                        connection);
+                    if (!retry.canRetry(true)) {
+                        return false;
+                    }
+                } catch (TException e) {
+                    for (Integer part : request.parts.keySet()) {
+                        invalidLeader(space, part);
+                    }
+                    LOGGER.error(String.format("Remove Failed: %s", e.getMessage()));
+                    final HostAddr host = connection.getAddress();
+                    pool.invalidate(connection);
+                    connection = null;
+                    if (!retry.retry(true)) {
+                        return false;
+                    }
+                    connection = pool.borrow(host);
+                    if (connection == null) {
+                        return false;
                     }
-                } else {
-                    return true;
                 }
-            } catch (TException e) {
-                for (Integer part : request.parts.keySet()) {
-                    invalidLeader(space, part);
+            }
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    /**
+     * Get the neighbors of vertices from the storage leaders in parallel.
+     *
+     * @param space         nebula space id
+     * @param vids          the source vertices
+     * @param edgeTypes     the edge types to expand, negative for reversely
+     * @param returnColumns the properties to return
+     * @return
+     */
+    @Override
+    public Optional<Neighbors> getNeighbors(int space, List<Long> vids, List<Integer> edgeTypes,
+                                            List<PropDef> returnColumns) {
+        return getNeighbors(space, vids, edgeTypes, null, returnColumns);
+    }
+
+    /**
+     * Get the neighbors of vertices passing the filter from the storage leaders in parallel.
+     *
+     * @param space         nebula space id
+     * @param vids          the source vertices
+     * @param edgeTypes     the edge types to expand, negative for reversely
+     * @param filter        the encoded filter expression, null for none
+     * @param returnColumns the properties to return
+     * @return
+     */
+    @Override
+    public Optional<Neighbors> getNeighbors(final int space, List<Long> vids,
+                                            List<Integer> edgeTypes, byte[] filter,
+                                            List<PropDef> returnColumns) {
+        int partCount = getPartCount(space);
+        if (partCount == 0) {
+            LOGGER.error(String.format("Invalid space %d", space));
+            return Optional.absent();
+        }
+
+        PartGroups<Long> groups = new PartGroups<Long>(partCount);
+        for (Long vid : vids) {
+            groups.add(partitioner.partition(vid, partCount), vid);
+        }
+
+        Map<HostAddr, GetNeighborsRequest> requests = Maps.newHashMap();
+        for (int i = 0; i < groups.size(); i++) {
+            int part = groups.getPart(i);
+            HostAddr leader = getLeader(space, part);
+            if (leader == null) {
+                return Optional.absent();
+            }
+
+            if (!requests.containsKey(leader)) {
+                GetNeighborsRequest request = new GetNeighborsRequest();
+                request.setSpace_id(space);
+                request.setParts(Maps.<Integer, List<Long>>newHashMap());
+                request.setEdge_types(edgeTypes);
+                request.setFilter(filter);
+                request.setReturn_columns(returnColumns);
+                requests.put(leader, request);
+            }
+            requests.get(leader).parts.put(part, groups.getValues(i));
+        }
+
+        final CountDownLatch countDownLatch = new CountDownLatch(requests.size());
+        final List<Optional<QueryResponse>> responses = Collections.synchronizedList(
+                new ArrayList<Optional<QueryResponse>>(requests.size()));
+        for (final Map.Entry<HostAddr, GetNeighborsRequest> entry : requests.entrySet()) {
+            LOGGER.debug(String.format("Get Neighbors Request: %s", entry.getValue()));
+            threadPool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    // A failed request still counts, as absent.
+                    Optional<QueryResponse> response = Optional.absent();
+                    try {
+                        response = doGetNeighbors(space, entry.getKey(), entry.getValue());
+                    } finally {
+                        responses.add(response);
+                        countDownLatch.countDown();
+                    }
                 }
-                LOGGER.error(String.format("Remove Failed: %s", e.getMessage()));
-                return false;
+            });
+        }
+        try {
+            countDownLatch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("Get neighbors interrupted");
+            return Optional.absent();
+        }
+
+        Neighbors neighbors = new Neighbors();
+        for (Optional<QueryResponse> response : responses) {
+            if (!response.isPresent()) {
+                return Optional.absent();
             }
+            neighbors.merge(response.get());
         }
-        return false;
+        return Optional.of(neighbors);
     }
 
+    private Optional<QueryResponse> doGetNeighbors(int space, HostAddr leader,
+                                                   GetNeighborsRequest request) {
+        StorageConnection connection = pool.borrow(leader);
+        if (connection == null) {
+            return Optional.absent();
+        }
+
+        QueryResponse response;
+        RetryPolicy.Retry retry = retryPolicy.start(connectionRetry);
+        try {
+            while (true) {
+                try {
+                    connection.setTimeout(retry.attemptTimeout(timeout));
+                    response = connection.getClient().getBound(request);
+                    if (response.result.failed_codes.isEmpty()) {
+                        return Optional.of(response);
+                    }
+                    connection = switchLeader(space, response.result.getFailed_codes(),
+                        connection);
+                    if (!retry.canRetry(true)) {
+                        return Optional.absent();
+                    }
+                } catch (TException e) {
+                    for (Integer part : request.parts.keySet()) {
+                        invalidLeader(space, part);
+                    }
+                    LOGGER.error(String.format("Get Neighbors Failed: %s", e.getMessage()));
+                    final HostAddr host = connection.getAddress();
+                    pool.invalidate(connection);
+                    connection = null;
+                    if (!retry.retry(true)) {
+                        return Optional.absent();
+                    }
+                    connection = pool.borrow(host);
+                    if (connection == null) {
+                        return Optional.absent();
+                    }
+                }
+            }
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    /**
+     * Update the leaders reported by E_LEADER_CHANGED and move to a connection
+     * of the new leader if there is one.
+     *
+     * @param space       nebula space id
+     * @param failedCodes the failed codes of the response
+     * @param connection  the connection currently in use
+     * @return the connection to use for the next attempt
+     */
+    private StorageConnection switchLeader(int space, List<ResultCode> failedCodes,
+                                           StorageConnection connection) {
+        for (ResultCode code : failedCodes) {
+            if (code.getCode() == ErrorCode.E_LEADER_CHANGED) {
+                HostAddr addr = code.getLeader();
+                if (addr != null && addr.getIp() != 0 && addr.getPort() != 0) {
+                    HostAddr newLeader = new HostAddr(addr.getIp(), addr.getPort());
+                    updateLeader(space, code.getPart_id(), newLeader);
+                    if (newLeader.equals(connection.getAddress())) {
+                        continue;
+                    }
+                    StorageConnection newConnection = pool.borrow(newLeader);
+                    if (newConnection != null) {
+                        pool.release(connection);
+                        connection = newConnection;
+                    }
+                }
+            }
+        }
+        return connection;
+    }
 
     /**
      * Check the exec response is successfully
@@ -587,54 +990,279 @@ public class StorageClientImpl implements StorageClient {
         return response.result.failed_codes.size() == 0;
     }
 
-    private void updateLeader(int spaceId, int partId, HostAddr addr) {
+    void updateLeader(int spaceId, int partId, HostAddr addr) {
         LOGGER.debug("Update leader for space " + spaceId + ", " + partId + " to " + addr);
-        if (!leaders.containsKey(spaceId)) {
-            leaders.put(spaceId, Maps.<Integer, HostAddr>newConcurrentMap());
-        }
-        leaders.get(spaceId).put(partId, addr);
+        routes.put(spaceId, partId, addr);
     }
 
-    private void invalidLeader(int spaceId, int partId) {
+    void invalidLeader(int spaceId, int partId) {
         LOGGER.debug("Invalid leader for space " + spaceId + ", " + partId);
-        if (!leaders.containsKey(spaceId)) {
-            leaders.put(spaceId, Maps.<Integer, HostAddr>newConcurrentMap());
+        routes.remove(spaceId, partId);
+    }
+
+    HostAddr getLeader(int space, int part) {
+        HostAddr leader = routes.get(space, part);
+        if (leader != null) {
+            return leader;
+        }
+
+        scheduleDiscovery();
+        List<HostAddr> addrs = getReplicas(space, part);
+        if (addrs == null || addrs.isEmpty()) {
+            return null;
+        }
+        // Until the discovery answers, a follower will redirect to the leader if there is one.
+        leader = addrs.get(0);
+        routes.put(space, part, leader);
+        return leader;
+    }
+
+    /**
+     * Discover the leaders in the background, at most once per second, so a
+     * request missing a leader does not wait for every storage host.
+     */
+    private void scheduleDiscovery() {
+        long last = lastDiscovery.get();
+        long now = System.currentTimeMillis();
+        if (metaClient == null || now - last < MIN_DISCOVERY_INTERVAL_MS
+                || !lastDiscovery.compareAndSet(last, now)) {
+            return;
+        }
+
+        try {
+            discoveryExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    discoverLeaders();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LOGGER.error("The client has been closed");
         }
-        leaders.get(spaceId).remove(partId);
     }
 
-    private HostAddr getLeader(int space, int part) {
-        if (!leaders.containsKey(space)) {
-            leaders.put(space, Maps.<Integer, HostAddr>newConcurrentMap());
+    /**
+     * @return The replicas of a part, null if unknown.
+     */
+    List<HostAddr> getReplicas(int space, int part) {
+        return metaClient == null ? null : metaClient.getPart(space, part);
+    }
+
+    /**
+     * Discover the leaders of all the parts by asking every storage host in
+     * the parts allocation which parts it leads. Call it after the leaders
+     * are balanced, misses trigger it in the background at most once per
+     * second otherwise.
+     *
+     * @return The number of hosts answered.
+     */
+    public int discoverLeaders() {
+        lastDiscovery.set(System.currentTimeMillis());
+        Map<Integer, Map<Integer, List<HostAddr>>> partsAlloc = partsAlloc();
+        if (partsAlloc == null) {
+            return 0;
         }
-        if (leaders.get(space).containsKey(part)) {
-            return leaders.get(space).get(part);
-        } else {
-            List<HostAddr> addrs = metaClient.getPart(space, part);
-            if (addrs != null) {
-                Random random = new Random(System.currentTimeMillis());
-                int position = random.nextInt(addrs.size());
-                HostAddr leader = addrs.get(position);
-                leaders.get(space).put(part, leader);
-                return leader;
+
+        Set<HostAddr> hosts = Sets.newHashSet();
+        for (Map<Integer, List<HostAddr>> parts : partsAlloc.values()) {
+            for (List<HostAddr> addrs : parts.values()) {
+                hosts.addAll(addrs);
             }
-            return null;
         }
+
+        final CountDownLatch countDownLatch = new CountDownLatch(hosts.size());
+        final List<Boolean> responses = Collections.synchronizedList(
+                new ArrayList<Boolean>(hosts.size()));
+        for (final HostAddr host : hosts) {
+            threadPool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (discoverLeaders(host)) {
+                            responses.add(true);
+                        }
+                    } finally {
+                        countDownLatch.countDown();
+                    }
+                }
+            });
+        }
+        try {
+            countDownLatch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("Discover leaders interrupted");
+        }
+        return responses.size();
     }
 
-    private long hash(String key) {
-        return MurmurHash2.hash64(key);
+    private boolean discoverLeaders(HostAddr host) {
+        StorageConnection connection = pool.borrow(host);
+        if (connection == null) {
+            return false;
+        }
+
+        GetLeaderResp response;
+        try {
+            response = connection.getClient().getLeaderPart(new GetLeaderReq());
+        } catch (TException e) {
+            LOGGER.error(String.format("Get leader parts from %s failed: %s", host,
+                e.getMessage()));
+            pool.invalidate(connection);
+            return false;
+        }
+        pool.release(connection);
+
+        if (response.getLeader_parts() != null) {
+            for (Map.Entry<Integer, List<Integer>> entry : response.getLeader_parts().entrySet()) {
+                for (Integer part : entry.getValue()) {
+                    routes.put(entry.getKey(), part, host);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The latest parts allocation of the meta client, null if there is none.
+     */
+    private Map<Integer, Map<Integer, List<HostAddr>>> partsAlloc() {
+        return metaClient == null ? null : metaClient.getParts();
+    }
+
+    /**
+     * @return The number of parts of the space, 0 if the space is unknown.
+     */
+    private int getPartCount(int space) {
+        int partCount = routes.getPartCount(space);
+        if (partCount == 0) {
+            Map<Integer, Map<Integer, List<HostAddr>>> partsAlloc = partsAlloc();
+            Map<Integer, List<HostAddr>> parts = partsAlloc == null ? null : partsAlloc.get(space);
+            if (parts != null) {
+                partCount = parts.size();
+                routes.setPartCount(space, partCount);
+            }
+        }
+        return partCount;
     }
 
     private int keyToPartId(int space, String key) {
-        // TODO: need to handle this
-        if (!partsAlloc.containsKey(space)) {
+        int partCount = getPartCount(space);
+        if (partCount == 0) {
             LOGGER.error("Invalid part of " + key);
             return -1;
         }
-        // TODO: this is different to implement in c++, which converts to unsigned long at first
-        int partNum = partsAlloc.get(space).size();
-        return (int) (Math.abs(hash(key)) % partNum + 1);
+        return partitioner.partition(key, partCount);
+    }
+
+    /**
+     * @return The part of the vertex, -1 if the space is unknown.
+     */
+    int vidToPartId(int space, long vid) {
+        int partCount = getPartCount(space);
+        if (partCount == 0) {
+            LOGGER.error("Invalid part of vertex " + vid);
+            return -1;
+        }
+        return partitioner.partition(vid, partCount);
+    }
+
+    /**
+     * Coalesce the single-key puts and gets of concurrent callers into one
+     * request per leader, sent once batchSize operations are queued or at
+     * most lingerMicros after the first one. It trades a little latency for
+     * far fewer requests when many threads access single keys.
+     *
+     * @param batchSize    the number of operations sending a leader's queue
+     * @param lingerMicros the max time in microseconds an operation is queued
+     */
+    public synchronized void enableCoalescing(int batchSize, long lingerMicros) {
+        com.google.common.base.Preconditions.checkArgument(batchSize > 0);
+        com.google.common.base.Preconditions.checkArgument(lingerMicros > 0);
+        disableCoalescing();
+        coalescer = new RequestCoalescer(this, coalescerExecutor, batchSize, lingerMicros);
+    }
+
+    /**
+     * Send every single-key operation as its own request again, the default.
+     */
+    public synchronized void disableCoalescing() {
+        RequestCoalescer current = coalescer;
+        coalescer = null;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    /**
+     * Hedge the gets to a leader: a get not answered within the percentile
+     * of the recent get latencies is sent once more, and the first answer
+     * wins. It trades a little extra load for a shorter tail latency when a
+     * storage service stalls, such as for a compaction.
+     *
+     * @param percentile    the percentile of the latencies to wait, in (0, 100)
+     * @param minDelayMs    the min delay in ms before a hedge
+     * @param budgetRatio   the hedges allowed per get, such as 0.05
+     * @param followerReads whether the storage services allow a follower to
+     *                      answer, otherwise the hedge goes to the leader
+     */
+    public synchronized void enableHedging(double percentile, long minDelayMs,
+                                           double budgetRatio, boolean followerReads) {
+        com.google.common.base.Preconditions.checkArgument(percentile > 0 && percentile < 100);
+        com.google.common.base.Preconditions.checkArgument(minDelayMs > 0);
+        com.google.common.base.Preconditions.checkArgument(budgetRatio >= 0);
+        disableHedging();
+        hedger = new ReadHedger(this, percentile, minDelayMs, budgetRatio, followerReads);
+    }
+
+    /**
+     * Send every get to the leader only, the default.
+     */
+    public synchronized void disableHedging() {
+        ReadHedger current = hedger;
+        hedger = null;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    /**
+     * Replace the partitioner, which must partition the same as the storage services.
+     *
+     * @param partitioner the partitioner
+     */
+    public void setPartitioner(Partitioner partitioner) {
+        this.partitioner = partitioner;
+    }
+
+    /**
+     * Replace the retry policy of the requests.
+     *
+     * @param retryPolicy the retry policy
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Start a call under the retry policy and the configured retry count.
+     *
+     * @return The retry state of the call.
+     */
+    RetryPolicy.Retry startRetry() {
+        return retryPolicy.start(connectionRetry);
+    }
+
+    /**
+     * @return The time in ms a request may take with all its attempts, one
+     *         more attempt included for the backoffs.
+     */
+    long getCallTimeout() {
+        return (long) timeout * (Math.max(connectionRetry, retryPolicy.getMaxAttempts()) + 1);
+    }
+
+    StorageConnectionPool getPool() {
+        return pool;
     }
 
     /**
@@ -643,8 +1271,21 @@ public class StorageClientImpl implements StorageClient {
      * @throws Exception close exception
      */
     public void close() {
+        disableCoalescing();
+        disableHedging();
+        // Let the coalesced batches queued by disableCoalescing complete their callers.
+        coalescerExecutor.shutdown();
+        try {
+            if (!coalescerExecutor.awaitTermination(getCallTimeout(), TimeUnit.MILLISECONDS)) {
+                LOGGER.error("Coalesced requests still running at close");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        coalescerExecutor.shutdownNow();
+        discoveryExecutor.shutdownNow();
         threadPool.shutdownNow();
-        transport.close();
+        pool.close();
     }
 }
 
@@ -0,0 +1,87 @@
+/* Copyright (c) 2019 vesoft inc. All rights reserved.
+ *
+ * This source code is licensed under Apache 2.0 License,
+ * attached with Common Clause Condition 1.0, found in the LICENSES directory.
+ */
+
+package com.vesoft.nebula.storage.client;
+
+import com.facebook.thrift.TException;
+import com.facebook.thrift.protocol.TBinaryProtocol;
+import com.facebook.thrift.protocol.TProtocol;
+import com.facebook.thrift.transport.TSocket;
+import com.vesoft.nebula.HostAddr;
+import com.vesoft.nebula.storage.GetLeaderReq;
+import com.vesoft.nebula.storage.StorageService;
+import com.vesoft.nebula.utils.IPv4IntTransformer;
+
+/**
+ * A single blocking connection to a storage service, owned by one caller at a time.
+ */
+public class StorageConnection {
+
+    private final HostAddr address;
+    private final TSocket transport;
+    private final StorageService.Client client;
+    private volatile long lastUsedTime;
+
+    StorageConnection(HostAddr address, int timeout) throws TException {
+        this.address = address;
+        String ip = IPv4IntTransformer.intToIPv4(address.getIp());
+        this.transport = new TSocket(ip, address.getPort(), timeout);
+        TProtocol protocol = new TBinaryProtocol(transport);
+        this.transport.open();
+        this.client = new StorageService.Client(protocol);
+        this.lastUsedTime = System.currentTimeMillis();
+    }
+
+    public HostAddr getAddress() {
+        return address;
+    }
+
+    public StorageService.Client getClient() {
+        return client;
+    }
+
+    long getLastUsedTime() {
+        return lastUsedTime;
+    }
+
+    void touch() {
+        this.lastUsedTime = System.currentTimeMillis();
+    }
+
+    /**
+     * @param timeout the timeout in ms of the next requests
+     */
+    void setTimeout(int timeout) {
+        transport.setTimeout(timeout);
+    }
+
+    boolean isOpen() {
+        return transport.isOpen();
+    }
+
+    /**
+     * Send a cheap request to check whether the peer is still alive.
+     *
+     * @return true if the connection answered.
+     */
+    boolean ping() {
+        if (!isOpen()) {
+            return false;
+        }
+
+        try {
+            client.getLeaderPart(new GetLeaderReq());
+            touch();
+            return true;
+        } catch (TException e) {
+            return false;
+        }
+    }
+
+    void close() {
+        transport.close();
+    }
+}
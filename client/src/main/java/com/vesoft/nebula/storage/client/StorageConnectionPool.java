@@ -0,0 +1,293 @@
+/* Copyright (c) 2019 vesoft inc. All rights reserved.
+ *
+ * This source code is licensed under Apache 2.0 License,
+ * attached with Common Clause Condition 1.0, found in the LICENSES directory.
+ */
+
+package com.vesoft.nebula.storage.client;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.facebook.thrift.TException;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.vesoft.nebula.ConnectionPoolConfig;
+import com.vesoft.nebula.HostAddr;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Per-host pool of blocking storage connections.
+ * A connection is owned by exactly one caller between {@link #borrow} and
+ * {@link #release} (or {@link #invalidate} when the RPC failed).
+ */
+public class StorageConnectionPool implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StorageConnectionPool.class);
+
+    private final ConnectionPoolConfig config;
+    private final int timeout;
+    private final int connectionRetry;
+    private final ConcurrentMap<HostAddr, HostPool> pools;
+    private final ScheduledExecutorService maintainer;
+    private volatile boolean closed = false;
+
+    /**
+     * Constructor
+     *
+     * @param config          The pool configuration.
+     * @param timeout         The timeout of RPC request.
+     * @param connectionRetry The number of retries when connection failure.
+     */
+    public StorageConnectionPool(ConnectionPoolConfig config, int timeout, int connectionRetry) {
+        checkArgument(timeout > 0);
+        checkArgument(connectionRetry > 0);
+
+        this.config = config;
+        this.timeout = timeout;
+        this.connectionRetry = connectionRetry;
+        this.pools = Maps.newConcurrentMap();
+        this.maintainer = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("storage-pool-maintainer-%d")
+                .setDaemon(true)
+                .build());
+        long interval = config.getHealthCheckInterval();
+        this.maintainer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                maintain();
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrow a connection to the address, waiting at most the borrow timeout
+     * when all the connections of the host are in use.
+     *
+     * @param address storage service address
+     * @return the connection, or null if none could be obtained.
+     */
+    public StorageConnection borrow(HostAddr address) {
+        if (closed) {
+            LOGGER.error("Borrow from a closed storage connection pool");
+            return null;
+        }
+
+        HostPool pool = getPool(address);
+        try {
+            if (!pool.permits.tryAcquire(config.getBorrowTimeout(), TimeUnit.MILLISECONDS)) {
+                LOGGER.error(String.format("Borrow connection to %s timeout", address));
+                return null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+
+        StorageConnection connection;
+        while ((connection = pool.idle.pollFirst()) != null) {
+            if (connection.isOpen()) {
+                connection.touch();
+                return connection;
+            }
+            destroy(pool, connection);
+        }
+
+        connection = create(pool);
+        if (connection == null) {
+            pool.permits.release();
+        }
+        return connection;
+    }
+
+    /**
+     * Give a healthy connection back to its pool.
+     *
+     * @param connection the borrowed connection
+     */
+    public void release(StorageConnection connection) {
+        if (connection == null) {
+            return;
+        }
+
+        HostPool pool = getPool(connection.getAddress());
+        if (closed) {
+            destroy(pool, connection);
+        } else {
+            connection.touch();
+            connection.setTimeout(timeout);
+            pool.idle.offerFirst(connection);
+        }
+        pool.permits.release();
+    }
+
+    /**
+     * Close a broken connection instead of giving it back to its pool.
+     *
+     * @param connection the borrowed connection
+     */
+    public void invalidate(StorageConnection connection) {
+        if (connection == null) {
+            return;
+        }
+
+        HostPool pool = getPool(connection.getAddress());
+        destroy(pool, connection);
+        pool.permits.release();
+    }
+
+    /**
+     * Open the minimum number of connections to the address ahead of time.
+     *
+     * @param address storage service address
+     */
+    public void warmUp(HostAddr address) {
+        fill(getPool(address));
+    }
+
+    public int getIdleConnections(HostAddr address) {
+        HostPool pool = pools.get(address);
+        return pool == null ? 0 : pool.idle.size();
+    }
+
+    public int getTotalConnections(HostAddr address) {
+        HostPool pool = pools.get(address);
+        return pool == null ? 0 : pool.total.get();
+    }
+
+    private HostPool getPool(HostAddr address) {
+        HostPool pool = pools.get(address);
+        if (pool == null) {
+            HostPool newPool = new HostPool(address, config.getMaxConnections());
+            pool = pools.putIfAbsent(address, newPool);
+            if (pool == null) {
+                pool = newPool;
+            }
+        }
+        return pool;
+    }
+
+    private StorageConnection create(HostPool pool) {
+        int retry = connectionRetry;
+        while (retry-- != 0) {
+            try {
+                StorageConnection connection = new StorageConnection(pool.address, timeout);
+                pool.total.incrementAndGet();
+                return connection;
+            } catch (TException e) {
+                LOGGER.error(String.format("Connect %s failed: %s", pool.address,
+                        e.getMessage()));
+            }
+        }
+        return null;
+    }
+
+    private void destroy(HostPool pool, StorageConnection connection) {
+        connection.close();
+        pool.total.decrementAndGet();
+    }
+
+    private void fill(HostPool pool) {
+        while (!closed && pool.total.get() < config.getMinConnections()) {
+            // Hold a permit, so the connections opened never exceed the maximum
+            if (!pool.permits.tryAcquire()) {
+                return;
+            }
+            StorageConnection connection = create(pool);
+            if (connection != null) {
+                pool.idle.offerLast(connection);
+            }
+            pool.permits.release();
+            if (connection == null) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Evict the connections idle for too long, check the health of the rest
+     * and top every host back up to the minimum.
+     */
+    private void maintain() {
+        long now = System.currentTimeMillis();
+        for (HostPool pool : pools.values()) {
+            List<StorageConnection> candidates = Lists.newArrayList();
+            Iterator<StorageConnection> iterator = pool.idle.descendingIterator();
+            while (iterator.hasNext()) {
+                candidates.add(iterator.next());
+            }
+
+            for (StorageConnection connection : candidates) {
+                long idleTime = now - connection.getLastUsedTime();
+                if (idleTime < config.getHealthCheckInterval()) {
+                    continue;
+                }
+                // A connection being checked counts as in use, otherwise the
+                // callers finding no idle one would open more than the maximum.
+                if (!pool.permits.tryAcquire()) {
+                    break;
+                }
+                // Connections still in the idle queue are not owned by any caller.
+                if (!pool.idle.remove(connection)) {
+                    pool.permits.release();
+                    continue;
+                }
+
+                if (idleTime >= config.getIdleTimeout()
+                        && pool.total.get() > config.getMinConnections()) {
+                    LOGGER.debug(String.format("Evict idle connection to %s", pool.address));
+                    destroy(pool, connection);
+                } else if (!connection.ping()) {
+                    LOGGER.warn(String.format("Evict broken connection to %s", pool.address));
+                    destroy(pool, connection);
+                } else {
+                    pool.idle.offerLast(connection);
+                }
+                pool.permits.release();
+            }
+            fill(pool);
+        }
+    }
+
+    /**
+     * Close all the idle connections; the borrowed ones are closed on release.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        maintainer.shutdownNow();
+        for (HostPool pool : pools.values()) {
+            StorageConnection connection;
+            while ((connection = pool.idle.pollFirst()) != null) {
+                destroy(pool, connection);
+            }
+        }
+    }
+
+    private static class HostPool {
+        private final HostAddr address;
+        private final Semaphore permits;
+        private final LinkedBlockingDeque<StorageConnection> idle;
+        private final AtomicInteger total;
+
+        HostPool(HostAddr address, int maxConnections) {
+            this.address = address;
+            this.permits = new Semaphore(maxConnections, true);
+            this.idle = new LinkedBlockingDeque<StorageConnection>();
+            this.total = new AtomicInteger(0);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/* Copyright (c) 2019 vesoft inc. All rights reserved.
+ *
+ * This source code is licensed under Apache 2.0 License,
+ * attached with Common Clause Condition 1.0, found in the LICENSES directory.
+ */
+
+package com.vesoft.nebula.storage.client;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.vesoft.nebula.storage.EntryId;
+import com.vesoft.nebula.storage.PropDef;
+import com.vesoft.nebula.storage.PropOwner;
+import com.vesoft.nebula.storage.VertexData;
+import com.vesoft.nebula.utils.LongHashSet;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Expand vertices over several hops directly on the storage services.
+ * Every hop is a wave of getNeighbors calls over batches of the frontier,
+ * with a bounded number of batches in flight. The vertices reached by a
+ * hop are deduplicated before becoming the next frontier, and the ones
+ * reached by the last hop are streamed to a callback instead of being kept.
+ */
+public class TraversalExecutor implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TraversalExecutor.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+    public static final int DEFAULT_PARALLELISM = 4;
+    private static final String DST = "_dst";
+
+    /**
+     * One hop of a traversal.
+     */
+    public static class Hop {
+        private final List<Integer> edgeTypes;
+        private final byte[] filter;
+        private final List<PropDef> returnColumns;
+
+        /**
+         * @param edgeTypes the edge types to expand, negative for reversely
+         * @param filter    the encoded filter expression on edges, null for none
+         */
+        public Hop(List<Integer> edgeTypes, byte[] filter) {
+            checkArgument(!edgeTypes.isEmpty());
+            this.edgeTypes = ImmutableList.copyOf(edgeTypes);
+            this.filter = filter;
+            ImmutableList.Builder<PropDef> columns = ImmutableList.builder();
+            for (Integer edgeType : edgeTypes) {
+                PropDef column = new PropDef();
+                column.setOwner(PropOwner.EDGE);
+                column.setId(EntryId.edge_type(edgeType));
+                column.setName(DST);
+                columns.add(column);
+            }
+            this.returnColumns = columns.build();
+        }
+
+        public Hop(List<Integer> edgeTypes) {
+            this(edgeTypes, null);
+        }
+
+        public List<Integer> getEdgeTypes() {
+            return edgeTypes;
+        }
+    }
+
+    /**
+     * Receive the vertices reached by the last hop, always called from the traversing thread.
+     */
+    public interface VertexCallback {
+        void onVertex(long vid);
+    }
+
+    private final StorageClient client;
+    private final int batchSize;
+    private final int parallelism;
+    private final ExecutorService executor;
+
+    /**
+     * @param client      the storage client
+     * @param batchSize   the max number of vertices per getNeighbors call
+     * @param parallelism the max number of calls in flight
+     */
+    public TraversalExecutor(StorageClient client, int batchSize, int parallelism) {
+        checkArgument(batchSize > 0);
+        checkArgument(parallelism > 0);
+        this.client = client;
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+        this.executor = Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder()
+            .setNameFormat("traversal-executor-%d").setDaemon(true).build());
+    }
+
+    public TraversalExecutor(StorageClient client) {
+        this(client, DEFAULT_BATCH_SIZE, DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * Traverse from the start vertices.
+     *
+     * @param space    nebula space id
+     * @param starts   the start vertices
+     * @param hops     the hops
+     * @param callback the receiver of vertices reached by the last hop
+     * @return true if all the hops succeeded.
+     */
+    public boolean traverse(int space, List<Long> starts, List<Hop> hops,
+                            VertexCallback callback) {
+        checkArgument(!hops.isEmpty());
+        long[] frontier = new long[starts.size()];
+        for (int i = 0; i < frontier.length; i++) {
+            frontier[i] = starts.get(i);
+        }
+        int frontierSize = frontier.length;
+
+        for (int i = 0; i < hops.size() && frontierSize > 0; i++) {
+            boolean last = i == hops.size() - 1;
+            Wave wave = new Wave(hops.get(i), frontierSize, last ? callback : null);
+            if (!expand(space, wave, frontier, frontierSize)) {
+                LOGGER.error(String.format("Traverse failed at hop %d", i));
+                return false;
+            }
+            frontier = wave.next;
+            frontierSize = wave.nextSize;
+        }
+        return true;
+    }
+
+    private boolean expand(final int space, final Wave wave, long[] frontier, int size) {
+        CompletionService<Optional<Neighbors>> completion =
+            new ExecutorCompletionService<Optional<Neighbors>>(executor);
+        int submitted = 0;
+        int completed = 0;
+        int position = 0;
+        try {
+            while (completed < submitted || position < size) {
+                while (submitted - completed < parallelism && position < size) {
+                    int end = Math.min(position + batchSize, size);
+                    final List<Long> batch = Lists.newArrayListWithCapacity(end - position);
+                    for (; position < end; position++) {
+                        batch.add(frontier[position]);
+                    }
+                    completion.submit(new Callable<Optional<Neighbors>>() {
+                        @Override
+                        public Optional<Neighbors> call() {
+                            return client.getNeighbors(space, batch, wave.hop.edgeTypes,
+                                wave.hop.filter, wave.hop.returnColumns);
+                        }
+                    });
+                    submitted++;
+                }
+
+                Optional<Neighbors> neighbors = completion.take().get();
+                completed++;
+                if (!neighbors.isPresent()) {
+                    return false;
+                }
+                wave.collect(neighbors.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            LOGGER.error(String.format("Get neighbors failed: %s", e.getMessage()));
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * The state of one hop, only touched by the traversing thread.
+     */
+    private static class Wave {
+        private final Hop hop;
+        private final LongHashSet reached;
+        private final VertexCallback callback;
+        private long[] next;
+        private int nextSize = 0;
+
+        Wave(Hop hop, int expectedSize, VertexCallback callback) {
+            this.hop = hop;
+            this.reached = new LongHashSet(expectedSize);
+            this.callback = callback;
+            this.next = new long[callback == null ? expectedSize : 0];
+        }
+
+        void collect(Neighbors neighbors) {
+            for (VertexData vertex : neighbors.getVertices()) {
+                for (Integer edgeType : hop.edgeTypes) {
+                    RowSetReader edges = neighbors.getEdges(vertex, edgeType);
+                    if (edges == null) {
+                        continue;
+                    }
+
+                    while (edges.hasNext()) {
+                        long dst = edges.next().getLong(DST);
+                        if (reached.add(dst)) {
+                            reach(dst);
+                        }
+                    }
+                }
+            }
+        }
+
+        private void reach(long vid) {
+            if (callback != null) {
+                callback.onVertex(vid);
+                return;
+            }
+
+            if (nextSize == next.length) {
+                next = Arrays.copyOf(next, Math.max(16, next.length << 1));
+            }
+            next[nextSize++] = vid;
+        }
+    }
+}
@@ -10,14 +10,22 @@ import com.google.common.base.Optional;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.vesoft.nebula.Client;
 
+import java.util.List;
+import java.util.Map;
 
 public interface AsyncStorageClient extends Client {
 
     public ListenableFuture<Boolean> put(int space, String key, String value);
 
+    public ListenableFuture<Boolean> put(int space, Map<String, String> kvs);
+
     public ListenableFuture<Optional<String>> get(int space, String key);
 
+    public ListenableFuture<Optional<Map<String, String>>> get(int space, List<String> keys);
+
     public ListenableFuture<Boolean> remove(int space, String key);
 
+    public ListenableFuture<Boolean> remove(int space, List<String> keys);
+
     public void close();
 }
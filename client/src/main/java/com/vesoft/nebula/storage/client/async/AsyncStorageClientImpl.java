@@ -8,44 +8,81 @@ package com.vesoft.nebula.storage.client.async;
 
 import com.facebook.thrift.TException;
 import com.facebook.thrift.async.TAsyncClientManager;
+import com.facebook.thrift.async.TAsyncEventLoopGroup;
+import com.facebook.thrift.async.TAsyncPipeline;
 import com.facebook.thrift.protocol.TBinaryProtocol;
 import com.facebook.thrift.protocol.TProtocolFactory;
 import com.facebook.thrift.transport.TNonblockingSocket;
 import com.facebook.thrift.transport.TNonblockingTransport;
 import com.facebook.thrift.transport.TTransportException;
+import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.net.HostAndPort;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.FutureFallback;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.vesoft.nebula.HostAddr;
+import com.vesoft.nebula.Pair;
+import com.vesoft.nebula.meta.ErrorCode;
+import com.vesoft.nebula.meta.client.MetaChangeListener;
 import com.vesoft.nebula.meta.client.MetaClientImpl;
+import com.vesoft.nebula.meta.client.MetaDiff;
+import com.vesoft.nebula.meta.client.MetaSnapshot;
+import com.vesoft.nebula.storage.ExecResponse;
+import com.vesoft.nebula.storage.GeneralResponse;
+import com.vesoft.nebula.storage.GetRequest;
+import com.vesoft.nebula.storage.PutRequest;
+import com.vesoft.nebula.storage.RemoveRequest;
+import com.vesoft.nebula.storage.ResultCode;
 import com.vesoft.nebula.storage.StorageService;
+import com.vesoft.nebula.storage.client.HashPartitioner;
+import com.vesoft.nebula.storage.client.PartGroups;
+import com.vesoft.nebula.storage.client.Partitioner;
+import com.vesoft.nebula.storage.client.RoutingTable;
+import com.vesoft.nebula.storage.client.async.entry.GetCallback;
+import com.vesoft.nebula.storage.client.async.entry.PutCallback;
+import com.vesoft.nebula.storage.client.async.entry.RemoveCallback;
 import com.vesoft.nebula.utils.IPv4IntTransformer;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Nebula Async Storage Client
+ *
+ * <p>Every request is split by part and leader like the sync client, the per-leader
+ * calls are issued concurrently and their results are combined into one future.
+ * Each host has a few pipelined connections, each carrying many calls at once,
+ * and all the connections share the selector threads of an event loop group,
+ * by default the one shared by all the async clients.</p>
  */
 public class AsyncStorageClientImpl implements AsyncStorageClient {
-    // TODO (freddie) Implement this AsyncStorageClient
     private static final Logger LOGGER = LoggerFactory.getLogger(AsyncStorageClientImpl.class);
 
-    private Map<HostAddr, StorageService.AsyncClient> clientMap;
+    private static final int DEFAULT_CONNECTIONS_PER_HOST = 2;
+
+    private final ConcurrentMap<HostAddr, AtomicReferenceArray<AsyncConnection>> connections;
 
     private final int connectionRetry;
     private final int timeout;
     private MetaClientImpl metaClient;
-    private TNonblockingTransport transport = null;
-    private TAsyncClientManager manager;
-    private Map<Integer, Map<Integer, HostAddr>> leaders;
-    private Map<Integer, Map<Integer, List<HostAddr>>> partsAlloc;
+    private final TProtocolFactory protocolFactory;
+    private final TAsyncEventLoopGroup group;
+    private final boolean ownsGroup;
+    private final RoutingTable routes;
+    private volatile Partitioner partitioner = new HashPartitioner();
 
     /**
      * Constructor
@@ -55,13 +92,58 @@ public class AsyncStorageClientImpl implements AsyncStorageClient {
      * @param connectionRetry The number of retries when connection failure.
      */
     public AsyncStorageClientImpl(List<HostAndPort> addresses, int timeout, int connectionRetry) {
+        this(addresses, timeout, connectionRetry, TAsyncEventLoopGroup.getDefault(), false);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param addresses       The addresses of storage services.
+     * @param timeout         The timeout of RPC request.
+     * @param connectionRetry The number of retries when connection failure.
+     * @param selectorCount   The number of selector threads of the client's own.
+     */
+    public AsyncStorageClientImpl(List<HostAndPort> addresses, int timeout, int connectionRetry,
+                                  int selectorCount) {
+        this(addresses, timeout, connectionRetry, newGroup(selectorCount), true);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param addresses       The addresses of storage services.
+     * @param timeout         The timeout of RPC request.
+     * @param connectionRetry The number of retries when connection failure.
+     * @param group           The event loop group shared with other clients, which
+     *                        closing the client does not stop.
+     */
+    public AsyncStorageClientImpl(List<HostAndPort> addresses, int timeout, int connectionRetry,
+                                  TAsyncEventLoopGroup group) {
+        this(addresses, timeout, connectionRetry, group, false);
+    }
+
+    private AsyncStorageClientImpl(List<HostAndPort> addresses, int timeout,
+                                   int connectionRetry, TAsyncEventLoopGroup group,
+                                   boolean ownsGroup) {
         com.google.common.base.Preconditions.checkArgument(timeout > 0);
         com.google.common.base.Preconditions.checkArgument(connectionRetry > 0);
 
         this.timeout = timeout;
         this.connectionRetry = connectionRetry;
-        this.leaders = Maps.newConcurrentMap();
-        this.clientMap = Maps.newConcurrentMap();
+        this.routes = new RoutingTable();
+        this.connections = Maps.newConcurrentMap();
+        this.protocolFactory = new TBinaryProtocol.Factory();
+        this.group = group;
+        this.ownsGroup = ownsGroup;
+    }
+
+    private static TAsyncEventLoopGroup newGroup(int selectorCount) {
+        com.google.common.base.Preconditions.checkArgument(selectorCount > 0);
+        try {
+            return new TAsyncEventLoopGroup(selectorCount);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to start the selector threads", e);
+        }
     }
 
     /**
@@ -72,60 +154,609 @@ public class AsyncStorageClientImpl implements AsyncStorageClient {
     public AsyncStorageClientImpl(MetaClientImpl metaClient) {
         this(Lists.<HostAndPort>newArrayList(), DEFAULT_TIMEOUT_MS, DEFAULT_CONNECTION_RETRY_SIZE);
         this.metaClient = metaClient;
-        this.partsAlloc = this.metaClient.getParts();
+        this.metaClient.addListener(new MetaChangeListener() {
+            @Override
+            public void onChange(MetaSnapshot previous, MetaSnapshot current, MetaDiff diff) {
+                if (!diff.getPartsChanged().isEmpty()) {
+                    routes.update(current.getParts());
+                }
+            }
+        });
+        routes.update(metaClient.getParts());
     }
 
-    private StorageService.AsyncClient connect(HostAddr addr) {
-        if (clientMap.containsKey(addr)) {
-            return clientMap.get(addr);
+    /**
+     * Take the connection to the address carrying the fewest calls, opening
+     * the connections not opened yet or broken.
+     *
+     * @param addr storage service address
+     * @return the connection, or null if none could be opened.
+     */
+    private AsyncConnection connect(HostAddr addr) {
+        AtomicReferenceArray<AsyncConnection> slots = getConnections(addr);
+        AsyncConnection best = null;
+        for (int i = 0; i < slots.length(); i++) {
+            AsyncConnection connection = slots.get(i);
+            if (connection == null || connection.pipeline.hasError()) {
+                AsyncConnection opened = open(addr);
+                if (opened == null) {
+                    continue;
+                }
+                if (slots.compareAndSet(i, connection, opened)) {
+                    if (connection != null) {
+                        connection.pipeline.close();
+                    }
+                    connection = opened;
+                } else {
+                    opened.pipeline.close();
+                    connection = slots.get(i);
+                    if (connection == null || connection.pipeline.hasError()) {
+                        continue;
+                    }
+                }
+            }
+            if (best == null || connection.pipeline.getOutstandingCalls()
+                    < best.pipeline.getOutstandingCalls()) {
+                best = connection;
+            }
         }
+        return best;
+    }
 
+    private AsyncConnection open(HostAddr addr) {
         int retry = connectionRetry;
         while (retry-- != 0) {
             String ip = IPv4IntTransformer.intToIPv4(addr.getIp());
             int port = addr.getPort();
 
             try {
-                manager = new TAsyncClientManager();
-                transport = new TNonblockingSocket(ip, port, timeout);
-                TProtocolFactory protocol = new TBinaryProtocol.Factory();
-                StorageService.AsyncClient client = new StorageService.AsyncClient(protocol,
-                    manager, transport);
-                clientMap.put(addr, client);
-                return client;
+                TNonblockingTransport transport = new TNonblockingSocket(ip, port, timeout);
+                TAsyncClientManager manager = group.next();
+                StorageService.AsyncClient client = new StorageService.AsyncClient(
+                    protocolFactory, manager, transport);
+                client.setTimeout(timeout);
+                TAsyncPipeline pipeline = new TAsyncPipeline(manager, transport, protocolFactory);
+                return new AsyncConnection(transport, client, pipeline);
             } catch (TTransportException tte) {
                 LOGGER.error("Connect failed: " + tte.getMessage());
-            } catch (TException te) {
-                LOGGER.error("Connect failed: " + te.getMessage());
             } catch (IOException e) {
-                e.printStackTrace();
+                LOGGER.error("Connect failed: " + e.getMessage());
             }
         }
         return null;
     }
 
+    private AtomicReferenceArray<AsyncConnection> getConnections(HostAddr addr) {
+        AtomicReferenceArray<AsyncConnection> slots = connections.get(addr);
+        if (slots == null) {
+            AtomicReferenceArray<AsyncConnection> newSlots =
+                new AtomicReferenceArray<AsyncConnection>(DEFAULT_CONNECTIONS_PER_HOST);
+            slots = connections.putIfAbsent(addr, newSlots);
+            if (slots == null) {
+                slots = newSlots;
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * Put key-value pair into partition
+     *
+     * @param space nebula space id
+     * @param key   nebula key
+     * @param value nebula value
+     * @return
+     */
     @Override
     public ListenableFuture<Boolean> put(int space, String key, String value) {
-        return null;
+        Map<String, String> kvs = Maps.newHashMap();
+        kvs.put(key, value);
+        return put(space, kvs);
     }
 
+    /**
+     * Put multi key-value pairs into partition
+     *
+     * @param space nebula space id
+     * @param kvs   key-value pairs
+     * @return
+     */
     @Override
-    public ListenableFuture<Optional<String>> get(int space, String key) {
-        return null;
+    public ListenableFuture<Boolean> put(int space, Map<String, String> kvs) {
+        int partCount = getPartCount(space);
+        if (partCount == 0) {
+            LOGGER.error(String.format("Invalid space %d", space));
+            return Futures.immediateFuture(false);
+        }
+
+        PartGroups<Pair> groups = new PartGroups<Pair>(partCount);
+        for (Map.Entry<String, String> kv : kvs.entrySet()) {
+            int part = partitioner.partition(kv.getKey(), partCount);
+            groups.add(part, new Pair(kv.getKey(), kv.getValue()));
+        }
+        return putParts(space, groups.toMap(), connectionRetry);
+    }
+
+    private ListenableFuture<Boolean> putParts(int space, Map<Integer, List<Pair>> parts,
+                                               int retry) {
+        Map<HostAddr, Map<Integer, List<Pair>>> groups = groupByLeader(space, parts);
+        if (groups == null) {
+            return Futures.immediateFuture(false);
+        }
+
+        List<ListenableFuture<Boolean>> futures = Lists.newArrayListWithCapacity(groups.size());
+        for (Map.Entry<HostAddr, Map<Integer, List<Pair>>> entry : groups.entrySet()) {
+            PutRequest request = new PutRequest();
+            request.setSpace_id(space);
+            request.setParts(entry.getValue());
+            LOGGER.debug(String.format("Put Request: %s", request.toString()));
+            futures.add(doPut(space, entry.getKey(), request, retry));
+        }
+        return allSucceeded(futures);
+    }
+
+    private ListenableFuture<Boolean> doPut(final int space, HostAddr leader,
+                                            final PutRequest request, final int retry) {
+        AsyncConnection connection = connect(leader);
+        if (connection == null) {
+            return Futures.immediateFuture(false);
+        }
+
+        PutCallback callback = new PutCallback();
+        try {
+            connection.pipeline.call(new StorageService.AsyncClient.put_call(request, callback,
+                connection.client, protocolFactory, connection.transport));
+        } catch (TException e) {
+            callback.onError(e);
+        }
+
+        ListenableFuture<Boolean> future = Futures.transform(callback.getFuture(),
+            new AsyncFunction<ExecResponse, Boolean>() {
+                @Override
+                public ListenableFuture<Boolean> apply(ExecResponse response) {
+                    if (isSuccessfully(response)) {
+                        return Futures.immediateFuture(true);
+                    }
+                    Map<Integer, List<Pair>> parts = retryableParts(space,
+                        response.result.getFailed_codes(), request.parts);
+                    if (parts == null || retry <= 0) {
+                        return Futures.immediateFuture(false);
+                    }
+                    return putParts(space, parts, retry - 1);
+                }
+            });
+        return Futures.withFallback(future, new FutureFallback<Boolean>() {
+            @Override
+            public ListenableFuture<Boolean> create(Throwable t) {
+                invalidLeaders(space, request.parts.keySet());
+                LOGGER.error(String.format("Put Failed: %s", t.getMessage()));
+                return Futures.immediateFuture(false);
+            }
+        });
+    }
+
+    /**
+     * Get key from part
+     *
+     * @param space nebula space id
+     * @param key   nebula key
+     * @return
+     */
+    @Override
+    public ListenableFuture<Optional<String>> get(int space, final String key) {
+        return Futures.transform(get(space, Arrays.asList(key)),
+            new Function<Optional<Map<String, String>>, Optional<String>>() {
+                @Override
+                public Optional<String> apply(Optional<Map<String, String>> result) {
+                    if (!result.isPresent() || !result.get().containsKey(key)) {
+                        return Optional.absent();
+                    }
+                    return Optional.of(result.get().get(key));
+                }
+            });
     }
 
+    /**
+     * Get multi keys from part
+     *
+     * @param space nebula space id
+     * @param keys  nebula keys
+     * @return
+     */
+    @Override
+    public ListenableFuture<Optional<Map<String, String>>> get(int space, List<String> keys) {
+        Map<Integer, List<String>> parts = groupByPart(space, keys);
+        if (parts == null) {
+            return Futures.immediateFuture(Optional.<Map<String, String>>absent());
+        }
+        return Futures.transform(getParts(space, parts, connectionRetry),
+            new Function<Map<String, String>, Optional<Map<String, String>>>() {
+                @Override
+                public Optional<Map<String, String>> apply(Map<String, String> values) {
+                    return Optional.of(values);
+                }
+            });
+    }
+
+    private ListenableFuture<Map<String, String>> getParts(int space,
+                                                           Map<Integer, List<String>> parts,
+                                                           int retry) {
+        Map<HostAddr, Map<Integer, List<String>>> groups = groupByLeader(space, parts);
+        if (groups == null) {
+            return Futures.<Map<String, String>>immediateFuture(
+                Maps.<String, String>newHashMap());
+        }
+
+        List<ListenableFuture<Map<String, String>>> futures =
+            Lists.newArrayListWithCapacity(groups.size());
+        for (Map.Entry<HostAddr, Map<Integer, List<String>>> entry : groups.entrySet()) {
+            GetRequest request = new GetRequest();
+            request.setSpace_id(space);
+            request.setParts(entry.getValue());
+            LOGGER.debug(String.format("Get Request: %s", request.toString()));
+            futures.add(doGet(space, entry.getKey(), request, retry));
+        }
+        return Futures.transform(Futures.allAsList(futures),
+            new Function<List<Map<String, String>>, Map<String, String>>() {
+                @Override
+                public Map<String, String> apply(List<Map<String, String>> responses) {
+                    Map<String, String> result = Maps.newHashMap();
+                    for (Map<String, String> response : responses) {
+                        result.putAll(response);
+                    }
+                    return result;
+                }
+            });
+    }
+
+    private ListenableFuture<Map<String, String>> doGet(final int space, HostAddr leader,
+                                                        final GetRequest request,
+                                                        final int retry) {
+        AsyncConnection connection = connect(leader);
+        if (connection == null) {
+            return Futures.<Map<String, String>>immediateFuture(
+                Maps.<String, String>newHashMap());
+        }
+
+        GetCallback callback = new GetCallback();
+        try {
+            connection.pipeline.call(new StorageService.AsyncClient.get_call(request, callback,
+                connection.client, protocolFactory, connection.transport));
+        } catch (TException e) {
+            callback.onError(e);
+        }
+
+        ListenableFuture<Map<String, String>> future = Futures.transform(callback.getFuture(),
+            new AsyncFunction<GeneralResponse, Map<String, String>>() {
+                @Override
+                public ListenableFuture<Map<String, String>> apply(GeneralResponse response) {
+                    final Map<String, String> values = Maps.newHashMap();
+                    if (response.values != null) {
+                        values.putAll(response.values);
+                    }
+                    if (isSuccessfully(response)) {
+                        return Futures.immediateFuture(values);
+                    }
+                    Map<Integer, List<String>> parts = retryableParts(space,
+                        response.result.getFailed_codes(), request.parts);
+                    if (parts == null || retry <= 0) {
+                        return Futures.immediateFuture(values);
+                    }
+                    return Futures.transform(getParts(space, parts, retry - 1),
+                        new Function<Map<String, String>, Map<String, String>>() {
+                            @Override
+                            public Map<String, String> apply(Map<String, String> retried) {
+                                values.putAll(retried);
+                                return values;
+                            }
+                        });
+                }
+            });
+        return Futures.withFallback(future, new FutureFallback<Map<String, String>>() {
+            @Override
+            public ListenableFuture<Map<String, String>> create(Throwable t) {
+                invalidLeaders(space, request.parts.keySet());
+                LOGGER.error(String.format("Get Failed: %s", t.getMessage()));
+                return Futures.<Map<String, String>>immediateFuture(
+                    Maps.<String, String>newHashMap());
+            }
+        });
+    }
+
+    /**
+     * Remove key from part
+     *
+     * @param space nebula space id
+     * @param key   nebula key
+     * @return
+     */
     @Override
     public ListenableFuture<Boolean> remove(int space, String key) {
-        return null;
+        return remove(space, Arrays.asList(key));
+    }
+
+    /**
+     * Remove multi keys from part
+     *
+     * @param space nebula space id
+     * @param keys  nebula keys
+     * @return
+     */
+    @Override
+    public ListenableFuture<Boolean> remove(int space, List<String> keys) {
+        Map<Integer, List<String>> parts = groupByPart(space, keys);
+        if (parts == null) {
+            return Futures.immediateFuture(false);
+        }
+        return removeParts(space, parts, connectionRetry);
+    }
+
+    private ListenableFuture<Boolean> removeParts(int space, Map<Integer, List<String>> parts,
+                                                  int retry) {
+        Map<HostAddr, Map<Integer, List<String>>> groups = groupByLeader(space, parts);
+        if (groups == null) {
+            return Futures.immediateFuture(false);
+        }
+
+        List<ListenableFuture<Boolean>> futures = Lists.newArrayListWithCapacity(groups.size());
+        for (Map.Entry<HostAddr, Map<Integer, List<String>>> entry : groups.entrySet()) {
+            RemoveRequest request = new RemoveRequest();
+            request.setSpace_id(space);
+            request.setParts(entry.getValue());
+            LOGGER.debug(String.format("Remove Request: %s", request.toString()));
+            futures.add(doRemove(space, entry.getKey(), request, retry));
+        }
+        return allSucceeded(futures);
+    }
+
+    private ListenableFuture<Boolean> doRemove(final int space, HostAddr leader,
+                                               final RemoveRequest request, final int retry) {
+        AsyncConnection connection = connect(leader);
+        if (connection == null) {
+            return Futures.immediateFuture(false);
+        }
+
+        RemoveCallback callback = new RemoveCallback();
+        try {
+            connection.pipeline.call(new StorageService.AsyncClient.remove_call(request, callback,
+                connection.client, protocolFactory, connection.transport));
+        } catch (TException e) {
+            callback.onError(e);
+        }
+
+        ListenableFuture<Boolean> future = Futures.transform(callback.getFuture(),
+            new AsyncFunction<ExecResponse, Boolean>() {
+                @Override
+                public ListenableFuture<Boolean> apply(ExecResponse response) {
+                    if (isSuccessfully(response)) {
+                        return Futures.immediateFuture(true);
+                    }
+                    Map<Integer, List<String>> parts = retryableParts(space,
+                        response.result.getFailed_codes(), request.parts);
+                    if (parts == null || retry <= 0) {
+                        return Futures.immediateFuture(false);
+                    }
+                    return removeParts(space, parts, retry - 1);
+                }
+            });
+        return Futures.withFallback(future, new FutureFallback<Boolean>() {
+            @Override
+            public ListenableFuture<Boolean> create(Throwable t) {
+                invalidLeaders(space, request.parts.keySet());
+                LOGGER.error(String.format("Remove Failed: %s", t.getMessage()));
+                return Futures.immediateFuture(false);
+            }
+        });
+    }
+
+    private ListenableFuture<Boolean> allSucceeded(List<ListenableFuture<Boolean>> futures) {
+        return Futures.transform(Futures.allAsList(futures),
+            new Function<List<Boolean>, Boolean>() {
+                @Override
+                public Boolean apply(List<Boolean> responses) {
+                    for (Boolean ret : responses) {
+                        if (!ret) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }
+            });
+    }
+
+    /**
+     * @return The keys of each part, or null if the space is unknown.
+     */
+    private Map<Integer, List<String>> groupByPart(int space, List<String> keys) {
+        int partCount = getPartCount(space);
+        if (partCount == 0) {
+            LOGGER.error(String.format("Invalid space %d", space));
+            return null;
+        }
+
+        int[] parts = new int[keys.size()];
+        partitioner.partitionBatch(keys, partCount, parts);
+        PartGroups<String> groups = new PartGroups<String>(partCount);
+        int position = 0;
+        for (String key : keys) {
+            groups.add(parts[position++], key);
+        }
+        return groups.toMap();
+    }
+
+    /**
+     * Group the parts by their leaders.
+     *
+     * @param space nebula space id
+     * @param parts the values of each part
+     * @return the parts of each leader, or null if some leader is unknown.
+     */
+    private <V> Map<HostAddr, Map<Integer, List<V>>> groupByLeader(int space,
+                                                                   Map<Integer, List<V>> parts) {
+        Map<HostAddr, Map<Integer, List<V>>> groups = Maps.newHashMap();
+        for (Map.Entry<Integer, List<V>> entry : parts.entrySet()) {
+            HostAddr leader = getLeader(space, entry.getKey());
+            if (leader == null) {
+                LOGGER.error(String.format("No leader for space %d part %d", space,
+                    entry.getKey()));
+                return null;
+            }
+            if (!groups.containsKey(leader)) {
+                groups.put(leader, Maps.<Integer, List<V>>newHashMap());
+            }
+            groups.get(leader).put(entry.getKey(), entry.getValue());
+        }
+        return groups;
+    }
+
+    /**
+     * Update the leaders reported by E_LEADER_CHANGED and collect the parts to resend.
+     *
+     * @param space       nebula space id
+     * @param failedCodes the failed codes of the response
+     * @param parts       the parts of the request
+     * @return the failed parts, or null if some part failed for another reason.
+     */
+    private <V> Map<Integer, List<V>> retryableParts(int space, List<ResultCode> failedCodes,
+                                                     Map<Integer, List<V>> parts) {
+        Map<Integer, List<V>> result = Maps.newHashMap();
+        for (ResultCode code : failedCodes) {
+            if (code.getCode() != ErrorCode.E_LEADER_CHANGED) {
+                return null;
+            }
+
+            HostAddr addr = code.getLeader();
+            if (addr != null && addr.getIp() != 0 && addr.getPort() != 0) {
+                updateLeader(space, code.getPart_id(), new HostAddr(addr.getIp(),
+                    addr.getPort()));
+            } else {
+                invalidLeader(space, code.getPart_id());
+            }
+            if (parts.containsKey(code.getPart_id())) {
+                result.put(code.getPart_id(), parts.get(code.getPart_id()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Check the exec response is successfully
+     *
+     * @param response execution response
+     * @return
+     */
+    private boolean isSuccessfully(ExecResponse response) {
+        return response.result.failed_codes.size() == 0;
+    }
+
+    /**
+     * Check the general response is successfully
+     *
+     * @param response general response
+     * @return
+     */
+    private boolean isSuccessfully(GeneralResponse response) {
+        return response.result.failed_codes.size() == 0;
+    }
+
+    private void updateLeader(int spaceId, int partId, HostAddr addr) {
+        LOGGER.debug("Update leader for space " + spaceId + ", " + partId + " to " + addr);
+        routes.put(spaceId, partId, addr);
+    }
+
+    private void invalidLeader(int spaceId, int partId) {
+        LOGGER.debug("Invalid leader for space " + spaceId + ", " + partId);
+        routes.remove(spaceId, partId);
+    }
+
+    private void invalidLeaders(int spaceId, Collection<Integer> partIds) {
+        for (Integer partId : partIds) {
+            invalidLeader(spaceId, partId);
+        }
+    }
+
+    private HostAddr getLeader(int space, int part) {
+        HostAddr leader = routes.get(space, part);
+        if (leader != null) {
+            return leader;
+        }
+
+        List<HostAddr> addrs = metaClient.getPart(space, part);
+        if (addrs == null || addrs.isEmpty()) {
+            return null;
+        }
+        // The part has no leader known, a follower will redirect to it if there is one.
+        leader = addrs.get(0);
+        routes.put(space, part, leader);
+        return leader;
+    }
+
+    /**
+     * @return The latest parts allocation of the meta client, null if there is none.
+     */
+    private Map<Integer, Map<Integer, List<HostAddr>>> partsAlloc() {
+        return metaClient == null ? null : metaClient.getParts();
+    }
+
+    /**
+     * @return The number of parts of the space, 0 if the space is unknown.
+     */
+    private int getPartCount(int space) {
+        int partCount = routes.getPartCount(space);
+        if (partCount == 0) {
+            Map<Integer, Map<Integer, List<HostAddr>>> partsAlloc = partsAlloc();
+            Map<Integer, List<HostAddr>> parts = partsAlloc == null ? null : partsAlloc.get(space);
+            if (parts != null) {
+                partCount = parts.size();
+                routes.setPartCount(space, partCount);
+            }
+        }
+        return partCount;
+    }
+
+    /**
+     * Replace the partitioner, which must partition the same as the storage services.
+     *
+     * @param partitioner the partitioner
+     */
+    public void setPartitioner(Partitioner partitioner) {
+        this.partitioner = partitioner;
     }
 
     @Override
     public void close() {
-        transport.close();
-        try {
-            manager.stop();
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+        if (ownsGroup) {
+            try {
+                group.stop();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+        for (AtomicReferenceArray<AsyncConnection> slots : connections.values()) {
+            for (int i = 0; i < slots.length(); i++) {
+                AsyncConnection connection = slots.get(i);
+                if (connection != null) {
+                    connection.pipeline.close();
+                }
+            }
+        }
+        connections.clear();
+    }
+
+    /**
+     * A pipelined connection, the client only holds the protocol factory and
+     * the timeout of the calls.
+     */
+    private static class AsyncConnection {
+        private final TNonblockingTransport transport;
+        private final StorageService.AsyncClient client;
+        private final TAsyncPipeline pipeline;
+
+        AsyncConnection(TNonblockingTransport transport, StorageService.AsyncClient client,
+                        TAsyncPipeline pipeline) {
+            this.transport = transport;
+            this.client = client;
+            this.pipeline = pipeline;
         }
     }
-}
\ No newline at end of file
+}
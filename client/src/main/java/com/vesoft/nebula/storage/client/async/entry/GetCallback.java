@@ -0,0 +1,22 @@
+/* Copyright (c) 2019 vesoft inc. All rights reserved.
+ *
+ * This source code is licensed under Apache 2.0 License,
+ * attached with Common Clause Condition 1.0, found in the LICENSES directory.
+ */
+
+package com.vesoft.nebula.storage.client.async.entry;
+
+import com.facebook.thrift.TException;
+import com.facebook.thrift.async.TAsyncMethodCall;
+import com.vesoft.nebula.entry.AbstractNebulaCallback;
+import com.vesoft.nebula.storage.GeneralResponse;
+import com.vesoft.nebula.storage.StorageService;
+
+public class GetCallback extends AbstractNebulaCallback<GeneralResponse> {
+    @Override
+    public GeneralResponse doComplete(TAsyncMethodCall response) throws TException {
+        StorageService.AsyncClient.get_call call =
+            (StorageService.AsyncClient.get_call) response;
+        return call.getResult();
+    }
+}
@@ -0,0 +1,22 @@
+/* Copyright (c) 2019 vesoft inc. All rights reserved.
+ *
+ * This source code is licensed under Apache 2.0 License,
+ * attached with Common Clause Condition 1.0, found in the LICENSES directory.
+ */
+
+package com.vesoft.nebula.storage.client.async.entry;
+
+import com.facebook.thrift.TException;
+import com.facebook.thrift.async.TAsyncMethodCall;
+import com.vesoft.nebula.entry.AbstractNebulaCallback;
+import com.vesoft.nebula.storage.ExecResponse;
+import com.vesoft.nebula.storage.StorageService;
+
+public class RemoveCallback extends AbstractNebulaCallback<ExecResponse> {
+    @Override
+    public ExecResponse doComplete(TAsyncMethodCall response) throws TException {
+        StorageService.AsyncClient.remove_call call =
+            (StorageService.AsyncClient.remove_call) response;
+        return call.getResult();
+    }
+}
@@ -0,0 +1,74 @@
+/* Copyright (c) 2019 vesoft inc. All rights reserved.
+ *
+ * This source code is licensed under Apache 2.0 License,
+ * attached with Common Clause Condition 1.0, found in the LICENSES directory.
+ */
+
+package com.vesoft.nebula.utils;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A budget of extra requests, such as retries or hedges. Every request
+ * earns a fraction of a token, up to a capacity kept for bursts, and every
+ * extra request spends a whole token. It starts full and is thread-safe.
+ */
+public final class TokenBudget {
+
+    // The budget is kept in thousandths of a token.
+    private static final long TOKEN = 1000;
+
+    private final long deposit;
+    private final long capacity;
+    private final AtomicLong budget;
+
+    /**
+     * @param ratio    the tokens earned per request
+     * @param capacity the maximum tokens kept
+     */
+    public TokenBudget(double ratio, double capacity) {
+        checkArgument(ratio >= 0);
+        checkArgument(capacity >= 0);
+        this.deposit = (long) (ratio * TOKEN);
+        this.capacity = (long) (capacity * TOKEN);
+        this.budget = new AtomicLong(this.capacity);
+    }
+
+    /**
+     * Earn the fraction of a token of a request.
+     */
+    public void deposit() {
+        long current;
+        do {
+            current = budget.get();
+            if (current >= capacity) {
+                return;
+            }
+        } while (!budget.compareAndSet(current, Math.min(capacity, current + deposit)));
+    }
+
+    /**
+     * Spend a token on an extra request.
+     *
+     * @return false if less than a token is left.
+     */
+    public boolean withdraw() {
+        long current;
+        do {
+            current = budget.get();
+            if (current < TOKEN) {
+                return false;
+            }
+        } while (!budget.compareAndSet(current, current - TOKEN));
+        return true;
+    }
+
+    /**
+     * @return The whole tokens left.
+     */
+    public long getTokens() {
+        return budget.get() / TOKEN;
+    }
+}
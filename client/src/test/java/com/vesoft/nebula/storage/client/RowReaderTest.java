@@ -0,0 +1,232 @@
+/* Copyright (c) 2019 vesoft inc. All rights reserved.
+ *
+ * This source code is licensed under Apache 2.0 License,
+ * attached with Common Clause Condition 1.0, found in the LICENSES directory.
+ */
+
+package com.vesoft.nebula.storage.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Lists;
+import com.vesoft.nebula.ColumnDef;
+import com.vesoft.nebula.Schema;
+import com.vesoft.nebula.SupportedType;
+import com.vesoft.nebula.ValueType;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * The rows below are encoded by hand the way storage services encode them:
+ * a header byte, the schema version, one block offset per 16 fields after
+ * the first block, then the fields.
+ */
+public class RowReaderTest {
+
+    private static Schema schema(Object... columns) {
+        List<ColumnDef> defs = Lists.newArrayList();
+        for (int i = 0; i < columns.length; i += 2) {
+            defs.add(new ColumnDef((String) columns[i], new ValueType((Integer) columns[i + 1])));
+        }
+        return new Schema(defs, null);
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+
+    @Test
+    public void testEveryType() {
+        RowSchema schema = RowSchema.compile(schema(
+            "b", SupportedType.BOOL,
+            "i", SupportedType.INT,
+            "d", SupportedType.DOUBLE,
+            "s", SupportedType.STRING,
+            "f", SupportedType.FLOAT,
+            "v", SupportedType.VID,
+            "t", SupportedType.TIMESTAMP));
+        assertEquals(0, schema.getBlockCount());
+
+        byte[] row = bytes(
+            0x00,                                           // 1 byte offsets, version 0
+            0x01,                                           // b = true
+            0xac, 0x02,                                     // i = 300
+            0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0xf8, 0x3f, // d = 1.5
+            0x02, 'a', 'b',                                 // s = "ab"
+            0x00, 0x00, 0x20, 0x40,                         // f = 2.5
+            0x08, 0x07, 0x06, 0x05, 0x04, 0x03, 0x02, 0x01, // v
+            0x01);                                          // t = 1
+        RowReader reader = new RowReader(schema, row);
+
+        assertEquals(0, reader.getSchemaVersion());
+        assertTrue(reader.getBoolean("b"));
+        assertEquals(300L, reader.getLong("i"));
+        assertEquals(1.5, reader.getDouble("d"), 0);
+        assertEquals("ab", reader.getString("s"));
+        assertArrayEquals(bytes('a', 'b'), reader.getBytes("s"));
+        assertEquals(2.5f, reader.getFloat("f"), 0);
+        assertEquals(2.5, reader.getDouble("f"), 0);
+        assertEquals(0x0102030405060708L, reader.getLong("v"));
+        assertEquals(1L, reader.getLong("t"));
+        // Read backwards, after the scan of the block went past the fields
+        assertEquals("ab", reader.getValue(3));
+        assertEquals(300L, reader.getValue(1));
+    }
+
+    @Test
+    public void testNegativeIntAndVersion() {
+        RowSchema schema = RowSchema.compile(5, schema(
+            "i", SupportedType.INT,
+            "s", SupportedType.STRING));
+        byte[] row = bytes(
+            0x20, 0x05,                                     // 1 version byte, version 5
+            0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0x01, // i = -1
+            0x00);                                          // s = ""
+        RowReader reader = new RowReader(schema, row);
+
+        assertEquals(5, reader.getSchemaVersion());
+        assertEquals(-1L, reader.getLong("i"));
+        assertEquals("", reader.getString("s"));
+    }
+
+    @Test
+    public void testExactlyOneBlock() {
+        Object[] columns = new Object[32];
+        for (int i = 0; i < 15; i++) {
+            columns[2 * i] = "i" + i;
+            columns[2 * i + 1] = SupportedType.INT;
+        }
+        columns[30] = "s";
+        columns[31] = SupportedType.STRING;
+        RowSchema schema = RowSchema.compile(schema(columns));
+        // 16 fields still store the offset of the second, empty, block
+        assertEquals(1, schema.getBlockCount());
+
+        byte[] row = bytes(
+            0x00, 0x13,                                     // 1 byte offsets, block 1 at 19
+            0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14,
+            0x03, 'x', 'y', 'z');
+        RowReader reader = new RowReader(schema, row);
+
+        assertEquals("xyz", reader.getString("s"));
+        for (int i = 14; i >= 0; i--) {
+            assertEquals(i, reader.getLong(i));
+        }
+        assertEquals("xyz", reader.getString(15));
+    }
+
+    @Test
+    public void testVariableFieldsInLaterBlock() {
+        Object[] columns = new Object[40];
+        columns[0] = "name";
+        columns[1] = SupportedType.STRING;
+        for (int i = 1; i < 16; i++) {
+            columns[2 * i] = "b" + i;
+            columns[2 * i + 1] = SupportedType.BOOL;
+        }
+        columns[32] = "count";
+        columns[33] = SupportedType.INT;
+        columns[34] = "tag";
+        columns[35] = SupportedType.STRING;
+        columns[36] = "score";
+        columns[37] = SupportedType.DOUBLE;
+        columns[38] = "done";
+        columns[39] = SupportedType.BOOL;
+        RowSchema schema = RowSchema.compile(schema(columns));
+        assertEquals(1, schema.getBlockCount());
+
+        byte[] row = bytes(
+            0x00, 0x15,                                     // 1 byte offsets, block 1 at 21
+            0x05, 'h', 'e', 'l', 'l', 'o',
+            1, 0, 1, 0, 1, 0, 1, 0, 1, 0, 1, 0, 1, 0, 1,    // b1 .. b15
+            0xe8, 0x07,                                     // count = 1000
+            0x02, 'x', 'y',                                 // tag = "xy"
+            0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x40, // score = 2.0
+            0x01);                                          // done = true
+        RowReader reader = new RowReader(schema, row);
+
+        assertEquals(true, reader.getBoolean("done"));
+        assertEquals(2.0, reader.getDouble("score"), 0);
+        assertEquals("xy", reader.getString("tag"));
+        assertEquals(1000L, reader.getLong("count"));
+        assertEquals("hello", reader.getString("name"));
+        for (int i = 1; i < 16; i++) {
+            assertEquals(i % 2 == 1, reader.getBoolean(i));
+        }
+    }
+
+    @Test
+    public void testTwoByteBlockOffsets() {
+        Object[] columns = new Object[34];
+        columns[0] = "text";
+        columns[1] = SupportedType.STRING;
+        for (int i = 1; i < 16; i++) {
+            columns[2 * i] = "b" + i;
+            columns[2 * i + 1] = SupportedType.BOOL;
+        }
+        columns[32] = "last";
+        columns[33] = SupportedType.INT;
+
+        // The first block takes 2 + 300 + 15 = 317 bytes, block 1 starts at 0x013d
+        byte[] row = new byte[3 + 317 + 1];
+        row[0] = 0x01;
+        row[1] = 0x3d;
+        row[2] = 0x01;
+        row[3] = (byte) 0xac;
+        row[4] = 0x02;
+        Arrays.fill(row, 5, 305, (byte) 'a');
+        Arrays.fill(row, 305, 320, (byte) 1);
+        row[320] = 7;
+        RowReader reader = new RowReader(RowSchema.compile(schema(columns)), row);
+
+        assertEquals(7L, reader.getLong("last"));
+        assertEquals(300, reader.getString("text").length());
+        assertTrue(reader.getBoolean(15));
+    }
+
+    @Test
+    public void testResetOverSlices() {
+        RowSchema schema = RowSchema.compile(schema(
+            "i", SupportedType.INT,
+            "s", SupportedType.STRING));
+        byte[] rows = bytes(
+            0xee,                                           // not part of any row
+            0x00, 0x01, 0x01, 'a',                          // i = 1, s = "a"
+            0x00, 0x02, 0x02, 'b', 'c');                    // i = 2, s = "bc"
+        RowReader reader = new RowReader(schema);
+
+        reader.reset(rows, 1, 4);
+        assertEquals("a", reader.getString("s"));
+        assertEquals(1L, reader.getLong("i"));
+        reader.reset(rows, 5, 5);
+        assertEquals("bc", reader.getString("s"));
+        assertEquals(2L, reader.getLong("i"));
+        assertFalse(reader.getSchema().getFieldIndex("missing") >= 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRowShorterThanHeader() {
+        Object[] columns = new Object[34];
+        for (int i = 0; i < 17; i++) {
+            columns[2 * i] = "i" + i;
+            columns[2 * i + 1] = SupportedType.INT;
+        }
+        new RowReader(RowSchema.compile(schema(columns)), bytes(0x01, 0x00));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testTypeMismatch() {
+        RowSchema schema = RowSchema.compile(schema("i", SupportedType.INT));
+        new RowReader(schema, bytes(0x00, 0x01)).getString("i");
+    }
+}
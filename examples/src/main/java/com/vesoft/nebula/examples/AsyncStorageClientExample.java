@@ -6,20 +6,24 @@
 
 package com.vesoft.nebula.examples;
 
-import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import com.vesoft.nebula.meta.client.MetaClientImpl;
+import com.vesoft.nebula.storage.client.async.AsyncStorageClient;
+import com.vesoft.nebula.storage.client.async.AsyncStorageClientImpl;
 
-import java.util.concurrent.Executors;
+import java.util.List;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class AsyncStorageClientExample {
     private static final Logger LOGGER = LoggerFactory.getLogger(AsyncStorageClientExample.class);
-    private static ListeningExecutorService EXECUTOR_SERVICE =
-        MoreExecutors.listeningDecorator(Executors.newCachedThreadPool());
     private static final int SPACE = 1;
 
     public static void main(String[] args) {
@@ -28,9 +32,41 @@ public class AsyncStorageClientExample {
                 + "com.vesoft.nebula.examples.AsyncStorageClientExample <host> <port>");
             return;
         }
-        // TODO (freddie) Write a great example
+
         try {
             MetaClientImpl metaClient = new MetaClientImpl(args[0], Integer.parseInt(args[1]));
+            AsyncStorageClient storageClient = new AsyncStorageClientImpl(metaClient);
+            final int count = 1000;
+            List<ListenableFuture<Boolean>> puts = Lists.newArrayListWithCapacity(count);
+            for (int i = 0; i < count; i++) {
+                puts.add(storageClient.put(SPACE, String.valueOf(i), String.valueOf(i)));
+            }
+            for (Boolean succeeded : Futures.allAsList(puts).get()) {
+                if (!succeeded) {
+                    LOGGER.info("put failed");
+                    return;
+                }
+            }
+
+            Map<String, String> kvs = Maps.newHashMap();
+            List<String> keys = Lists.newArrayListWithCapacity(count);
+            for (int i = count; i < 2 * count; i++) {
+                kvs.put(String.valueOf(i), String.valueOf(i));
+                keys.add(String.valueOf(i));
+            }
+            if (!storageClient.put(SPACE, kvs).get()) {
+                LOGGER.info("multi put failed");
+                return;
+            }
+
+            Optional<Map<String, String>> values = storageClient.get(SPACE, keys).get();
+            if (!values.isPresent() || !values.get().equals(kvs)) {
+                LOGGER.info("multi get failed");
+                return;
+            }
+            LOGGER.info("Done");
+            storageClient.close();
+            metaClient.close();
         } catch (Exception e) {
             e.printStackTrace();
         }